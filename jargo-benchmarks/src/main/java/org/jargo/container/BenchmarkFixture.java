@@ -0,0 +1,222 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.jargo.ComponentConfiguration;
+import org.jargo.Event;
+import org.jargo.EventFactory;
+import org.jargo.Invocation;
+import org.jargo.InvocationFactory;
+import org.jargo.ObjectFactory;
+import org.jargo.ProxyGenerator;
+import org.jargo.ReusableEventFactory;
+import org.jargo.ReusableInvocationFactory;
+import org.jargo.deploy.SequentialDeployable;
+import org.jargo.spi.EventFactoryProvider;
+import org.jargo.spi.InvocationFactoryProvider;
+import org.jargo.spi.ObjectFactoryProvider;
+
+/**
+ * Components for the registries built by {@link RegistryFixture} of the 
+ * container's test-jar. The {@link ServiceProvider} lets components of 
+ * type {@link Service} be called through their proxies, with reusable 
+ * events and invocations, so that the benchmarks measure the container 
+ * rather than the providers.
+ *
+ * @author Leon van Zantvoort
+ */
+final class BenchmarkFixture {
+    
+    private BenchmarkFixture() {
+    }
+    
+    /**
+     * Interface through which the benchmarked components are called.
+     */
+    public interface Service {
+        
+        Object call();
+    }
+    
+    public static class ServiceImpl implements Service {
+        
+        private final Object result = new Object();
+        
+        public Object call() {
+            return result;
+        }
+    }
+    
+    private static final Method CALL;
+    
+    static {
+        try {
+            CALL = Service.class.getMethod("call");
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    /**
+     * Provides the events, invocations and instances of components of type 
+     * {@code Service}, and ignores all other components.
+     */
+    public static final class ServiceProvider implements 
+            EventFactoryProvider, InvocationFactoryProvider, 
+            ObjectFactoryProvider {
+        
+        public Sequence sequence(SequentialDeployable deployable) {
+            return Sequence.EQUAL;
+        }
+        
+        public List<EventFactory> getEventFactories(
+                ComponentConfiguration<?> configuration) {
+            if (!Service.class.isAssignableFrom(configuration.getType())) {
+                return Collections.emptyList();
+            }
+            return Collections.<EventFactory>singletonList(
+                    new CallEventFactory());
+        }
+        
+        public List<InvocationFactory> getInvocationFactories(
+                ComponentConfiguration<?> configuration) {
+            if (!Service.class.isAssignableFrom(configuration.getType())) {
+                return Collections.emptyList();
+            }
+            return Collections.<InvocationFactory>singletonList(
+                    new CallInvocationFactory());
+        }
+        
+        public <T> ObjectFactory<T> getObjectFactory(
+                final ComponentConfiguration<T> configuration) {
+            if (!Service.class.isAssignableFrom(configuration.getType())) {
+                return null;
+            }
+            return new ObjectFactory<T>() {
+                public T newInstance() {
+                    return configuration.getType().cast(new ServiceImpl());
+                }
+                
+                public T newInstance(ProxyGenerator<T> proxyGenerator) {
+                    return proxyGenerator.generateProxy(null);
+                }
+            };
+        }
+    }
+    
+    /**
+     * Event of a call of {@code Service.call}. 
+     */
+    public static final class CallEvent implements Event {
+    }
+    
+    private static final class CallEventFactory implements 
+            ReusableEventFactory {
+        
+        public Set<Class<? extends Event>> getEventTypes() {
+            return Collections.<Class<? extends Event>>singleton(
+                    CallEvent.class);
+        }
+        
+        public List<Class<?>> getInterfaces() {
+            return Collections.<Class<?>>singletonList(Service.class);
+        }
+        
+        public boolean isProxy() {
+            return true;
+        }
+        
+        public boolean isReusable(Method method) {
+            return true;
+        }
+        
+        public Event getEvent(Method method, Object[] args) {
+            return getEvent(method, args, null);
+        }
+        
+        public Event getEvent(Method method, Object[] args, Event event) {
+            if (!method.equals(CALL)) {
+                return null;
+            }
+            return event == null ? new CallEvent() : event;
+        }
+    }
+    
+    private static final class CallInvocationFactory implements 
+            ReusableInvocationFactory {
+        
+        public Set<Method> getMethods() {
+            return Collections.singleton(CALL);
+        }
+        
+        public Set<Class<? extends Event>> getEventTypes() {
+            return Collections.<Class<? extends Event>>singleton(
+                    CallEvent.class);
+        }
+        
+        public boolean isReusable(Method method) {
+            return true;
+        }
+        
+        public Invocation getInvocation(Event event) {
+            return getInvocation(event, null);
+        }
+        
+        public Invocation getInvocation(Event event, Invocation invocation) {
+            if (!(event instanceof CallEvent)) {
+                return null;
+            }
+            return invocation == null ? new CallInvocation() : invocation;
+        }
+    }
+    
+    private static final class CallInvocation implements Invocation {
+        
+        public Method getMethod() {
+            return CALL;
+        }
+        
+        public Object[] getParameters() {
+            return null;
+        }
+        
+        public void setParameters(Object[] args) {
+        }
+        
+        public Object invoke(Object instance) {
+            return ((Service) instance).call();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import org.jargo.ComponentReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scaling guard for the thread bound state on the call path of a component.
+ * Every call attaches the reference to the component context, looks it up 
+ * and detaches it again. All threads share the same contexts, as do all 
+ * callers of a single component.
+ * 
+ * <p>The call path must not write to shared memory. The throughput per 
+ * thread of the {@code Threads.MAX} variants is therefore expected to be 
+ * close to that of the single-threaded variants. A drop that grows with the 
+ * number of threads indicates a shared write, such as an atomic update or a 
+ * lock, on the call path.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallPathBenchmark {
+    
+    private ManagedComponentContext<Object> outer;
+    private ManagedComponentContext<Object> inner;
+    private ComponentReference<Object> outerReference;
+    private ComponentReference<Object> innerReference;
+    
+    @Setup
+    public void setUp() {
+        outer = new ManagedComponentContextImpl<Object>(null);
+        inner = new ManagedComponentContextImpl<Object>(null);
+        outerReference = newReference();
+        innerReference = newReference();
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public Object attach() {
+        return attachDetach();
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object attachConcurrent() {
+        return attachDetach();
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public Object nested() {
+        return nestedAttachDetach();
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object nestedConcurrent() {
+        return nestedAttachDetach();
+    }
+    
+    private Object attachDetach() {
+        outer.attach(outerReference);
+        try {
+            return outer.reference();
+        } finally {
+            outer.detach();
+        }
+    }
+    
+    /**
+     * A component that calls another component.
+     */
+    private Object nestedAttachDetach() {
+        InvocationFrame frame = InvocationFrame.current();
+        outer.attach(outerReference, frame);
+        try {
+            inner.attach(innerReference, frame);
+            try {
+                return outer.reference() == inner.reference() ? null : frame;
+            } finally {
+                inner.detach(frame);
+            }
+        } finally {
+            outer.detach(frame);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static ComponentReference<Object> newReference() {
+        return (ComponentReference<Object>) Proxy.newProxyInstance(
+                ComponentReference.class.getClassLoader(), 
+                new Class<?>[] {ComponentReference.class}, 
+                new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.util.concurrent.TimeUnit;
+import org.jargo.ComponentConfiguration;
+import org.jargo.ComponentReference;
+import org.jargo.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Allocation guard for the call path of a pooled component. Each call enters
+ * the component through its proxy or its reference, and passes the 
+ * component context, the event and invocation contexts and the pool, all of
+ * which keep their thread bound state in the caller's 
+ * {@code InvocationFrame}. Events and invocations are recycled.
+ * 
+ * <p>Run with {@code -prof gc}. Once the frame has grown to the call depth, 
+ * the call path must not allocate: {@code gc.alloc.rate.norm} is expected to 
+ * be close to zero bytes per operation for all benchmarks.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComponentCallBenchmark {
+    
+    private ComponentRegistryImpl registry;
+    private ComponentReference<BenchmarkFixture.Service> reference;
+    private BenchmarkFixture.Service proxy;
+    private Event event;
+    
+    @Setup
+    public void setUp() throws Exception {
+        registry = RegistryFixture.newRegistry(
+                new BenchmarkFixture.ServiceProvider());
+        ComponentConfiguration<BenchmarkFixture.Service> configuration = 
+                RegistryFixture.activate(registry, "service", 
+                BenchmarkFixture.Service.class);
+        reference = registry.createReference(configuration, null);
+        proxy = (BenchmarkFixture.Service) reference.getComponent();
+        event = new BenchmarkFixture.CallEvent();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        registry.shutdown();
+    }
+    
+    @Benchmark
+    public Object proxy() {
+        return proxy.call();
+    }
+    
+    @Benchmark
+    public Object execute() {
+        return reference.execute(event);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jargo.ComponentObject;
+import org.jargo.ComponentObjectBuilder;
+import org.jargo.ComponentObjectPool;
+import org.jargo.ComponentReference;
+import org.jargo.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Borrow and return of a pooled object, from a single thread and from 
+ * {@code Threads.MAX} threads sharing one pool. Use {@code -t} to run the 
+ * concurrent variant with other thread counts. The {@code bounded} pool
+ * never blocks here, since its maximum size exceeds any realistic thread 
+ * count.
+ *
+ * @author Leon van Zantvoort
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComponentObjectPoolBenchmark {
+    
+    private static final AtomicInteger counter = new AtomicInteger();
+    
+    @Param({"unbounded", "bounded", "threadAffine"})
+    private String pool;
+    
+    private ComponentObjectPool<Object> target;
+    
+    @Setup
+    public void setUp() throws Exception {
+        String name = "benchmark-" + counter.incrementAndGet();
+        ComponentObjectPoolImpl<Object> impl;
+        if (pool.equals("bounded")) {
+            impl = new ComponentObjectPoolImpl<Object>(name, 0, 1024, 1024, 
+                    -1, false);
+        } else {
+            impl = new ComponentObjectPoolImpl<Object>(name, 0, 0, 
+                    Integer.MAX_VALUE, -1, false);
+        }
+        target = pool.equals("threadAffine") ? 
+                new ThreadAffineComponentObjectPool<Object>(name, impl) : impl;
+        target.init(new Builder());
+    }
+    
+    @TearDown
+    public void tearDown() {
+        target.destroy();
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public Object borrowReturn() {
+        return borrowAndReturn();
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object borrowReturnConcurrent() {
+        return borrowAndReturn();
+    }
+    
+    private Object borrowAndReturn() {
+        ComponentObject<Object> object = target.getComponentObject();
+        target.freeComponentObject(object);
+        return object;
+    }
+    
+    private static final class Builder implements 
+            ComponentObjectBuilder<Object> {
+        
+        public ComponentObject<Object> newInstance() {
+            final Object instance = new Object();
+            return new ComponentObject<Object>() {
+                public Object execute(Event event) {
+                    throw new UnsupportedOperationException();
+                }
+                
+                public Object getInstance() {
+                    return instance;
+                }
+                
+                public void destroy() {
+                }
+            };
+        }
+        
+        public ComponentReference<Object> reference() {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void attach(ComponentReference<Object> reference) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void detach() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
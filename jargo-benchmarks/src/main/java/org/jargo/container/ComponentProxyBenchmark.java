@@ -0,0 +1,226 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.jargo.AsyncComponentReference;
+import org.jargo.ComponentConfiguration;
+import org.jargo.ComponentExceptionHandler;
+import org.jargo.ComponentMetaData;
+import org.jargo.ComponentReference;
+import org.jargo.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the CGLib generated proxies of {@code ComponentProxyFactory} with
+ * the reflective {@code ComponentProxy} fallback. Both proxies share the 
+ * same {@code CallSiteTable} and reference, so that the difference between 
+ * the two variants is the cost of entering the proxy and dispatching to the
+ * call site. {@code dispatch} calls a proxy whose reference returns without
+ * executing the event, which leaves the cost of the proxy itself. 
+ * {@code newProxy} measures the creation of a proxy for an existing 
+ * reference.
+ * 
+ * <p>CGLib must be able to define classes, otherwise the factory silently 
+ * falls back to the reflective proxy and the benchmark fails during setup. 
+ * On Java 9 and later this requires 
+ * {@code --add-opens java.base/java.lang=ALL-UNNAMED}.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComponentProxyBenchmark {
+    
+    @Param({"generated", "reflective"})
+    private String proxy;
+    
+    private ComponentRegistryImpl registry;
+    private ComponentReference<BenchmarkFixture.Service> reference;
+    private ComponentProxyFactory<BenchmarkFixture.Service> factory;
+    private Constructor<?> constructor;
+    private CallSiteTable callSites;
+    private ComponentExceptionHandler exceptionHandler;
+    private BenchmarkFixture.Service service;
+    private BenchmarkFixture.Service dispatcher;
+    
+    @Setup
+    public void setUp() throws Exception {
+        registry = RegistryFixture.newRegistry(
+                new BenchmarkFixture.ServiceProvider());
+        ComponentConfiguration<BenchmarkFixture.Service> configuration = 
+                RegistryFixture.activate(registry, "service", 
+                BenchmarkFixture.Service.class);
+        reference = registry.createReference(configuration, null);
+        
+        ComponentMetaData<BenchmarkFixture.Service> metaData = 
+                registry.getComponentMetaData(configuration);
+        EventTypeIndex index = registry.getEventTypeIndex(configuration);
+        Integer[] modes = new Integer[index.size()];
+        Arrays.fill(modes, CallSiteTable.SYNCHRONOUS);
+        callSites = new CallSiteTable(metaData.getComponentName(), 
+                metaData.getInterfaces(), 
+                registry.getEventFactory(configuration));
+        callSites.setExecutionModes(index, modes);
+        exceptionHandler = registry.getComponentExceptionHandler(
+                configuration);
+        
+        if (proxy.equals("generated")) {
+            factory = new ComponentProxyFactory<BenchmarkFixture.Service>(
+                    metaData, callSites, exceptionHandler);
+            service = factory.newProxy(reference);
+            dispatcher = factory.newProxy(new NullReference(metaData));
+            if (Proxy.isProxyClass(service.getClass())) {
+                throw new IllegalStateException(
+                        "Failed to generate proxy class.");
+            }
+        } else if (proxy.equals("reflective")) {
+            constructor = ComponentProxy.getProxyConstructor(metaData);
+            service = ComponentProxy.getComponentProxy(constructor, 
+                    reference, callSites, exceptionHandler);
+            dispatcher = ComponentProxy.getComponentProxy(constructor, 
+                    new NullReference(metaData), callSites, exceptionHandler);
+        } else {
+            throw new IllegalArgumentException(proxy);
+        }
+    }
+    
+    @TearDown
+    public void tearDown() {
+        registry.shutdown();
+    }
+    
+    @Benchmark
+    public Object call() {
+        return service.call();
+    }
+    
+    @Benchmark
+    public Object dispatch() {
+        return dispatcher.call();
+    }
+    
+    @Benchmark
+    public Object newProxy() {
+        if (factory != null) {
+            return factory.newProxy(reference);
+        }
+        return ComponentProxy.getComponentProxy(constructor, reference, 
+                callSites, exceptionHandler);
+    }
+    
+    /**
+     * Reference that returns {@code null} for every event.
+     */
+    private static final class NullReference implements 
+            AsyncComponentReference<BenchmarkFixture.Service> {
+        
+        private final ComponentMetaData<BenchmarkFixture.Service> metaData;
+        
+        public NullReference(
+                ComponentMetaData<BenchmarkFixture.Service> metaData) {
+            this.metaData = metaData;
+        }
+        
+        public ComponentMetaData<BenchmarkFixture.Service> 
+                getComponentMetaData() {
+            return metaData;
+        }
+        
+        public Object getInfo() {
+            return null;
+        }
+        
+        public Object getComponent() {
+            throw new UnsupportedOperationException();
+        }
+        
+        public boolean isExecutable(Event event) {
+            return true;
+        }
+        
+        public Object execute(Event event) {
+            return null;
+        }
+        
+        public Future<Object> executeAsync(Event event) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void invalidate() {
+        }
+        
+        public boolean isValid() {
+            return true;
+        }
+        
+        public void remove() {
+        }
+        
+        public boolean isRemoved() {
+            return false;
+        }
+        
+        public boolean isWeak() {
+            return false;
+        }
+        
+        public ComponentReference<BenchmarkFixture.Service> weakReference() {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void addDestroyHook(Runnable hook) {
+        }
+        
+        public boolean removeDestroyHook(Runnable hook) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jargo.ComponentObject;
+import org.jargo.ComponentObjectBuilder;
+import org.jargo.ComponentReference;
+import org.jargo.Event;
+import org.jargo.EventExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the standard event executors. Each invocation executes a batch of
+ * events on a pooled component and waits until all of them have completed,
+ * so that asynchronous executors are measured by the throughput of the 
+ * events rather than by the cost of queueing them. 
+ * 
+ * <p>The asynchronous executors run on a fixed thread pool with one thread 
+ * per processor. The bounded executors admit at most {@code capacity} 
+ * events at a time, and either block or run the event on the calling thread
+ * if this limit is reached.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventExecutorBenchmark {
+    
+    private static final int BATCH = 1000;
+    
+    private static final AtomicInteger counter = new AtomicInteger();
+    
+    @Param({"sync", "async", "block", "callerRuns"})
+    private String executor;
+    
+    /**
+     * Amount of work per event, in {@code Blackhole.consumeCPU} tokens.
+     */
+    @Param({"100"})
+    private int work;
+    
+    @Param({"64"})
+    private int capacity;
+    
+    private ExecutorService threads;
+    private ComponentObjectPoolImpl<Object> pool;
+    private EventExecutor<Object> target;
+    private AsyncEventExecutor<Object> async;
+    private Event event;
+    
+    @Setup
+    public void setUp() throws Exception {
+        String name = "benchmark-" + counter.incrementAndGet();
+        pool = new ComponentObjectPoolImpl<Object>(name, 0, 0, 
+                Integer.MAX_VALUE, -1, false);
+        pool.init(new Builder(work));
+        threads = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        if (executor.equals("sync")) {
+            target = SyncEventExecutor.getInstance();
+        } else {
+            if (executor.equals("async")) {
+                async = new AsyncEventExecutor<Object>(name, threads, 0, 
+                        AsyncEventExecutor.Policy.BLOCK);
+            } else if (executor.equals("block")) {
+                async = new AsyncEventExecutor<Object>(name, threads, 
+                        capacity, AsyncEventExecutor.Policy.BLOCK);
+            } else if (executor.equals("callerRuns")) {
+                async = new AsyncEventExecutor<Object>(name, threads, 
+                        capacity, AsyncEventExecutor.Policy.CALLER_RUNS);
+            } else {
+                throw new IllegalArgumentException(executor);
+            }
+            target = async;
+        }
+        event = new Event() {
+        };
+    }
+    
+    @TearDown
+    public void tearDown() throws Exception {
+        if (async != null) {
+            async.shutdown(10, TimeUnit.SECONDS);
+        }
+        threads.shutdown();
+        threads.awaitTermination(10, TimeUnit.SECONDS);
+        pool.destroy();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void execute() {
+        for (int i = 0; i < BATCH; i++) {
+            target.execute(event, pool);
+        }
+        if (async != null) {
+            while (async.getQueueDepth() > 0) {
+                Thread.yield();
+            }
+        }
+    }
+    
+    private static final class Builder implements 
+            ComponentObjectBuilder<Object> {
+        
+        private final int work;
+        
+        public Builder(int work) {
+            this.work = work;
+        }
+        
+        public ComponentObject<Object> newInstance() {
+            final Object instance = new Object();
+            return new ComponentObject<Object>() {
+                public Object execute(Event event) {
+                    Blackhole.consumeCPU(work);
+                    return null;
+                }
+                
+                public Object getInstance() {
+                    return instance;
+                }
+                
+                public void destroy() {
+                }
+            };
+        }
+        
+        public ComponentReference<Object> reference() {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void attach(ComponentReference<Object> reference) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void detach() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
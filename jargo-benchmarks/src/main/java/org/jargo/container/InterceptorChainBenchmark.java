@@ -0,0 +1,194 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jargo.ComponentContext;
+import org.jargo.Event;
+import org.jargo.EventContext;
+import org.jargo.EventInterceptor;
+import org.jargo.Invocation;
+import org.jargo.InvocationContext;
+import org.jargo.InvocationInterceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of proceeding through event and invocation interceptor chains of
+ * increasing length. Every interceptor reads the target and the event or 
+ * invocation before proceeding, which must not depend on the length of the 
+ * chain. A length of {@code 0} measures the fast path, on which the chain 
+ * is bypassed altogether.
+ *
+ * @author Leon van Zantvoort
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterceptorChainBenchmark {
+    
+    @Param({"0", "1", "2", "5", "10"})
+    private int length;
+    
+    private EventContext eventChain;
+    private InvocationContext invocationChain;
+    
+    @Setup
+    public void setUp() throws Exception {
+        final Object target = new Object();
+        final Object result = new Object();
+        final Event event = new Event() {
+        };
+        EventContext eventTerminator = new EventContext() {
+            public Object get() {
+                return null;
+            }
+            
+            public void set(Object o) {
+            }
+            
+            public ComponentContext<?> getComponentContext() {
+                return null;
+            }
+            
+            public Event getEvent() {
+                return event;
+            }
+            
+            public Object proceed() {
+                return result;
+            }
+            
+            public Object getTarget() {
+                return target;
+            }
+        };
+        
+        final Invocation invocation = new Invocation() {
+            public Method getMethod() {
+                return null;
+            }
+            
+            public Object[] getParameters() {
+                return null;
+            }
+            
+            public void setParameters(Object[] args) {
+            }
+            
+            public Object invoke(Object instance) {
+                return result;
+            }
+        };
+        InvocationContext invocationTerminator = new InvocationContext() {
+            public Object get() {
+                return null;
+            }
+            
+            public void set(Object o) {
+            }
+            
+            public ComponentContext<?> getComponentContext() {
+                return null;
+            }
+            
+            public Invocation getInvocation() {
+                return invocation;
+            }
+            
+            public Object getTarget() {
+                return target;
+            }
+            
+            public Object proceed() throws Exception {
+                return invocation.invoke(target);
+            }
+        };
+        
+        List<EventInterceptor> eventInterceptors = 
+                new ArrayList<EventInterceptor>();
+        List<InvocationInterceptor> invocationInterceptors = 
+                new ArrayList<InvocationInterceptor>();
+        for (int i = 0; i < length; i++) {
+            eventInterceptors.add(new EventInterceptor() {
+                public Object intercept(EventContext ctx) throws Exception {
+                    if (ctx.getTarget() == null || ctx.getEvent() == null) {
+                        throw new IllegalStateException();
+                    }
+                    return ctx.proceed();
+                }
+            });
+            invocationInterceptors.add(new InvocationInterceptor() {
+                public boolean isLifecycleInterceptor() {
+                    return false;
+                }
+                
+                public Object intercept(InvocationContext ctx) throws 
+                        Exception {
+                    if (ctx.getTarget() == null || 
+                            ctx.getInvocation() == null) {
+                        throw new IllegalStateException();
+                    }
+                    return ctx.proceed();
+                }
+            });
+        }
+        eventChain = EventInterceptorChain.instance(eventInterceptors, 
+                eventTerminator, null);
+        invocationChain = InvocationInterceptorChain.instance(
+                invocationInterceptors, invocationTerminator, null);
+    }
+    
+    @Benchmark
+    public Object event() throws Exception {
+        return eventChain.proceed();
+    }
+    
+    @Benchmark
+    public Object invocation() throws Exception {
+        return invocationChain.proceed();
+    }
+}
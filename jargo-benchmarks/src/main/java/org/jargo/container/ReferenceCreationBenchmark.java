@@ -0,0 +1,98 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.util.concurrent.TimeUnit;
+import org.jargo.ComponentConfiguration;
+import org.jargo.ComponentReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of reference creation for a pooled component, from one thread 
+ * and from one thread per processor. All threads create references of the 
+ * same component. The references are dropped right away and are reclaimed 
+ * by the reference reaper, so the cost of tracking and reaping them is 
+ * included.
+ * 
+ * <p>The throughput per thread of {@code createConcurrent} is expected to be
+ * close to that of {@code create}; a drop that grows with the number of 
+ * threads indicates contention on reference creation. Run with 
+ * {@code -prof gc} for the allocations per reference.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReferenceCreationBenchmark {
+    
+    private ComponentRegistryImpl registry;
+    private ComponentConfiguration<BenchmarkFixture.Service> configuration;
+    
+    @Setup
+    public void setUp() throws Exception {
+        registry = RegistryFixture.newRegistry(
+                new BenchmarkFixture.ServiceProvider());
+        configuration = RegistryFixture.activate(registry, "service", 
+                BenchmarkFixture.Service.class);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        registry.shutdown();
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public ComponentReference<?> create() {
+        return registry.createReference(configuration, null);
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ComponentReference<?> createConcurrent() {
+        return registry.createReference(configuration, null);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import org.jargo.ComponentReference;
+
+/**
+ * Superclass of the proxy classes generated by {@code ComponentProxyFactory},
+ * holding the reference of each proxy instance. The class is public because
+ * the generated classes are defined by the component's class loader.
+ * 
+ * <p>New proxies are copied from a prototype instance, which already holds 
+ * the callbacks of the proxy class. Copying bypasses the constructor, and 
+ * therefore CGLib's thread local callback registration.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+public abstract class AbstractComponentProxy implements Cloneable {
+
+    // Set once, right after the proxy is created.
+    ComponentReference<?> reference;
+    
+    public AbstractComponentProxy() {
+    }
+    
+    /**
+     * Returns a copy of this proxy for the specified {@code reference}. 
+     * {@code Object.clone} is invoked directly, so a {@code clone} method 
+     * declared by a proxy interface is not dispatched to the component.
+     */
+    final AbstractComponentProxy copy(ComponentReference<?> reference) {
+        try {
+            AbstractComponentProxy proxy = (AbstractComponentProxy) 
+                    super.clone();
+            proxy.reference = reference;
+            return proxy;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e.toString());
+        }
+    }
+}
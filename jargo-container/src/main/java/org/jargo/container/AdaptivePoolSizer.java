@@ -0,0 +1,318 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static java.util.logging.Level.*;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.management.AttributeChangeNotification;
+import javax.management.MBeanNotificationInfo;
+import javax.management.NotificationBroadcasterSupport;
+
+/**
+ * Adapts the maximum size of a bounded {@link ComponentObjectPoolImpl} to 
+ * the observed load. Every sample interval, the sizer compares the number of 
+ * borrows that had to wait with the average number of borrowed objects:
+ * 
+ * <ul>
+ * <li>If borrows waited or timed out, the pool is grown additively by a 
+ * constant step of a sixteenth of the upper bound, at least one.</li>
+ * <li>If the average number of borrowed objects, plus a quarter headroom, 
+ * stays below the size for three intervals, the pool is shrunk 
+ * multiplicatively to half its size, but not below that estimate.</li>
+ * </ul>
+ * 
+ * <p>The pool records how long each object is held. By Little's law, the 
+ * average number of borrowed objects over an interval equals the arrival 
+ * rate times the average hold time; objects that are held for longer than 
+ * an interval are accounted for by the number of objects borrowed at the 
+ * end of it. The size always stays within the configured bounds. The 
+ * sample interval in milliseconds can be configured by the 
+ * {@code org.jargo.pool.interval} system property, and defaults to 
+ * {@code 1000}.</p>
+ * 
+ * <p>The sizer is registered in place of its pool's management bean. This
+ * class is only public to comply with the JMX standard MBean rules; it is 
+ * created by the container.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+public final class AdaptivePoolSizer extends NotificationBroadcasterSupport 
+        implements AdaptivePoolSizerMBean {
+    
+    private static final long interval;
+    
+    // Weight of a new sample in the average number of borrowed objects.
+    private static final double ALPHA = 0.3;
+    private static final double HEADROOM = 1.25;
+    private static final int SHRINK_INTERVALS = 3;
+    
+    static {
+        final long[] l = new long[1];
+        AccessController.doPrivileged(new PrivilegedAction<Object>() {
+            public Object run() {
+                // PERMISSION: java.util.PropertyPermission "org.jargo.*" "read"
+                l[0] = Long.getLong("org.jargo.pool.interval", 1000);
+                return null;
+            }
+        });
+        interval = Math.max(10, l[0]);
+    }
+    
+    // Guarded by AdaptivePoolSizer.class.
+    private static ScheduledExecutorService scheduler;
+    private static int active;
+    
+    private final Logger logger;
+    private final ComponentObjectPoolImpl<?> pool;
+    private final int lowerBound;
+    private final int upperBound;
+    private final int step;
+    
+    // Only accessed by adapt.
+    private long lastTime;
+    private long lastBorrows;
+    private long lastWaits;
+    private long lastWaitTime;
+    private long lastTimeouts;
+    private long lastHolds;
+    private long lastHoldTime;
+    private double concurrency;
+    private int lowIntervals;
+    private long sequence;
+    
+    private volatile double arrivalRate;
+    private volatile double averageWaitTime;
+    private volatile double averageHoldTime;
+    private volatile long resizeCount;
+    
+    // Guarded by this.
+    private ScheduledFuture<?> future;
+    
+    AdaptivePoolSizer(ComponentObjectPoolImpl<?> pool, int lowerBound, 
+            int upperBound) {
+        this.logger = Logger.getLogger(getClass().getName());
+        this.pool = pool;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+        this.step = Math.max(1, upperBound / 16);
+    }
+    
+    synchronized void start() {
+        if (future != null) {
+            return;
+        }
+        lastTime = System.nanoTime();
+        lastBorrows = pool.getBorrowCount();
+        lastWaits = pool.getWaitCount();
+        lastWaitTime = pool.getWaitTime();
+        lastTimeouts = pool.getTimeoutCount();
+        lastHolds = pool.getHoldCount();
+        lastHoldTime = pool.getHoldTime();
+        future = acquireScheduler().scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    adapt();
+                } catch (RuntimeException e) {
+                    logger.log(WARNING, "Failed to adapt pool size of '" + 
+                            getComponentName() + "'.", e);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    
+    synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+            releaseScheduler();
+        }
+    }
+    
+    public String getComponentName() {
+        return pool.getComponentName();
+    }
+    
+    public int getMaxSize() {
+        return pool.getMaxSize();
+    }
+    
+    public int getLowerBound() {
+        return lowerBound;
+    }
+    
+    public int getUpperBound() {
+        return upperBound;
+    }
+    
+    public int getBorrowedCount() {
+        return pool.getBorrowedCount();
+    }
+    
+    public int getIdleCount() {
+        return pool.getIdleCount();
+    }
+    
+    public int getSize() {
+        return pool.getSize();
+    }
+    
+    public long getBorrowCount() {
+        return pool.getBorrowCount();
+    }
+    
+    public long getWaitCount() {
+        return pool.getWaitCount();
+    }
+    
+    public double getArrivalRate() {
+        return arrivalRate;
+    }
+    
+    public double getAverageWaitTime() {
+        return averageWaitTime;
+    }
+    
+    public double getAverageHoldTime() {
+        return averageHoldTime;
+    }
+    
+    public long getTimeoutCount() {
+        return pool.getTimeoutCount();
+    }
+    
+    public long getResizeCount() {
+        return resizeCount;
+    }
+    
+    @Override
+    public MBeanNotificationInfo[] getNotificationInfo() {
+        return new MBeanNotificationInfo[] {new MBeanNotificationInfo(
+                new String[] {AttributeChangeNotification.ATTRIBUTE_CHANGE}, 
+                AttributeChangeNotification.class.getName(), 
+                "Emitted when the pool is resized.")};
+    }
+    
+    /**
+     * Takes a sample and resizes the pool if needed. Called every sample 
+     * interval by the scheduler thread while this sizer is started, or 
+     * directly by tests while it is stopped.
+     */
+    void adapt() {
+        long now = System.nanoTime();
+        long borrows = pool.getBorrowCount();
+        long waits = pool.getWaitCount();
+        long waitTime = pool.getWaitTime();
+        long timeouts = pool.getTimeoutCount();
+        long holds = pool.getHoldCount();
+        long holdTime = pool.getHoldTime();
+        
+        double seconds = (now - lastTime) / 1000000000.0;
+        long newBorrows = borrows - lastBorrows;
+        long newWaits = waits - lastWaits;
+        long newTimeouts = timeouts - lastTimeouts;
+        long newHolds = holds - lastHolds;
+        arrivalRate = seconds > 0 ? newBorrows / seconds : 0;
+        averageWaitTime = newWaits == 0 ? 0 : 
+                (waitTime - lastWaitTime) / 1000000.0 / newWaits;
+        averageHoldTime = newHolds == 0 ? 0 : 
+                (holdTime - lastHoldTime) / 1000000.0 / newHolds;
+        double borrowed = Math.max(pool.getBorrowedCount(), 
+                arrivalRate * averageHoldTime / 1000);
+        concurrency = concurrency * (1 - ALPHA) + borrowed * ALPHA;
+        
+        lastTime = now;
+        lastBorrows = borrows;
+        lastWaits = waits;
+        lastWaitTime = waitTime;
+        lastTimeouts = timeouts;
+        lastHolds = holds;
+        lastHoldTime = holdTime;
+        
+        int size = pool.getMaxSize();
+        if (newWaits > 0 || newTimeouts > 0) {
+            lowIntervals = 0;
+            if (size < upperBound) {
+                resize(size, Math.min(upperBound, size + step),
+                        newWaits + " borrow(s) waited, " + newTimeouts + 
+                        " timed out");
+            }
+        } else {
+            int estimate = (int) Math.ceil(concurrency * HEADROOM);
+            if (estimate < size && size > lowerBound) {
+                if (++lowIntervals >= SHRINK_INTERVALS) {
+                    lowIntervals = 0;
+                    resize(size, Math.max(lowerBound, 
+                            Math.max(estimate, size / 2)), 
+                            "average of " + Math.round(concurrency * 100) / 
+                            100.0 + " borrowed object(s)");
+                }
+            } else {
+                lowIntervals = 0;
+            }
+        }
+    }
+    
+    private void resize(int oldSize, int newSize, String reason) {
+        if (oldSize == newSize) {
+            return;
+        }
+        pool.setMaxSize(newSize);
+        resizeCount++;
+        String message = "Resized pool of '" + getComponentName() + 
+                "' from " + oldSize + " to " + newSize + ": " + reason + ".";
+        logger.fine(message);
+        sendNotification(new AttributeChangeNotification(this, ++sequence, 
+                System.currentTimeMillis(), message, "MaxSize", 
+                Integer.class.getName(), oldSize, newSize));
+    }
+    
+    private static synchronized ScheduledExecutorService acquireScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                    JargoThreadFactory.instance("Jargo-PoolSizer"));
+        }
+        active++;
+        return scheduler;
+    }
+    
+    private static synchronized void releaseScheduler() {
+        if (--active == 0) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+}
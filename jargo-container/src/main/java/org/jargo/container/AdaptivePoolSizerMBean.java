@@ -0,0 +1,75 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+/**
+ * Management interface of an adaptive component object pool, exposed 
+ * through JMX under the 
+ * {@code org.jargo:type=ComponentObjectPool,name=<componentName>} object 
+ * name instead of the plain pool interface. Every resize is also emitted as an 
+ * {@code AttributeChangeNotification} of the {@code MaxSize} attribute.
+ * 
+ * @author Leon van Zantvoort
+ */
+public interface AdaptivePoolSizerMBean extends ComponentObjectPoolMBean {
+    
+    /**
+     * Returns the size below which the pool is never shrunk.
+     */
+    int getLowerBound();
+    
+    /**
+     * Returns the size above which the pool is never grown.
+     */
+    int getUpperBound();
+    
+    /**
+     * Returns the number of borrows per second over the last interval.
+     */
+    double getArrivalRate();
+    
+    /**
+     * Returns the average time in milliseconds that borrows waited for an
+     * object over the last interval, counting only borrows that waited.
+     */
+    double getAverageWaitTime();
+    
+    /**
+     * Returns the average time in milliseconds that objects returned over 
+     * the last interval were held.
+     */
+    double getAverageHoldTime();
+    
+    /**
+     * Returns the number of times the pool has been resized.
+     */
+    long getResizeCount();
+}
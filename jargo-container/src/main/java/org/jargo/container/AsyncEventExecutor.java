@@ -0,0 +1,258 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static java.util.logging.Level.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import org.jargo.ComponentEventException;
+import org.jargo.ComponentObjectFactory;
+import org.jargo.DeclaredEventExecutor;
+import org.jargo.Event;
+
+/**
+ * Executes events on the executor of the component's {@code ExecutorHandle}
+ * without waiting for the result, and returns {@code null}. The reference 
+ * stack of the caller is carried over to the executing thread. Failures are
+ * logged. If the component has no executor, events are executed on the 
+ * calling thread. Events executed asynchronously are never recycled, and 
+ * can only be created by methods that return void or a future, see 
+ * {@code CallSiteTable}.
+ * 
+ * <p>The number of events that are queued or executing can be bounded, in 
+ * which case the {@link Policy} determines what happens to events that 
+ * exceed the bound.</p>
+ * 
+ * <p>The workers belong to the executor of the {@code ExecutorHandle}, which
+ * is destroyed with the component. Shutting down this executor drains its 
+ * queue for a bounded time, after which the events that are still queued 
+ * are discarded as soon as a worker picks them up.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+final class AsyncEventExecutor<T> implements DeclaredEventExecutor<T> {
+    
+    /**
+     * Action taken if the queue of a bounded executor is full.
+     */
+    enum Policy {
+        
+        /**
+         * Waits until the queue has room for the event.
+         */
+        BLOCK,
+        
+        /**
+         * Executes the event on the calling thread.
+         */
+        CALLER_RUNS,
+        
+        /**
+         * Fails with a {@code ComponentEventException}.
+         */
+        REJECT;
+    }
+    
+    private final Logger logger;
+    private final String componentName;
+    private final Executor executor;
+    private final int capacity;
+    private final Policy policy;
+    private final Semaphore slots;
+    private final AtomicInteger depth;
+    private final AtomicLong rejectionCount;
+    private final AtomicLong callerRunsCount;
+    private volatile boolean shutdown;
+    private volatile boolean terminated;
+    
+    /**
+     * @param capacity maximum number of events that are queued or executing,
+     * or {@code 0} if unbounded.
+     */
+    public AsyncEventExecutor(String componentName, Executor executor, 
+            int capacity, Policy policy) {
+        this.logger = Logger.getLogger(getClass().getName());
+        this.componentName = componentName;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.slots = capacity > 0 ? new Semaphore(capacity) : null;
+        this.depth = new AtomicInteger();
+        this.rejectionCount = new AtomicLong();
+        this.callerRunsCount = new AtomicLong();
+    }
+    
+    public Object execute(final Event event, 
+            final ComponentObjectFactory<T> factory) throws 
+            ComponentEventException {
+        if (executor == null) {
+            return SyncEventExecutor.invoke(event, factory);
+        }
+        if (shutdown) {
+            throw new ComponentEventException(componentName, event, 
+                    "Executor is shut down.");
+        }
+        if (slots != null && !slots.tryAcquire()) {
+            switch (policy) {
+                case CALLER_RUNS:
+                    callerRunsCount.incrementAndGet();
+                    return SyncEventExecutor.invoke(event, factory);
+                case REJECT:
+                    rejectionCount.incrementAndGet();
+                    throw new ComponentEventException(componentName, event, 
+                            "Event queue is full (" + capacity + ").");
+                default:
+                    try {
+                        slots.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new ComponentEventException(componentName, 
+                                event, e);
+                    }
+            }
+        }
+        depth.incrementAndGet();
+        try {
+            executor.execute(new AsyncEventTask<T>(new Callable<Object>() {
+                public Object call() {
+                    try {
+                        if (terminated) {
+                            logger.warning("Discarded " + event + " for '" + 
+                                    componentName + "', executor is shut " +
+                                    "down.");
+                            return null;
+                        }
+                        SyncEventExecutor.invoke(event, factory);
+                    } catch (RuntimeException e) {
+                        logger.log(WARNING, "Failed to execute " + event + 
+                                " for '" + componentName + "'.", e);
+                    } finally {
+                        release();
+                    }
+                    return null;
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            release();
+            rejectionCount.incrementAndGet();
+            throw new ComponentEventException(componentName, event, e);
+        }
+        return null;
+    }
+    
+    /**
+     * Returns {@code true} if events are executed after {@code execute} has
+     * returned, that is, if the component has an executor.
+     */
+    public boolean isAsynchronous() {
+        return executor != null;
+    }
+    
+    /**
+     * Rejects all events that are executed from now on, and waits at most 
+     * {@code timeout} for the events that are queued or executing to 
+     * complete. Events that are still queued after that are discarded.
+     * 
+     * @return {@code true} if all events have completed.
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        shutdown = true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean interrupted = false;
+        try {
+            synchronized (this) {
+                long remaining;
+                while (depth.get() > 0 && 
+                        (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        break;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        terminated = true;
+        return depth.get() == 0;
+    }
+    
+    /**
+     * Returns {@code true} if {@code shutdown} has been called.
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+    
+    /**
+     * Returns the number of events that are queued or executing.
+     */
+    public int getQueueDepth() {
+        return depth.get();
+    }
+    
+    /**
+     * Returns the number of events that have been rejected, either by this
+     * executor or by the underlying executor.
+     */
+    public long getRejectionCount() {
+        return rejectionCount.get();
+    }
+    
+    /**
+     * Returns the number of events that have been executed on the calling 
+     * thread because the queue was full.
+     */
+    public long getCallerRunsCount() {
+        return callerRunsCount.get();
+    }
+    
+    private void release() {
+        if (slots != null) {
+            slots.release();
+        }
+        if (depth.decrementAndGet() == 0 && shutdown) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.jargo.ComponentReference;
+import org.jargo.Event;
+
+/**
+ * Executes an event on another thread, on behalf of 
+ * {@code AsyncComponentReference.executeAsync} or an asynchronous 
+ * {@code EventExecutor}. The component context slots of the submitting thread's 
+ * {@code InvocationFrame} are captured on creation and pushed onto the frame
+ * of the executing thread for the duration of the event, so that the 
+ * reference stack of the caller is carried over. Tasks that run on the 
+ * submitting thread itself capture nothing.
+ * 
+ * @author Leon van Zantvoort
+ */
+final class AsyncEventTask<T> extends FutureTask<Object> {
+    
+    private static final Object[] NONE = new Object[0];
+    
+    private final Object[] owners;
+    private final Object[] values;
+    private final boolean chained;
+    private volatile boolean interrupt;
+    
+    /**
+     * Creates a task that executes {@code event} through {@code target}. If 
+     * the event yields a {@code Future}, this task is chained to that future
+     * instead of waiting for it on the executing thread: {@code get} then 
+     * returns the result of that future, and this task is only done once 
+     * that future is done.
+     * 
+     * @param inline {@code true} if the task is run on the calling thread,
+     * whose frame already holds the component context slots.
+     */
+    public AsyncEventTask(final WeakComponentReference<T> target, 
+            final Event event, final ComponentReference<T> reference, 
+            boolean inline) {
+        this(new Callable<Object>() {
+            public Object call() {
+                return target.doExecute(event, reference);
+            }
+        }, true, !inline);
+    }
+    
+    public AsyncEventTask(Callable<Object> callable) {
+        this(callable, false, true);
+    }
+    
+    private AsyncEventTask(Callable<Object> callable, boolean chained, 
+            boolean capture) {
+        super(callable);
+        this.chained = chained;
+        if (!capture) {
+            this.owners = NONE;
+            this.values = NONE;
+            return;
+        }
+        InvocationFrame frame = InvocationFrame.current();
+        int count = 0;
+        for (int i = 0; i < frame.size(); i++) {
+            if (frame.getOwner(i) instanceof ManagedComponentContext) {
+                count++;
+            }
+        }
+        this.owners = new Object[count];
+        this.values = new Object[count];
+        for (int i = 0, j = 0; j < count; i++) {
+            if (frame.getOwner(i) instanceof ManagedComponentContext) {
+                owners[j] = frame.getOwner(i);
+                values[j] = frame.get(i);
+                j++;
+            }
+        }
+    }
+    
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+        Object result = super.get();
+        if (chained && result instanceof Future) {
+            return ((Future<?>) result).get();
+        }
+        return result;
+    }
+    
+    @Override
+    public Object get(long timeout, TimeUnit unit) throws 
+            InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Object result = super.get(timeout, unit);
+        if (chained && result instanceof Future) {
+            return ((Future<?>) result).get(Math.max(0, 
+                    deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        return result;
+    }
+    
+    @Override
+    public boolean isDone() {
+        Future<?> future = getChainedFuture();
+        return super.isDone() && (future == null || future.isDone());
+    }
+    
+    /**
+     * Cancels this task and the future it is chained to. A future that the 
+     * event yields after this task has been cancelled is cancelled as well.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        interrupt = mayInterruptIfRunning;
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        Future<?> future = getChainedFuture();
+        if (future != null) {
+            cancelled |= future.cancel(mayInterruptIfRunning);
+        }
+        return cancelled;
+    }
+    
+    @Override
+    public boolean isCancelled() {
+        if (super.isCancelled()) {
+            return true;
+        }
+        Future<?> future = getChainedFuture();
+        return future != null && future.isCancelled();
+    }
+    
+    @Override
+    protected void set(Object v) {
+        super.set(v);
+        if (chained && v instanceof Future && super.isCancelled()) {
+            ((Future<?>) v).cancel(interrupt);
+        }
+    }
+    
+    /**
+     * Returns the future yielded by the event, or {@code null} if the event
+     * has not completed or did not yield a future.
+     */
+    private Future<?> getChainedFuture() {
+        if (chained && super.isDone() && !super.isCancelled()) {
+            try {
+                Object result = super.get();
+                if (result instanceof Future) {
+                    return (Future<?>) result;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // Not chained.
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public void run() {
+        InvocationFrame frame = InvocationFrame.current();
+        for (int i = 0; i < owners.length; i++) {
+            frame.push(owners[i], values[i]);
+        }
+        try {
+            super.run();
+        } finally {
+            for (int i = owners.length - 1; i >= 0; i--) {
+                frame.pop(owners[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import org.jargo.Event;
+import org.jargo.EventFactory;
+import org.jargo.ReusableEventFactory;
+
+/**
+ * Dispatch information of a single proxied method, resolved once per 
+ * component. The event factory that handles the method is resolved on first
+ * use and reused for all subsequent calls. If that factory declares the 
+ * method's events as reusable, events are recycled through the calling 
+ * thread's {@code InvocationFrame}.
+ * 
+ * @author Leon van Zantvoort
+ */
+final class CallSite {
+    
+    public static final int EVENT = 0;
+    public static final int HASH_CODE = 1;
+    public static final int EQUALS = 2;
+    public static final int TO_STRING = 3;
+    public static final int ASYNC_EVENT = 4;
+    
+    private final Method method;
+    private final int kind;
+    private final List<EventFactory> factories;
+    private final CallSiteTable table;
+    private volatile EventFactory factory;
+    private boolean reusable;
+    
+    public CallSite(Method method, int kind, EventFactory eventFactory, 
+            CallSiteTable table) {
+        this.method = method;
+        this.kind = kind;
+        this.table = table;
+        if (eventFactory instanceof EventFactories) {
+            this.factories = ((EventFactories) eventFactory).getEventFactories();
+        } else {
+            this.factories = Collections.singletonList(eventFactory);
+        }
+    }
+    
+    public Method getMethod() {
+        return method;
+    }
+    
+    /**
+     * Returns one of {@link #EVENT}, {@link #HASH_CODE}, {@link #EQUALS},
+     * {@link #TO_STRING} or {@link #ASYNC_EVENT}. Events of 
+     * {@code ASYNC_EVENT} sites outlive the call and are never recycled.
+     */
+    public int getKind() {
+        return kind;
+    }
+    
+    /**
+     * Returns {@code true} if the events of this call site are recycled, in
+     * which case {@code getEvent} and {@code release} need the frame of the
+     * calling thread.
+     */
+    public boolean isRecycling() {
+        return factory != null && reusable;
+    }
+    
+    /**
+     * Returns the event for a call of this method with the specified 
+     * {@code args}, or {@code null} if no event factory handles the method.
+     * 
+     * @param frame the frame of the calling thread, or {@code null} if 
+     * {@code isRecycling} returned {@code false}.
+     */
+    public Event getEvent(Object[] args, InvocationFrame frame) {
+        EventFactory f = factory;
+        if (f != null) {
+            if (frame != null && reusable) {
+                Event event = (Event) frame.acquire(table, this);
+                return ((ReusableEventFactory) f).getEvent(method, args, event);
+            }
+            return f.getEvent(method, args);
+        }
+        for (EventFactory candidate : factories) {
+            Event event = candidate.getEvent(method, args);
+            if (event != null) {
+                // Written before the volatile factory field.
+                reusable = table.isRecyclable(this, event) && 
+                        kind != ASYNC_EVENT &&
+                        candidate instanceof ReusableEventFactory &&
+                        ((ReusableEventFactory) candidate).isReusable(method);
+                factory = candidate;
+                return event;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Called once the call for which {@code event} was obtained has 
+     * returned normally. Events of failed calls must not be released, as 
+     * the exception may still refer to them. The event is only recycled if 
+     * {@code frame} is the frame that was passed to {@code getEvent}.
+     */
+    public void release(Event event, InvocationFrame frame) {
+        if (event != null && frame != null && reusable) {
+            frame.release(table, this, event);
+        }
+    }
+    
+    public String toString() {
+        return "CallSite{method=" + method + "}";
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import org.jargo.Asynchronous;
+import org.jargo.ComponentException;
+import org.jargo.Event;
+import org.jargo.EventFactory;
+
+/**
+ * Table of the {@code CallSite}s of all methods of a component's proxy 
+ * interfaces. The table is built once when the component is created, and is 
+ * replaced as a whole when the component is redeployed. Generated proxies 
+ * bind each of their methods to its call site when the proxy class is built.
+ * Reflective proxies look up the call site of each {@code Method} instance 
+ * they dispatch once, after which it is found by identity.
+ * 
+ * @author Leon van Zantvoort
+ */
+final class CallSiteTable {
+
+    private static final Method	HASH_CODE;
+    private static final Method	EQUALS;
+    private static final Method	TO_STRING;
+    
+    static {
+        try {
+            Class<?> type = Object.class;
+            HASH_CODE = type.getMethod("hashCode");
+            EQUALS = type.getMethod("equals", new Class[]{type});
+            TO_STRING = type.getMethod("toString");
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    /**
+     * Execution mode of an event type whose executor returns after the 
+     * event has been executed.
+     */
+    public static final int SYNCHRONOUS = 0;
+    
+    /**
+     * Execution mode of an event type whose executor returns before the 
+     * event has been executed.
+     */
+    public static final int ASYNCHRONOUS = 1;
+    
+    /**
+     * Execution mode of an event type whose executor is not known to the 
+     * container. Its events may outlive the call.
+     */
+    public static final int UNKNOWN = 2;
+    
+    private final String componentName;
+    private final EventFactory eventFactory;
+    private final Map<Method, CallSite> callSites;
+    
+    // Call sites per Method instance of the proxy classes, copied on write.
+    private volatile Map<Method, CallSite> resolved;
+    
+    private volatile EventTypeIndex index;
+    private volatile Integer[] modes;
+    
+    public CallSiteTable(String componentName, Iterable<Class<?>> interfaces, 
+            EventFactory eventFactory) {
+        this.componentName = componentName;
+        this.eventFactory = eventFactory;
+        this.callSites = new HashMap<Method, CallSite>();
+        callSites.put(HASH_CODE, new CallSite(HASH_CODE, CallSite.HASH_CODE, 
+                eventFactory, this));
+        callSites.put(EQUALS, new CallSite(EQUALS, CallSite.EQUALS, 
+                eventFactory, this));
+        callSites.put(TO_STRING, new CallSite(TO_STRING, CallSite.TO_STRING,
+                eventFactory, this));
+        for (Class<?> cls : interfaces) {
+            for (Method method : cls.getMethods()) {
+                if (!callSites.containsKey(method)) {
+                    callSites.put(method, new CallSite(method, 
+                            kindOf(method), eventFactory, this));
+                }
+            }
+        }
+        this.resolved = new IdentityHashMap<Method, CallSite>();
+    }
+    
+    /**
+     * Methods declared to return a {@code Future} are executed 
+     * asynchronously through {@code AsyncComponentReference.executeAsync} if
+     * the method or its declaring interface is annotated 
+     * {@code Asynchronous}.
+     */
+    private static int kindOf(Method method) {
+        if (method.getReturnType() == Future.class && 
+                (method.isAnnotationPresent(Asynchronous.class) || 
+                method.getDeclaringClass().isAnnotationPresent(
+                Asynchronous.class))) {
+            return CallSite.ASYNC_EVENT;
+        }
+        return CallSite.EVENT;
+    }
+    
+    /**
+     * Sets the execution mode of each event type, indexed by the slots of 
+     * the specified {@code index}. Must be called before the first event is
+     * created.
+     * 
+     * <p>If all event types are executed asynchronously, every 
+     * {@code EVENT} site must return void, which is verified here. 
+     * Otherwise, the event type of a method is only known once its first 
+     * event has been created, so the method is verified at that point by 
+     * {@link #isRecyclable}.</p>
+     * 
+     * @throws ComponentException if a method returns a value that an 
+     * asynchronous executor would discard.
+     */
+    public void setExecutionModes(EventTypeIndex index, Integer[] modes) 
+            throws ComponentException {
+        boolean asynchronous = false;
+        for (Integer mode : modes) {
+            if (mode != null) {
+                if (mode != ASYNCHRONOUS) {
+                    asynchronous = false;
+                    break;
+                }
+                asynchronous = true;
+            }
+        }
+        if (asynchronous) {
+            for (CallSite site : callSites.values()) {
+                checkReturnType(site, null);
+            }
+        }
+        this.index = index;
+        this.modes = modes;
+    }
+    
+    /**
+     * Returns {@code true} if the events created by {@code site}, of which 
+     * {@code event} is the first, may be recycled. Events of asynchronously 
+     * executed types are never recycled, and can only be created by methods
+     * returning void, or by {@code ASYNC_EVENT} sites, which return a 
+     * future.
+     * 
+     * @throws ComponentException if {@code site} returns a value that an 
+     * asynchronous executor would discard.
+     */
+    boolean isRecyclable(CallSite site, Event event) throws 
+            ComponentException {
+        Integer[] m = modes;
+        Integer mode = m == null ? null : index.lookup(m, event.getClass());
+        if (mode == null) {
+            return false;
+        }
+        if (mode == ASYNCHRONOUS) {
+            checkReturnType(site, event.getClass());
+        }
+        return mode == SYNCHRONOUS;
+    }
+    
+    /**
+     * @param type the event type, or {@code null} if all event types of the
+     * component are executed asynchronously.
+     */
+    private void checkReturnType(CallSite site, Class<?> type) throws 
+            ComponentException {
+        if (site.getKind() == CallSite.EVENT && 
+                site.getMethod().getReturnType() != void.class) {
+            throw new ComponentException(componentName, (type == null ? 
+                    "Events are" : "Events of type " + type.getName() + 
+                    " are") + " executed asynchronously, which requires " +
+                    "the method to return void: " + site.getMethod() + ".");
+        }
+    }
+    
+    /**
+     * Returns the call sites of all methods in this table.
+     */
+    public Collection<CallSite> getCallSites() {
+        return Collections.unmodifiableCollection(callSites.values());
+    }
+    
+    /**
+     * Returns the call site of the specified {@code method}. Methods that
+     * are not declared by any of the proxy interfaces get a call site of 
+     * their own, which is kept as well.
+     */
+    public CallSite get(Method method) {
+        CallSite site = resolved.get(method);
+        if (site == null) {
+            site = resolve(method);
+        }
+        return site;
+    }
+    
+    private synchronized CallSite resolve(Method method) {
+        CallSite site = resolved.get(method);
+        if (site == null) {
+            site = callSites.get(method);
+            if (site == null) {
+                site = new CallSite(method, kindOf(method), eventFactory, 
+                        this);
+            }
+            Map<Method, CallSite> map = 
+                    new IdentityHashMap<Method, CallSite>(resolved);
+            map.put(method, site);
+            resolved = map;
+        }
+        return site;
+    }
+}
@@ -107,8 +107,8 @@ final class ComponentConfigurationDeployer implements Deployer {
                                     "Component name already exists.");
                         }
                     }
-                    registry.create(configuration);
                 }
+                registry.createAll(configurations);
                 
                 Map<String, Set<ManagedComponentContext<?>>> map =
                         getOrderedContextList(configurations, true);
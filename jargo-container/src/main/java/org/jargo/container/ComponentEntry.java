@@ -0,0 +1,305 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jargo.ComponentConfiguration;
+import org.jargo.ComponentException;
+import org.jargo.ComponentExceptionHandler;
+import org.jargo.ComponentFactory;
+import org.jargo.ComponentLifecycle;
+import org.jargo.ComponentMetaData;
+import org.jargo.ComponentObjectFactory;
+import org.jargo.DeclaredEventExecutor;
+import org.jargo.Event;
+import org.jargo.EventExecutor;
+import org.jargo.EventFactory;
+import org.jargo.ExecutorHandle;
+import org.jargo.InvocationFactory;
+
+/**
+ * Record of everything the registry resolves for a single component at 
+ * creation time. The resolved state (configuration, factories, lifecycles,
+ * meta data, executor handle, exception handler, call sites, proxy factory 
+ * and event executors) is held in final fields and never changes. Entries 
+ * are published as a whole, so readers never observe a partially registered
+ * component and need no lock to read the resolved state.
+ * 
+ * <p>Besides the resolved state, each entry carries mutable state:</p>
+ * <ul>
+ * <li>the {@code destroyed} flag, which is changed while holding the entry 
+ * lock;</li>
+ * <li>the live references of pooled components, a concurrent map that is 
+ * updated while holding the entry lock, except for removals by the 
+ * reaper.</li>
+ * </ul>
+ * <p>Reference creation only synchronizes on the entry lock, leaving the 
+ * registry lock for structural changes.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+final class ComponentEntry<T> {
+    
+    private final ComponentConfiguration<T> configuration;
+    private final ComponentObjectFactory<T> objectFactory;
+    private final EventFactory eventFactory;
+    private final InvocationFactory invocationFactory;
+    private final EventTypeIndex eventTypeIndex;
+    private final List<ComponentLifecycle<T>> lifecycles;
+    private final ComponentMetaData<T> metaData;
+    private final ExecutorHandle executorHandle;
+    private final ComponentExceptionHandler exceptionHandler;
+    private final ComponentFactory<T> componentFactory;
+    private final CallSiteTable callSites;
+    private final ComponentProxyFactory<T> proxyFactory;
+    private final EventExecutor<T>[] eventExecutors;
+    private final Providers providers;
+    
+    private final Lock lock;
+    private volatile boolean destroyed;
+    private final ConcurrentMap<WeakComponentReference<T>, Reference<?>> references;
+    
+    public ComponentEntry(ComponentConfiguration<T> configuration,
+            ComponentObjectFactory<T> objectFactory, EventFactory eventFactory,
+            InvocationFactory invocationFactory, 
+            EventTypeIndex eventTypeIndex,
+            List<ComponentLifecycle<T>> lifecycles, 
+            ComponentMetaData<T> metaData, ExecutorHandle executorHandle,
+            ComponentExceptionHandler exceptionHandler, 
+            ComponentRegistry registry) throws ComponentException {
+        this.configuration = configuration;
+        this.objectFactory = objectFactory;
+        this.eventFactory = eventFactory;
+        this.invocationFactory = invocationFactory;
+        this.eventTypeIndex = eventTypeIndex;
+        this.lifecycles = Collections.unmodifiableList(
+                new ArrayList<ComponentLifecycle<T>>(lifecycles));
+        this.metaData = metaData;
+        this.executorHandle = executorHandle;
+        this.exceptionHandler = exceptionHandler;
+        this.componentFactory = new ComponentFactoryImpl<T>(configuration, 
+                metaData, registry);
+        this.callSites = new CallSiteTable(metaData.getComponentName(), 
+                metaData.getInterfaces(), eventFactory);
+        this.proxyFactory = new ComponentProxyFactory<T>(metaData, callSites,
+                exceptionHandler);
+        this.providers = registry.getProviders();
+        this.eventExecutors = createEventExecutors(providers);
+        this.lock = new ReentrantLock();
+        this.references = 
+                new ConcurrentHashMap<WeakComponentReference<T>, Reference<?>>();
+    }
+    
+    public ComponentConfiguration<T> getComponentConfiguration() {
+        return configuration;
+    }
+    
+    public ComponentObjectFactory<T> getComponentObjectFactory() {
+        return objectFactory;
+    }
+    
+    public EventFactory getEventFactory() {
+        return eventFactory;
+    }
+    
+    public InvocationFactory getInvocationFactory() {
+        return invocationFactory;
+    }
+    
+    public EventTypeIndex getEventTypeIndex() {
+        return eventTypeIndex;
+    }
+    
+    public List<ComponentLifecycle<T>> getComponentLifecycles() {
+        return lifecycles;
+    }
+    
+    public ComponentMetaData<T> getComponentMetaData() {
+        return metaData;
+    }
+    
+    public ExecutorHandle getExecutorHandle() {
+        return executorHandle;
+    }
+    
+    public ComponentExceptionHandler getComponentExceptionHandler() {
+        return exceptionHandler;
+    }
+    
+    /**
+     * Returns the factory that is shared by all lookups of this component.
+     */
+    public ComponentFactory<T> getComponentFactory() {
+        return componentFactory;
+    }
+    
+    /**
+     * Returns the dispatch table shared by all proxies of this component.
+     */
+    public CallSiteTable getCallSites() {
+        return callSites;
+    }
+    
+    /**
+     * Returns the factory that creates the proxies of this component.
+     */
+    public ComponentProxyFactory<T> getProxyFactory() {
+        return proxyFactory;
+    }
+    
+    /**
+     * Returns the event executors shared by all references of this 
+     * component, indexed by the slots of the event type index.
+     */
+    public EventExecutor<T>[] getEventExecutors() {
+        return eventExecutors;
+    }
+    
+    /**
+     * Obtains the executor of each event type from the provider, and passes
+     * their execution modes to the call sites, which fails if a method 
+     * returns a value that an asynchronous executor would discard.
+     */
+    private EventExecutor<T>[] createEventExecutors(Providers providers) 
+            throws ComponentException {
+        @SuppressWarnings("unchecked")
+        EventExecutor<T>[] executors = 
+                new EventExecutor[eventTypeIndex.size()];
+        Integer[] modes = new Integer[eventTypeIndex.size()];
+        for (Class<? extends Event> type : eventFactory.getEventTypes()) {
+            EventExecutor<T> executor = providers.getEventExecutorProvider().
+                    getEventExecutor(configuration, type, 
+                    executorHandle.getExecutor());
+            if (executor == null) {
+                throw new ComponentException(metaData.getComponentName(), 
+                        "no event executor specified for " + type.getName());
+            }
+            int slot = eventTypeIndex.slotOf(type);
+            executors[slot] = executor;
+            modes[slot] = executionModeOf(executor);
+        }
+        callSites.setExecutionModes(eventTypeIndex, modes);
+        return executors;
+    }
+    
+    /**
+     * Only executors that declare their mode are known to return after the 
+     * event has been executed. Events of other executors may still be queued
+     * when the call returns, so they are never recycled.
+     */
+    private static int executionModeOf(EventExecutor<?> executor) {
+        if (executor instanceof DeclaredEventExecutor) {
+            return ((DeclaredEventExecutor<?>) executor).isAsynchronous() ?
+                    CallSiteTable.ASYNCHRONOUS : CallSiteTable.SYNCHRONOUS;
+        }
+        return CallSiteTable.UNKNOWN;
+    }
+    
+    /**
+     * Returns the lock that guards reference creation for this component.
+     */
+    public Lock getLock() {
+        return lock;
+    }
+    
+    /**
+     * Returns {@code true} if the component has been destroyed. Must be 
+     * called while holding the lock to be consistent with {@code destroy}.
+     */
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+    
+    /**
+     * Marks this entry as destroyed and returns the references that were
+     * tracked up to this point. Must be called while holding the lock.
+     */
+    public Set<WeakComponentReference<T>> destroy() {
+        destroyed = true;
+        Set<WeakComponentReference<T>> set = 
+                new HashSet<WeakComponentReference<T>>(references.keySet());
+        references.clear();
+        return set;
+    }
+    
+    /**
+     * Releases everything acquired for this entry, of which the registration
+     * failed: the event executors obtained from the providers, the component
+     * object factory and the executor handle. Must only be called for 
+     * entries that have not been published.
+     */
+    public void release() {
+        try {
+            EventExecutorProviders.release(providers, configuration);
+        } finally {
+            try {
+                objectFactory.destroy();
+            } finally {
+                executorHandle.destroy();
+            }
+        }
+    }
+    
+    /**
+     * Tracks the specified {@code reference}. The {@code tracker} is kept
+     * strongly reachable for as long as the reference is tracked.
+     */
+    public void addReference(WeakComponentReference<T> reference, 
+            Reference<?> tracker) {
+        Reference<?> previous = references.put(reference, tracker);
+        assert previous == null;
+    }
+    
+    public boolean removeReference(WeakComponentReference<?> reference) {
+        return references.remove(reference) != null;
+    }
+    
+    /**
+     * Returns the number of references currently tracked by this entry.
+     */
+    public int getReferenceCount() {
+        return references.size();
+    }
+    
+    public String toString() {
+        return "ComponentEntry{name=" + configuration.getComponentName() + 
+                "}@" + Integer.toHexString(System.identityHashCode(this));
+    }
+}
@@ -48,9 +48,15 @@ final class ComponentFactoryImpl<T> implements ComponentFactory<T> {
     
     public ComponentFactoryImpl(ComponentConfiguration<T> configuration, 
             ComponentRegistry registry) {
+        this(configuration, registry.getComponentMetaData(configuration), 
+                registry);
+    }
+    
+    public ComponentFactoryImpl(ComponentConfiguration<T> configuration, 
+            ComponentMetaData<T> metaData, ComponentRegistry registry) {
         this.configuration = configuration;
         this.registry = registry;
-        this.metaData = registry.getComponentMetaData(configuration);
+        this.metaData = metaData;
     }
 
     public ComponentMetaData<T> getComponentMetaData() {
@@ -38,10 +38,7 @@ import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 import org.jargo.ComponentExecutionException;
 import org.jargo.Event;
@@ -88,9 +85,10 @@ final class ComponentObjectImpl<T> implements ComponentObject<T> {
     private final List<InjectionFactory<T>> injectionFactories;
     
     private final EventFactory eventFactory;
-    private final ConcurrentEventContext concurrentEvents;
+    private final ConcurrentEventInterceptorContextImpl concurrentEvents;
     private final Map<Class<? extends Event>, EventContext> events;
-    private final ConcurrentMap<Class<? extends Event>, EventContext> cachedEvents;
+    private final EventTypeIndex eventTypes;
+    private final EventContext[] eventContexts;
     
     private final InvocationFactory invocationFactory;
     private final ConcurrentInvocationContext concurrentInvocations;
@@ -103,7 +101,8 @@ final class ComponentObjectImpl<T> implements ComponentObject<T> {
     private final List<InvocationInterceptor> onCreateInterceptors;
     private final List<InvocationInterceptor> onDestroyInterceptors;
     
-    private final ThreadLocal<JargoStack<AtomicReference<Object>>> contextStack;
+    // Owner of the interceptor context data slots in the invocation frame.
+    private final Object contextKey;
     
     private final boolean vanillaProxy;
     private final ProxyController proxyController;
@@ -128,7 +127,8 @@ final class ComponentObjectImpl<T> implements ComponentObject<T> {
                 getInjectionFactories(configuration);
         this.eventFactory = registry.getEventFactory(configuration);
         this.events = new HashMap<Class<? extends Event>, EventContext>();
-        this.cachedEvents = new ConcurrentHashMap<Class<? extends Event>, EventContext>();
+        this.eventTypes = registry.getEventTypeIndex(configuration);
+        this.eventContexts = new EventContext[eventTypes.size()];
         
         this.eventInterceptors = new ArrayList<EventInterceptor>();
         this.invocationFactory = registry.getInvocationFactory(configuration);
@@ -218,14 +218,9 @@ final class ComponentObjectImpl<T> implements ComponentObject<T> {
         
         create();
         if (invocationInterceptors.isEmpty()) {
-            contextStack = null;
+            contextKey = null;
         } else {
-            this.contextStack = new ThreadLocal<JargoStack<AtomicReference<Object>>>() {
-                @Override
-                protected JargoStack<AtomicReference<Object>> initialValue() {
-                    return new JargoStack<AtomicReference<Object>>();
-                }
-            };
+            contextKey = new Object();
         }
     }
     
@@ -270,8 +265,10 @@ final class ComponentObjectImpl<T> implements ComponentObject<T> {
                         }
                     }
                 }
-                events.put(tmp, EventInterceptorChain.
-                        instance(interceptors, concurrentEvents, ctx));
+                EventContext ectx = EventInterceptorChain.
+                        instance(interceptors, concurrentEvents, ctx);
+                events.put(tmp, ectx);
+                eventContexts[eventTypes.slotOf(tmp)] = ectx;
             }
             
             IdentityHashMap<InvocationInterceptor, Object> tmpInvocationInterceptors =
@@ -416,18 +413,7 @@ final class ComponentObjectImpl<T> implements ComponentObject<T> {
     }
     
     private EventContext getEventInterceptorContext(Event event) {
-        Class<? extends Event> cls = event.getClass();
-        EventContext tmp = cachedEvents.get(cls);
-        if (tmp == null) {
-            for (Map.Entry<Class<? extends Event>, EventContext> entry :
-                events.entrySet()) {
-                if (entry.getKey().isAssignableFrom(event.getClass())) {
-                    tmp = entry.getValue();
-                    break;
-                }
-            }
-            cachedEvents.put(cls, tmp);
-        }
+        EventContext tmp = eventTypes.lookup(eventContexts, event.getClass());
         assert tmp != null;
         return tmp;
     }
@@ -439,12 +425,26 @@ final class ComponentObjectImpl<T> implements ComponentObject<T> {
     public Object execute(Event event) throws
             ComponentEventException {
         EventContext ectx = getEventInterceptorContext(event);
-        concurrentEvents.attach(event);
+        // Looked up once and passed down the call path.
+        InvocationFrame frame = InvocationFrame.current();
+        Invocation invocation = null;
+        if (ectx == concurrentEvents) {
+            // No event interceptors, check for a direct path to the target.
+            invocation = getInvocation(event, frame);
+            if (invocation != null && getInvocationInterceptorContext(
+                    invocation.getMethod()) == concurrentInvocations) {
+                return invoke(event, invocation, frame);
+            }
+        }
+        concurrentEvents.attach(event, frame);
         try {
             try {
                 if (isVanillaProxy()) {
                     proxyController.attach(true);
                 }
+                if (invocation != null) {
+                    return concurrentEvents.proceed(invocation, frame);
+                }
                 return ectx.proceed();
             } catch (ComponentEventException e) {
                 throw e;
@@ -457,7 +457,52 @@ final class ComponentObjectImpl<T> implements ComponentObject<T> {
                 }
             }
         } finally {
-            concurrentEvents.detach();
+            concurrentEvents.detach(frame);
+        }
+    }
+    
+    /**
+     * Invokes the target without interceptors. The event and invocation are
+     * not attached, as there are no interceptors to observe them. The 
+     * invocation is only recycled if the target returns normally.
+     */
+    private Object invoke(Event event, Invocation invocation, 
+            InvocationFrame frame) throws ComponentEventException {
+        assert !InvocationFrame.isReleased(invocation) :
+            "Recycled invocation escaped: " + invocation + ".";
+        Object result;
+        try {
+            if (isVanillaProxy()) {
+                proxyController.attach(true);
+            }
+            result = invocation.invoke(getInstance());
+        } catch (ComponentEventException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new ComponentExecutionException(
+                    ctx.getComponentMetaData().getComponentName(), event, t);
+        } finally {
+            if (isVanillaProxy()) {
+                proxyController.detach();
+            }
+        }
+        release(event, invocation, frame);
+        return result;
+    }
+    
+    private Invocation getInvocation(Event event, InvocationFrame frame) {
+        if (invocationFactory instanceof InvocationFactories) {
+            return ((InvocationFactories) invocationFactory).getInvocation(
+                    event, frame);
+        }
+        return invocationFactory.getInvocation(event);
+    }
+    
+    private void release(Event event, Invocation invocation, 
+            InvocationFrame frame) {
+        if (invocationFactory instanceof InvocationFactories) {
+            ((InvocationFactories) invocationFactory).release(event, 
+                    invocation, frame);
         }
     }
     
@@ -634,7 +679,13 @@ final class ComponentObjectImpl<T> implements ComponentObject<T> {
         }
         
         public Object proceed() throws Exception {
-            Invocation invocation = invocationFactory.getInvocation(getEvent());
+            InvocationFrame frame = InvocationFrame.current();
+            return proceed(getInvocation((Event) frame.peek(this), frame), 
+                    frame);
+        }
+        
+        public Object proceed(Invocation invocation, InvocationFrame frame) 
+                throws Exception {
             if (invocation == null) {
                 throw new ComponentEventNotExecutableException(
                         ctx.getComponentMetaData().getComponentName(),
@@ -651,54 +702,42 @@ final class ComponentObjectImpl<T> implements ComponentObject<T> {
                         "Method returned by InvocationFactory.getInvocation() is not" +
                         " in InvocationFactory.getMethods(): " + method + ".");
             }
-            concurrentInvocations.attach(invocation);
+            assert !InvocationFrame.isReleased(invocation) :
+                "Recycled invocation escaped: " + invocation + ".";
+            concurrentInvocations.attach(invocation, frame);
+            Object result;
             try {
-                return ictx.proceed();
+                result = ictx.proceed();
             } finally {
-                concurrentInvocations.detach();
+                concurrentInvocations.detach(frame);
             }
+            // Not recycled on failure, the exception may refer to it.
+            release((Event) frame.peek(this), invocation, frame);
+            return result;
         }
         
         @Override
-        public void attach(Event event) {
-            super.attach(event);
-            if (contextStack != null) {
-                contextStack.get().push(new AtomicReference<Object>());
+        public void attach(Event event, InvocationFrame frame) {
+            super.attach(event, frame);
+            if (contextKey != null) {
+                frame.push(contextKey, null);
             }
         }
         
         @Override
-        public void detach() {
-            super.detach();
-            if (contextStack != null) {
-                contextStack.get().pop();
+        public void detach(InvocationFrame frame) {
+            super.detach(frame);
+            if (contextKey != null) {
+                frame.pop(contextKey);
             }
         }
         
         public Object get() {
-            final AtomicReference<Object> ref;
-            if (contextStack != null) {
-                ref = contextStack.get().peek();
-            } else {
-                ref = null;
-            }
-            if (ref == null) {
-                throw new IllegalStateException();
-            }
-            return ref.get();
+            return getContextData();
         }
         
         public void set(Object o) {
-            final AtomicReference<Object> ref;
-            if (contextStack != null) {
-                ref = contextStack.get().peek();
-            } else {
-                ref = null;
-            }
-            if (ref == null) {
-                throw new IllegalStateException();
-            }
-            ref.set(o);
+            setContextData(o);
         }
 
         public Object getTarget() {
@@ -718,29 +757,11 @@ final class ComponentObjectImpl<T> implements ComponentObject<T> {
         }
         
         public Object get() {
-            final AtomicReference<Object> ref;
-            if (contextStack != null) {
-                ref = contextStack.get().peek();
-            } else {
-                ref = null;
-            }
-            if (ref == null) {
-                throw new IllegalStateException();
-            }
-            return ref.get();
+            return getContextData();
         }
         
         public void set(Object o) {
-            final AtomicReference<Object> ref;
-            if (contextStack != null) {
-                ref = contextStack.get().peek();
-            } else {
-                ref = null;
-            }
-            if (ref == null) {
-                throw new IllegalStateException();
-            }
-            ref.set(o);
+            setContextData(o);
         }
 
         public Object getTarget() {
@@ -748,6 +769,24 @@ final class ComponentObjectImpl<T> implements ComponentObject<T> {
         }
     }
     
+    private Object getContextData() {
+        InvocationFrame frame = InvocationFrame.current();
+        int index = contextKey == null ? -1 : frame.indexOf(contextKey);
+        if (index == -1) {
+            throw new IllegalStateException();
+        }
+        return frame.get(index);
+    }
+    
+    private void setContextData(Object o) {
+        InvocationFrame frame = InvocationFrame.current();
+        int index = contextKey == null ? -1 : frame.indexOf(contextKey);
+        if (index == -1) {
+            throw new IllegalStateException();
+        }
+        frame.set(index, o);
+    }
+    
     private class LifecycleTerminator implements InvocationContext {
         private Object value;
         
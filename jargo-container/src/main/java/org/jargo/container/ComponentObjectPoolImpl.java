@@ -0,0 +1,535 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static java.util.logging.Level.*;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import org.jargo.ComponentCreationException;
+import org.jargo.ComponentObject;
+import org.jargo.ComponentObjectBuilder;
+import org.jargo.ComponentObjectPool;
+import org.jargo.PrewarmedComponentObjectFactory;
+
+/**
+ * Pool of stateless component objects. Idle objects are kept in a small 
+ * array of affinity slots, indexed by the calling thread, and in a shared 
+ * overflow stack. Both are lock-free, so a thread that returns an object 
+ * and borrows it again on the next call does not contend with other threads.
+ * 
+ * <p>The number of objects that are borrowed at the same time can be bounded,
+ * in which case callers wait for an object to be returned for at most the 
+ * configured timeout. Bounded pools can be resized at runtime, optionally
+ * by an {@link AdaptivePoolSizer}.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+final class ComponentObjectPoolImpl<T> implements ComponentObjectPool<T>,
+        PrewarmedComponentObjectFactory<T>, ComponentObjectPoolMBean {
+    
+    private final Logger logger;    
+    private final String componentName;
+    private final int minSize;
+    private final int idleLimit;
+    private final long timeout;
+    private final Permits permits;
+    private final AdaptivePoolSizer sizer;
+    
+    private final AtomicReferenceArray<ComponentObject<T>> slots;
+    private final int mask;
+    private final AtomicReference<Node<T>> overflow;
+    private final AtomicInteger idle;
+    private final AtomicInteger size;
+    
+    private final AtomicLong borrowCount;
+    private final AtomicLong waitCount;
+    private final AtomicLong waitTime;
+    private final AtomicLong timeoutCount;
+    
+    // Borrow times of borrowed objects, only tracked if the size is adapted.
+    private final ConcurrentMap<ComponentObject<T>, Long> borrowTimes;
+    private final AtomicLong holdCount;
+    private final AtomicLong holdTime;
+    
+    // Guarded by this.
+    private volatile int maxSize;
+    private volatile int maxIdle;
+    
+    private volatile ComponentObjectBuilder<T> builder;
+    private volatile boolean destroyed;
+    private ObjectName objectName;
+    
+    /**
+     * @param minSize number of objects that are created before the component
+     * is activated. The pool is not kept at this size afterwards; idle
+     * objects are only destroyed beyond {@code maxIdle}, which is never 
+     * less than {@code minSize}.
+     * @param maxSize maximum number of borrowed objects, or {@code 0} if 
+     * unbounded.
+     * @param maxIdle maximum number of idle objects kept by this pool.
+     * @param timeout maximum time in milliseconds to wait for an object if
+     * {@code maxSize} objects are borrowed, or a negative value to wait 
+     * indefinitely.
+     * @param adaptive {@code true} if the size of a bounded pool is to be
+     * adapted to the load, between {@code minSize} and {@code maxSize}.
+     */
+    public ComponentObjectPoolImpl(String componentName, int minSize, 
+            int maxSize, int maxIdle, long timeout, boolean adaptive) {
+        this.logger = Logger.getLogger(getClass().getName());
+        this.componentName = componentName;
+        this.minSize = minSize;
+        this.idleLimit = maxIdle;
+        this.maxIdle = maxIdle;
+        this.maxSize = maxSize;
+        this.timeout = timeout;
+        this.permits = maxSize > 0 ? new Permits(maxSize) : null;
+        this.sizer = adaptive && maxSize > 0 ? new AdaptivePoolSizer(this, 
+                Math.max(1, Math.min(minSize, maxSize)), maxSize) : null;
+        int n = 1;
+        while (n < Runtime.getRuntime().availableProcessors() * 2) {
+            n <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<ComponentObject<T>>(n);
+        this.mask = n - 1;
+        this.overflow = new AtomicReference<Node<T>>();
+        this.idle = new AtomicInteger();
+        this.size = new AtomicInteger();
+        this.borrowCount = new AtomicLong();
+        this.waitCount = new AtomicLong();
+        this.waitTime = new AtomicLong();
+        this.timeoutCount = new AtomicLong();
+        this.borrowTimes = sizer == null ? null : 
+                new ConcurrentHashMap<ComponentObject<T>, Long>();
+        this.holdCount = new AtomicLong();
+        this.holdTime = new AtomicLong();
+    }
+
+    public boolean isStatic() {
+        return true;
+    }
+
+    public void init(ComponentObjectBuilder<T> builder) throws 
+            ComponentCreationException {
+        this.builder = builder;
+        if (sizer != null) {
+            sizer.start();
+        }
+        register();
+    }
+    
+    public int getPrewarmSize() {
+        return minSize;
+    }
+    
+    public void prewarm(List<ComponentObject<T>> objects) {
+        for (ComponentObject<T> object : objects) {
+            size.incrementAndGet();
+            park(object);
+        }
+    }
+
+    public ComponentObject<T> create() {
+        return null;
+    }
+
+    public ComponentObject<T> getComponentObject() throws 
+            ComponentCreationException {
+        acquirePermit();
+        borrowCount.incrementAndGet();
+        boolean done = false;
+        try {
+            ComponentObject<T> object = unpark();
+            if (object == null) {
+                object = newInstance();
+            }
+            if (borrowTimes != null) {
+                borrowTimes.put(object, System.nanoTime());
+            }
+            done = true;
+            return object;
+        } finally {
+            if (!done) {
+                releasePermit();
+            }
+        }
+    }
+
+    public void freeComponentObject(ComponentObject<T> object) {
+        recordHoldTime(object);
+        try {
+            if (idle.incrementAndGet() > maxIdle || destroyed) {
+                idle.decrementAndGet();
+                destroy(object);
+            } else {
+                int index = slot();
+                if (!slots.compareAndSet(index, null, object)) {
+                    push(object);
+                }
+                if (destroyed) {
+                    clear();
+                }
+            }
+        } finally {
+            releasePermit();
+        }
+    }
+
+    public void discardComponentObject(ComponentObject<T> object) {
+        recordHoldTime(object);
+        try {
+            destroy(object);
+        } finally {
+            releasePermit();
+        }
+    }
+
+    public void remove() {
+    }
+
+    public void destroy() {
+        destroyed = true;
+        if (sizer != null) {
+            sizer.stop();
+        }
+        unregister();
+        clear();
+    }
+    
+    public String getComponentName() {
+        return componentName;
+    }
+    
+    /**
+     * Returns the maximum number of borrowed objects, or {@code 0} if this
+     * pool is unbounded.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * Changes the maximum number of borrowed objects of this bounded pool. 
+     * If the pool shrinks, borrowed objects are not reclaimed, but new 
+     * borrows wait until the number of borrowed objects has dropped below the
+     * new maximum. Idle objects in excess of the new maximum are destroyed.
+     */
+    public synchronized void setMaxSize(int newSize) {
+        if (permits == null) {
+            throw new IllegalStateException("Pool is unbounded.");
+        }
+        if (newSize < 1) {
+            throw new IllegalArgumentException(String.valueOf(newSize));
+        }
+        int delta = newSize - maxSize;
+        if (delta > 0) {
+            permits.release(delta);
+        } else if (delta < 0) {
+            permits.reduce(-delta);
+        }
+        maxSize = newSize;
+        maxIdle = Math.min(idleLimit, Math.max(minSize, newSize));
+        while (idle.get() > maxIdle) {
+            ComponentObject<T> object = unpark();
+            if (object == null) {
+                break;
+            }
+            destroy(object);
+        }
+    }
+    
+    /**
+     * Returns the number of objects that are currently borrowed.
+     */
+    public int getBorrowedCount() {
+        if (permits == null) {
+            return Math.max(0, size.get() - idle.get());
+        }
+        return Math.max(0, maxSize - permits.availablePermits());
+    }
+    
+    /**
+     * Returns the total number of borrowed objects.
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+    
+    /**
+     * Returns the total number of borrows that had to wait for an object.
+     */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+    
+    /**
+     * Returns the total time in nanoseconds spent waiting for objects.
+     */
+    public long getWaitTime() {
+        return waitTime.get();
+    }
+    
+    /**
+     * Returns the total number of borrows that timed out.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+    
+    /**
+     * Returns the total number of returned objects of which the hold time 
+     * has been recorded. Hold times are only recorded by adaptive pools.
+     */
+    public long getHoldCount() {
+        return holdCount.get();
+    }
+    
+    /**
+     * Returns the total time in nanoseconds that returned objects have been
+     * held, see {@code getHoldCount}.
+     */
+    public long getHoldTime() {
+        return holdTime.get();
+    }
+    
+    /**
+     * Returns the number of objects that are currently idle.
+     */
+    public int getIdleCount() {
+        return idle.get();
+    }
+    
+    /**
+     * Returns the number of live objects created by this pool, both idle and
+     * borrowed.
+     */
+    public int getSize() {
+        return size.get();
+    }
+    
+    /**
+     * Returns the sizer of this pool, or {@code null} if its size is not 
+     * adapted.
+     */
+    AdaptivePoolSizer getSizer() {
+        return sizer;
+    }
+    
+    /**
+     * Removes an idle object from this pool without borrowing it, or returns
+     * {@code null} if no object is idle. The caller becomes the owner of the
+     * object, which no longer counts towards the size of this pool.
+     */
+    ComponentObject<T> takeIdle() {
+        ComponentObject<T> object = unpark();
+        if (object != null) {
+            size.decrementAndGet();
+        }
+        return object;
+    }
+    
+    private synchronized void register() {
+        try {
+            ObjectName name = new ObjectName(
+                    "org.jargo:type=ComponentObjectPool,name=" + 
+                    ObjectName.quote(componentName));
+            Object mbean = sizer != null ? sizer : 
+                    new StandardMBean(this, ComponentObjectPoolMBean.class);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, 
+                    name);
+            objectName = name;
+        } catch (Exception e) {
+            // Management is optional, e.g., a second container in this VM.
+            logger.log(FINE, "Failed to register pool of '" + 
+                    componentName + "'.", e);
+        }
+    }
+    
+    private synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().
+                        unregisterMBean(objectName);
+            } catch (Exception e) {
+                logger.log(FINE, "Failed to unregister pool of '" + 
+                        componentName + "'.", e);
+            } finally {
+                objectName = null;
+            }
+        }
+    }
+    
+    private ComponentObject<T> newInstance() throws ComponentCreationException {
+        ComponentObjectBuilder<T> b = builder;
+        if (b == null || destroyed) {
+            throw new ComponentCreationException(componentName, 
+                    "Pool is not active.");
+        }
+        ComponentObject<T> object = b.newInstance();
+        size.incrementAndGet();
+        return object;
+    }
+    
+    private void recordHoldTime(ComponentObject<T> object) {
+        if (borrowTimes != null) {
+            Long since = borrowTimes.remove(object);
+            if (since != null) {
+                holdTime.addAndGet(System.nanoTime() - since);
+                holdCount.incrementAndGet();
+            }
+        }
+    }
+    
+    private void destroy(ComponentObject<T> object) {
+        size.decrementAndGet();
+        object.destroy();
+    }
+    
+    private void clear() {
+        ComponentObject<T> object;
+        while ((object = unpark()) != null) {
+            destroy(object);
+        }
+    }
+    
+    private void park(ComponentObject<T> object) {
+        idle.incrementAndGet();
+        if (!slots.compareAndSet(slot(), null, object)) {
+            push(object);
+        }
+    }
+    
+    private ComponentObject<T> unpark() {
+        ComponentObject<T> object = slots.getAndSet(slot(), null);
+        if (object == null) {
+            object = pop();
+            if (object == null) {
+                // Steal from the slots of other threads.
+                for (int i = 0; i <= mask && object == null; i++) {
+                    if (slots.get(i) != null) {
+                        object = slots.getAndSet(i, null);
+                    }
+                }
+            }
+        }
+        if (object != null) {
+            idle.decrementAndGet();
+        }
+        return object;
+    }
+    
+    private int slot() {
+        return (int) Thread.currentThread().getId() & mask;
+    }
+    
+    private void push(ComponentObject<T> object) {
+        Node<T> node = new Node<T>(object);
+        do {
+            node.next = overflow.get();
+        } while (!overflow.compareAndSet(node.next, node));
+    }
+    
+    private ComponentObject<T> pop() {
+        Node<T> node;
+        do {
+            node = overflow.get();
+            if (node == null) {
+                return null;
+            }
+        } while (!overflow.compareAndSet(node, node.next));
+        return node.object;
+    }
+    
+    private void acquirePermit() throws ComponentCreationException {
+        if (permits == null || permits.tryAcquire()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            if (timeout < 0) {
+                permits.acquire();
+            } else if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new ComponentCreationException(componentName, 
+                        "Timed out waiting for a pooled object after " + 
+                        timeout + " ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ComponentCreationException(componentName, e);
+        } finally {
+            waitCount.incrementAndGet();
+            waitTime.addAndGet(System.nanoTime() - start);
+        }
+    }
+    
+    private void releasePermit() {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+    
+    /**
+     * Semaphore of which the number of permits can be reduced.
+     */
+    private static final class Permits extends Semaphore {
+        
+        private static final long serialVersionUID = 2113681881089376856L;
+        
+        public Permits(int permits) {
+            super(permits);
+        }
+        
+        public void reduce(int reduction) {
+            reducePermits(reduction);
+        }
+    }
+    
+    private static final class Node<T> {
+        
+        private final ComponentObject<T> object;
+        private Node<T> next;
+        
+        public Node(ComponentObject<T> object) {
+            this.object = object;
+        }
+    }
+}
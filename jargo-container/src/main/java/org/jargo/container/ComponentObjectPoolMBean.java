@@ -0,0 +1,82 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+/**
+ * Management interface of a component object pool created by the 
+ * {@link ComponentObjectPoolProvider}, exposed through JMX under the 
+ * {@code org.jargo:type=ComponentObjectPool,name=<componentName>} object 
+ * name. Adaptive pools are exposed through the extended 
+ * {@link AdaptivePoolSizerMBean} interface.
+ * 
+ * @author Leon van Zantvoort
+ */
+public interface ComponentObjectPoolMBean {
+    
+    String getComponentName();
+    
+    /**
+     * Returns the maximum number of borrowed objects, or {@code 0} if the 
+     * pool is unbounded.
+     */
+    int getMaxSize();
+    
+    /**
+     * Returns the number of live objects created by the pool, both idle and
+     * borrowed.
+     */
+    int getSize();
+    
+    /**
+     * Returns the number of objects that are currently idle.
+     */
+    int getIdleCount();
+    
+    /**
+     * Returns the number of objects that are currently borrowed.
+     */
+    int getBorrowedCount();
+    
+    /**
+     * Returns the total number of borrowed objects.
+     */
+    long getBorrowCount();
+    
+    /**
+     * Returns the total number of borrows that had to wait for an object.
+     */
+    long getWaitCount();
+    
+    /**
+     * Returns the total number of borrows that timed out.
+     */
+    long getTimeoutCount();
+}
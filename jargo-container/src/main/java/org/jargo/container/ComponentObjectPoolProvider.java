@@ -0,0 +1,126 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import org.jargo.ComponentConfiguration;
+import org.jargo.ComponentObjectFactory;
+import org.jargo.deploy.SequentialDeployable;
+import org.jargo.spi.ComponentObjectFactoryProvider;
+
+/**
+ * Provides a pool of component objects for every component that is not 
+ * handled by another {@code ComponentObjectFactoryProvider}. To use it, list
+ * this class in a {@code META-INF/services/org.jargo.deploy.Deployable} 
+ * resource.
+ * 
+ * <p>Pools are configured through system properties. Each property can be 
+ * specified for all components, or for a single component by inserting the 
+ * component name, as in {@code org.jargo.pool.<componentName>.maxSize}:</p>
+ * <ul>
+ * <li>{@code org.jargo.pool.minSize} - initial size of the pool, the 
+ * objects created in parallel before the component is activated. The pool
+ * does not create objects to stay at this size afterwards. Defaults to 
+ * {@code 0}.</li>
+ * <li>{@code org.jargo.pool.maxSize} - maximum number of borrowed objects,
+ * defaults to {@code 0} (unbounded).</li>
+ * <li>{@code org.jargo.pool.maxIdle} - maximum number of idle objects, 
+ * defaults to {@code maxSize}, or unbounded if {@code maxSize} is 
+ * {@code 0}.</li>
+ * <li>{@code org.jargo.pool.timeout} - maximum time in milliseconds to wait 
+ * for an object, defaults to {@code -1} (indefinitely).</li>
+ * <li>{@code org.jargo.pool.adaptive} - if {@code true}, the size of a 
+ * bounded pool is adapted to the load between {@code minSize} and 
+ * {@code maxSize}, see {@link AdaptivePoolSizer}. Defaults to 
+ * {@code false}.</li>
+ * <li>{@code org.jargo.pool.threadAffine} - if {@code true}, each calling 
+ * thread keeps its own object, see {@link ThreadAffineComponentObjectPool}.
+ * The pool configured by the other properties is used for reentrant calls. 
+ * Defaults to {@code false}.</li>
+ * </ul>
+ * 
+ * <p>Every pool is exposed through JMX, see 
+ * {@link ComponentObjectPoolMBean}.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+public final class ComponentObjectPoolProvider implements 
+        ComponentObjectFactoryProvider {
+    
+    public Sequence sequence(SequentialDeployable deployable) {
+        // Only used if no other provider handles the component.
+        return deployable instanceof ComponentObjectFactoryProvider ? 
+                Sequence.AFTER : Sequence.EQUAL;
+    }
+    
+    public <T> ComponentObjectFactory<T> getComponentObjectFactory(
+            ComponentConfiguration<T> configuration) {
+        String name = configuration.getComponentName();
+        int minSize = (int) getLong(name, "minSize", 0);
+        int maxSize = (int) getLong(name, "maxSize", 0);
+        int maxIdle = (int) getLong(name, "maxIdle", 
+                maxSize > 0 ? maxSize : Integer.MAX_VALUE);
+        long timeout = getLong(name, "timeout", -1);
+        boolean adaptive = Boolean.valueOf(getProperty(name, "adaptive"));
+        ComponentObjectPoolImpl<T> pool = new ComponentObjectPoolImpl<T>(name, 
+                minSize, maxSize, Math.max(minSize, maxIdle), timeout, 
+                adaptive);
+        if (Boolean.valueOf(getProperty(name, "threadAffine"))) {
+            return new ThreadAffineComponentObjectPool<T>(name, pool);
+        }
+        return pool;
+    }
+    
+    private static long getLong(String componentName, String key, 
+            long defaultValue) {
+        String value = getProperty(componentName, key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+    
+    /**
+     * Returns the value of the pool property {@code key} for the specified 
+     * component, or {@code null} if the property is not set.
+     */
+    static String getProperty(final String componentName, final String key) {
+        return AccessController.doPrivileged(new PrivilegedAction<String>() {
+            public String run() {
+                // PERMISSION: java.util.PropertyPermission "org.jargo.*" "read"
+                String value = System.getProperty("org.jargo.pool." + 
+                        componentName + "." + key);
+                if (value == null) {
+                    value = System.getProperty("org.jargo.pool." + key);
+                }
+                return value;
+            }
+        });
+    }
+}
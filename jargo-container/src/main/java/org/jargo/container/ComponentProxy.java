@@ -30,14 +30,15 @@
  */
 package org.jargo.container;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import org.jargo.ComponentConfiguration;
+import org.jargo.AsyncComponentReference;
 import org.jargo.ComponentException;
 import org.jargo.ComponentReference;
 import org.jargo.Event;
-import org.jargo.EventFactory;
 import org.jargo.ComponentExceptionHandler;
 import org.jargo.ComponentMetaData;
 
@@ -46,72 +47,88 @@ import org.jargo.ComponentMetaData;
  */
 final class ComponentProxy<T> implements InvocationHandler {
 
-    private static final Method	HASH_CODE;
-    private static final Method	EQUALS;
-    private static final Method	TO_STRING;
-    
-    static {
+    /**
+     * Returns the constructor of the proxy class of the specified component.
+     * The constructor takes the invocation handler as its only argument.
+     */
+    public static Constructor<?> getProxyConstructor(
+            ComponentMetaData<?> metaData) {
+        Class<?> cls = Proxy.getProxyClass(metaData.getComponentUnit().
+                getClassLoader(), metaData.getInterfaces().toArray(new Class[0]));
         try {
-            Class<?> type = Object.class;
-            HASH_CODE = type.getMethod("hashCode");
-            EQUALS = type.getMethod("equals", new Class[]{type});
-            TO_STRING = type.getMethod("toString");
+            return cls.getConstructor(InvocationHandler.class);
         } catch (NoSuchMethodException e) {
-            throw new ExceptionInInitializerError(e);
+            throw new InternalError(e.toString());
         }
     }
     
-    public static <T> T getComponentProxy(ComponentReference<T> reference,
-            ComponentRegistry registry) {
-        ComponentMetaData<T> metaData = reference.getComponentMetaData();
-        
-        @SuppressWarnings("unchecked")
-        T proxy = (T) Proxy.newProxyInstance(metaData.getComponentUnit().
-                getClassLoader(), metaData.getInterfaces().toArray(new Class[0]), 
-                new ComponentProxy(reference, registry));
-        return proxy;
+    public static <T> T getComponentProxy(Constructor<?> constructor,
+            ComponentReference<T> reference, CallSiteTable callSites, 
+            ComponentExceptionHandler exceptionHandler) {
+        try {
+            @SuppressWarnings("unchecked")
+            T proxy = (T) constructor.newInstance(new ComponentProxy<T>(
+                    reference, callSites, exceptionHandler));
+            return proxy;
+        } catch (InvocationTargetException e) {
+            throw new InternalError(e.getTargetException().toString());
+        } catch (InstantiationException e) {
+            throw new InternalError(e.toString());
+        } catch (IllegalAccessException e) {
+            throw new InternalError(e.toString());
+        }
     }
     
     private final ComponentReference<T> reference;
-    private final EventFactory eventFactory;
+    private final CallSiteTable callSites;
     private final ComponentExceptionHandler exceptionHandler;
     
     private ComponentProxy(ComponentReference<T> reference, 
-            ComponentRegistry registry) {
-        String name = reference.getComponentMetaData().getComponentName();
+            CallSiteTable callSites, ComponentExceptionHandler exceptionHandler) {
         this.reference = reference;
-        ComponentConfiguration configuration = registry.
-                getComponentConfiguration(name);
-        this.eventFactory = registry.getEventFactory(configuration);
-        this.exceptionHandler = registry.getComponentExceptionHandler(configuration);
+        this.callSites = callSites;
+        this.exceptionHandler = exceptionHandler;
+    }
+    
+    ComponentReference<T> getReference() {
+        return reference;
     }
     
     public Object invoke(Object proxy, Method method, Object[] args) throws
             Throwable {
-        if (method.equals(HASH_CODE)) {
-            return reference.hashCode();
-        } else if (method.equals(EQUALS)) {
-            Object o = args[0];
-            if (o != null) {
-                if (Proxy.isProxyClass(o.getClass())) {
-                    InvocationHandler h = Proxy.getInvocationHandler(o);
-                    if (h instanceof ComponentProxy) {
-                        return reference.equals(((ComponentProxy) h).reference);
-                    }
-                }
-            }
-            return false;
-        } else if (method.equals(TO_STRING)) {
-            return toString();
+        CallSite site = callSites.get(method);
+        switch (site.getKind()) {
+            case CallSite.HASH_CODE:
+                return reference.hashCode();
+            case CallSite.EQUALS:
+                ComponentReference<?> other = 
+                        ComponentProxyFactory.getReference(args[0]);
+                return other != null && reference.equals(other);
+            case CallSite.TO_STRING:
+                return toString();
+            default:
+                break;
         }
         
+        // Looked up once for the call, only needed if events are recycled.
+        InvocationFrame frame = site.isRecycling() ? 
+                InvocationFrame.current() : null;
+        Event event = null;
+        Object result;
         try {
-            Event event = eventFactory.getEvent(method, args);
-            return reference.execute(event);
+            event = site.getEvent(args, frame);
+            if (site.getKind() == CallSite.ASYNC_EVENT) {
+                return ((AsyncComponentReference<T>) reference).executeAsync(
+                        event);
+            }
+            result = reference.execute(event);
         } catch (ComponentException e) {
+            // The event is not recycled, the exception may refer to it.
             exceptionHandler.onException(method, e);
             return null;
         }
+        site.release(event, frame);
+        return result;
     }
     
     public String toString() {
@@ -0,0 +1,318 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static java.util.logging.Level.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.NoOp;
+import org.jargo.AsyncComponentReference;
+import org.jargo.ComponentException;
+import org.jargo.ComponentExceptionHandler;
+import org.jargo.ComponentMetaData;
+import org.jargo.ComponentReference;
+import org.jargo.Event;
+
+/**
+ * Creates the proxies of a single component. If CGLib is available, a proxy 
+ * class is generated for the component's interfaces in which every method 
+ * has a callback of its own, bound to the method's {@code CallSite} when the
+ * class is built. Calls are therefore dispatched without looking up the 
+ * call site. New proxies are copies of a prototype instance. Otherwise, or
+ * if generation fails, {@link ComponentProxy} is used.
+ * 
+ * <p>Generated proxies can be disabled by setting the 
+ * {@code org.jargo.generatedProxies} system property to {@code false}.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+final class ComponentProxyFactory<T> {
+    
+    private static final boolean generated;
+    
+    static {
+        final boolean[] b = new boolean[1];
+        AccessController.doPrivileged(new PrivilegedAction<Object>() {
+            public Object run() {
+                // PERMISSION: java.util.PropertyPermission "org.jargo.*" "read"
+                b[0] = !"false".equalsIgnoreCase(
+                        System.getProperty("org.jargo.generatedProxies"));
+                return null;
+            }
+        });
+        generated = b[0] && VanillaProxyGenerator.isCGLibSupported();
+    }
+    
+    /**
+     * Returns the reference that backs the specified component proxy, or 
+     * {@code null} if {@code o} is not a component proxy.
+     */
+    public static ComponentReference<?> getReference(Object o) {
+        if (o == null) {
+            return null;
+        }
+        if (Proxy.isProxyClass(o.getClass())) {
+            InvocationHandler h = Proxy.getInvocationHandler(o);
+            if (h instanceof ComponentProxy) {
+                return ((ComponentProxy) h).getReference();
+            }
+        } else if (o instanceof AbstractComponentProxy) {
+            return ((AbstractComponentProxy) o).reference;
+        }
+        return null;
+    }
+    
+    private final Logger logger;
+    private final ComponentMetaData<T> metaData;
+    private final CallSiteTable callSites;
+    private final ComponentExceptionHandler exceptionHandler;
+    
+    private volatile AbstractComponentProxy prototype;
+    private volatile Constructor<?> constructor;
+    private volatile boolean fallback;
+    
+    public ComponentProxyFactory(ComponentMetaData<T> metaData, 
+            CallSiteTable callSites, ComponentExceptionHandler exceptionHandler) {
+        this.logger = Logger.getLogger(getClass().getName());
+        this.metaData = metaData;
+        this.callSites = callSites;
+        this.exceptionHandler = exceptionHandler;
+        this.fallback = !generated;
+    }
+    
+    public T newProxy(ComponentReference<T> reference) {
+        AbstractComponentProxy p = getPrototype();
+        if (p == null) {
+            return ComponentProxy.getComponentProxy(getConstructor(), 
+                    reference, callSites, exceptionHandler);
+        }
+        // The callbacks are shared by all proxies of the component, only the
+        // reference differs.
+        @SuppressWarnings("unchecked")
+        T proxy = (T) p.copy(reference);
+        return proxy;
+    }
+    
+    private Constructor<?> getConstructor() {
+        Constructor<?> c = constructor;
+        if (c == null) {
+            // Racy initialization is harmless, Proxy caches the class.
+            c = ComponentProxy.getProxyConstructor(metaData);
+            constructor = c;
+        }
+        return c;
+    }
+    
+    private AbstractComponentProxy getPrototype() {
+        AbstractComponentProxy p = prototype;
+        if (p == null && !fallback) {
+            synchronized (this) {
+                p = prototype;
+                if (p == null && !fallback) {
+                    try {
+                        p = generate();
+                        prototype = p;
+                    } catch (RuntimeException e) {
+                        fail(e);
+                    } catch (LinkageError e) {
+                        fail(e);
+                    }
+                }
+            }
+        }
+        return p;
+    }
+    
+    private void fail(Throwable t) {
+        fallback = true;
+        logger.log(WARNING, "Failed to generate proxy class for '" + 
+                metaData.getComponentName() + "'. Falling back to " +
+                "java.lang.reflect.Proxy.", t);
+    }
+    
+    private AbstractComponentProxy generate() {
+        // One callback slot per method signature, in signature order, so that
+        // the callback filter of a cached class matches. Slot 0 passes the 
+        // remaining methods of Object to the superclass.
+        final Map<String, Integer> slots = new HashMap<String, Integer>();
+        Map<String, CallSite> sites = getCallSitesBySignature();
+        Callback[] cbs = new Callback[sites.size() + 1];
+        Class[] types = new Class[cbs.length];
+        cbs[0] = NoOp.INSTANCE;
+        types[0] = NoOp.class;
+        int slot = 1;
+        for (Map.Entry<String, CallSite> entry : sites.entrySet()) {
+            slots.put(entry.getKey(), slot);
+            cbs[slot] = new MethodHandler(entry.getValue(), exceptionHandler);
+            types[slot] = net.sf.cglib.proxy.InvocationHandler.class;
+            slot++;
+        }
+        
+        Enhancer enhancer = new Enhancer();
+        ClassLoader loader = metaData.getComponentUnit().getClassLoader();
+        if (loader != null) {
+            enhancer.setClassLoader(loader);
+        }
+        Class[] interfaces = metaData.getInterfaces().toArray(new Class[0]);
+        enhancer.setSuperclass(AbstractComponentProxy.class);
+        enhancer.setInterfaces(interfaces);
+        enhancer.setCallbackTypes(types);
+        enhancer.setCallbackFilter(new CallbackFilter() {
+            public int accept(Method method) {
+                Integer slot = slots.get(signatureOf(method));
+                return slot == null ? 0 : slot;
+            }
+        });
+        enhancer.setUseFactory(false);
+        enhancer.setUseCache(false);
+        Class cls = ProxyClassCache.instance().getProxyClass(loader, 
+                AbstractComponentProxy.class, interfaces, "sites", enhancer);
+        if (!AbstractComponentProxy.class.isAssignableFrom(cls)) {
+            throw new ComponentException(metaData.getComponentName(), 
+                    "Class loader does not share " + 
+                    AbstractComponentProxy.class.getName() + ".");
+        }
+        
+        Enhancer.registerCallbacks(cls, cbs);
+        try {
+            return (AbstractComponentProxy) cls.newInstance();
+        } catch (InstantiationException e) {
+            throw new ComponentException(metaData.getComponentName(), e);
+        } catch (IllegalAccessException e) {
+            throw new ComponentException(metaData.getComponentName(), e);
+        } finally {
+            Enhancer.registerCallbacks(cls, null);
+        }
+    }
+    
+    /**
+     * Returns the call site of each method signature of the proxy, sorted by
+     * signature. If several interfaces declare the same signature, the call 
+     * site of the first of these interfaces is used, as 
+     * {@code java.lang.reflect.Proxy} does.
+     */
+    private Map<String, CallSite> getCallSitesBySignature() {
+        Map<String, CallSite> sites = new TreeMap<String, CallSite>();
+        for (CallSite site : callSites.getCallSites()) {
+            if (site.getMethod().getDeclaringClass() == Object.class) {
+                sites.put(signatureOf(site.getMethod()), site);
+            }
+        }
+        for (Class<?> cls : metaData.getInterfaces()) {
+            for (Method method : cls.getMethods()) {
+                String signature = signatureOf(method);
+                if (!sites.containsKey(signature)) {
+                    sites.put(signature, callSites.get(method));
+                }
+            }
+        }
+        return sites;
+    }
+    
+    private static String signatureOf(Method method) {
+        StringBuilder builder = new StringBuilder(method.getName());
+        builder.append('(');
+        for (Class<?> type : method.getParameterTypes()) {
+            builder.append(type.getName()).append(';');
+        }
+        return builder.append(')').toString();
+    }
+    
+    /**
+     * Dispatches the calls of a single method of a proxy to its 
+     * {@code CallSite}.
+     */
+    private static final class MethodHandler implements 
+            net.sf.cglib.proxy.InvocationHandler {
+        
+        private final CallSite site;
+        private final int kind;
+        private final ComponentExceptionHandler exceptionHandler;
+        
+        public MethodHandler(CallSite site, 
+                ComponentExceptionHandler exceptionHandler) {
+            this.site = site;
+            this.kind = site.getKind();
+            this.exceptionHandler = exceptionHandler;
+        }
+        
+        public Object invoke(Object proxy, Method method, Object[] args) throws
+                Throwable {
+            ComponentReference<?> reference = 
+                    ((AbstractComponentProxy) proxy).reference;
+            switch (kind) {
+                case CallSite.HASH_CODE:
+                    return reference.hashCode();
+                case CallSite.EQUALS:
+                    ComponentReference<?> other = getReference(args[0]);
+                    return other != null && reference.equals(other);
+                case CallSite.TO_STRING:
+                    return "ComponentProxy{name=" + reference.
+                            getComponentMetaData().getComponentName() + 
+                            "}@" + Integer.toHexString(reference.hashCode());
+                default:
+                    break;
+            }
+            
+            // Looked up once for the call, only needed if events are 
+            // recycled.
+            InvocationFrame frame = site.isRecycling() ? 
+                    InvocationFrame.current() : null;
+            Event event = null;
+            Object result;
+            try {
+                event = site.getEvent(args, frame);
+                if (kind == CallSite.ASYNC_EVENT) {
+                    return ((AsyncComponentReference<?>) reference).
+                            executeAsync(event);
+                }
+                result = reference.execute(event);
+            } catch (ComponentException e) {
+                // The event is not recycled, the exception may refer to it.
+                exceptionHandler.onException(site.getMethod(), e);
+                return null;
+            }
+            site.release(event, frame);
+            return result;
+        }
+    }
+}
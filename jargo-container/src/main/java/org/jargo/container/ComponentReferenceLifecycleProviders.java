@@ -48,12 +48,23 @@ final class ComponentReferenceLifecycleProviders extends
     
     public <T> List<ComponentReferenceLifecycle<T>> getComponentReferenceLifecycles(
             ComponentConfiguration<T> configuration, Executor executor) {
-        // Result must not be cached.
+        // Result must not be cached. Called for every reference, the list is
+        // only created if a provider returns lifecycles.
         List<ComponentReferenceLifecycle<T>> componentReferenceLifecycles = 
-                new ArrayList<ComponentReferenceLifecycle<T>>();
+                null;
         for (ComponentReferenceLifecycleProvider provider : getProviders()) {
-            componentReferenceLifecycles.addAll(provider.
-                    getComponentReferenceLifecycles(configuration, executor));
+            List<ComponentReferenceLifecycle<T>> list = provider.
+                    getComponentReferenceLifecycles(configuration, executor);
+            if (!list.isEmpty()) {
+                if (componentReferenceLifecycles == null) {
+                    componentReferenceLifecycles = 
+                            new ArrayList<ComponentReferenceLifecycle<T>>();
+                }
+                componentReferenceLifecycles.addAll(list);
+            }
+        }
+        if (componentReferenceLifecycles == null) {
+            return Collections.emptyList();
         }
         return Collections.unmodifiableList(componentReferenceLifecycles);
     }
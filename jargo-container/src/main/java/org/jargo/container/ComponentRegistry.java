@@ -41,10 +41,19 @@ interface ComponentRegistry {
 
     void shutdown();
 
+    ReferenceReaperMBean getReferenceReaper();
+
     Providers getProviders();
     
     void create(ComponentConfiguration<?> configuration);
     
+    /**
+     * Creates all specified components at once. Providers are resolved for 
+     * all components, possibly in parallel, before any of them is published.
+     * Either all components are created, or none.
+     */
+    void createAll(List<ComponentConfiguration<?>> configurations);
+    
     void destroy(String componentName);
     
     void activate(ManagedComponentContext<?> ctx);
@@ -93,6 +102,13 @@ interface ComponentRegistry {
             ComponentConfiguration<?> configuration) throws 
             ComponentNotFoundException;
     
+    /**
+     * Returns the event type dispatch structure shared by all references 
+     * and component objects of the specified component.
+     */
+    EventTypeIndex getEventTypeIndex(ComponentConfiguration<?> configuration)
+            throws ComponentNotFoundException;
+    
     ExecutorHandle getExecutorHandle(ComponentConfiguration<?> configuration) 
             throws ComponentNotFoundException;
     
@@ -30,17 +30,17 @@
  */
 package org.jargo.container;
 
-import java.lang.ref.ReferenceQueue;
-import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.*;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -63,48 +63,56 @@ import org.jargo.ComponentObjectPool;
 import org.jargo.ComponentException;
 import org.jargo.ComponentFactory;
 import org.jargo.ComponentObject;
+import org.jargo.ComponentObjectBuilder;
 import org.jargo.ComponentObjectFactory;
 import org.jargo.Event;
 import org.jargo.EventInterceptorFactory;
 import org.jargo.InvocationInterceptorFactory;
+import org.jargo.PrewarmedComponentObjectFactory;
 
 /**
  * @author Leon van Zantvoort
  */
 final class ComponentRegistryImpl implements ComponentRegistry {
 
-    private final AtomicBoolean shutdown = new AtomicBoolean(false);
-    private final BlockingQueue<Set<Thread>> threadQueue = new ArrayBlockingQueue<Set<Thread>>(1, false);
-
     private final Logger logger;
     
     private final ReadWriteLock lock;
     
     private final Providers providers;
     
-    private final Map<String, ComponentConfiguration> componentConfigurations;
+    private final ConcurrentMap<String, ComponentConfiguration> componentConfigurations;
     
     /**
      * Holds the component context of activated components.
      */
-    private final Map<ComponentConfiguration, ManagedComponentContext> componentContexts;
-    
-    private final Map<ComponentConfiguration, ComponentObjectFactory> componentObjectFactories;
-    private final Map<ComponentConfiguration, EventFactory> eventFactories;
-    private final Map<ComponentConfiguration, InvocationFactory> invocationFactories;
-    private final Map<ComponentConfiguration, List<ComponentLifecycle>> componentLifecycles;
-    private final Map<ComponentConfiguration, ComponentMetaData> componentMetaData;
-    private final Map<ComponentConfiguration, ExecutorHandle> executorHandles;
-    private final Map<ComponentConfiguration, ComponentExceptionHandler> componentExceptionHandlers;
-    private final Map<String, Set<WeakComponentReference>> references;
-
-    private final Map<WeakReference<StrongComponentReference>, WeakComponentReference> weakReferences;
-    private final ReferenceQueue<StrongComponentReference> queue;
+    private final ConcurrentMap<ComponentConfiguration, ManagedComponentContext> componentContexts;
+    
+    /**
+     * Holds an immutable record per registered component. Entries are only 
+     * added or removed under the write lock, but can be read without locking.
+     */
+    private final ConcurrentMap<ComponentConfiguration, ComponentEntry> entries;
+    
+    private final ReferenceReaper reaper;
 
     private final Map<String, String> aliases;
     private final Map<String, String> overrideAliases;
     
-    private final Map<Class<?>, List<ComponentFactory<Object>>> typeCache;  // TODO Cache can be optimized.
+    /**
+     * Immutable alias to component name table, in which override aliases
+     * take precedence over normal aliases. Rebuilt under the write lock 
+     * whenever an alias is added or removed.
+     */
+    private volatile Map<String, String> aliasTable;
+    
+    private final ComponentTypeIndex typeIndex;
+    
+    /**
+     * Immutable snapshot of the factories of all registered components. 
+     * Replaced under the write lock by {@code create} and {@code destroy}.
+     */
+    private volatile List<ComponentFactory<?>> factories;
     
     public ComponentRegistryImpl(Providers providers) {
         this.providers = providers;
@@ -112,264 +120,242 @@ final class ComponentRegistryImpl implements ComponentRegistry {
         
         // JCC-4: Fairness policy cannot be used with JSE5, it will result in a deadlock.
         this.lock = new ReentrantReadWriteLock(false);
-        this.componentConfigurations = new HashMap<String, ComponentConfiguration>();
-        this.componentContexts = new HashMap<ComponentConfiguration, ManagedComponentContext>();
-        this.componentObjectFactories = new HashMap<ComponentConfiguration, ComponentObjectFactory>();
-        this.eventFactories = new HashMap<ComponentConfiguration, EventFactory>();
-        this.invocationFactories = new HashMap<ComponentConfiguration, InvocationFactory>();
-        this.componentLifecycles = new HashMap<ComponentConfiguration, List<ComponentLifecycle>>();
-        this.componentMetaData = new HashMap<ComponentConfiguration, ComponentMetaData>();
-        this.executorHandles = new HashMap<ComponentConfiguration, ExecutorHandle>();
-        this.componentExceptionHandlers = new HashMap<ComponentConfiguration, ComponentExceptionHandler>();
-        this.references = new HashMap<String, Set<WeakComponentReference>>();
-
-        this.weakReferences = new HashMap<WeakReference<StrongComponentReference>, WeakComponentReference>();
-        this.queue = new ReferenceQueue<StrongComponentReference>();
+        this.componentConfigurations = new ConcurrentHashMap<String, ComponentConfiguration>();
+        this.componentContexts = new ConcurrentHashMap<ComponentConfiguration, ManagedComponentContext>();
+        this.entries = new ConcurrentHashMap<ComponentConfiguration, ComponentEntry>();
         
         this.aliases = new HashMap<String, String>();
         this.overrideAliases = new HashMap<String, String>();
+        this.aliasTable = Collections.emptyMap();
 
-        this.typeCache = new HashMap<Class<?>, List<ComponentFactory<Object>>>();
+        this.typeIndex = new ComponentTypeIndex();
+        this.factories = Collections.emptyList();
 
-        Set<Thread> backgroundThreads = new HashSet<Thread>();
-        final ThreadFactory detectorThreadFactory = JargoThreadFactory.
-                instance("Jargo-StallingReaperDetector");
-        Runnable detector = new Runnable() {
-            public void run() {
-                try {
-                    Object ref = null;
-                    while (!shutdown.get()) {
-                        Object tmp = queue.poll();
-                        if (ref != null) {
-                            if (ref == tmp) {
-                                // If this warning is printed, make a thread 
-                                // dump to check what the reaper threads are 
-                                // doing.
-                                logger.warning("Reference reaper is stalling. " +
-                                        "Cleaning up references takes more " +
-                                        "than 60 seconds.");
-                            }
-                            ref = tmp;
-                        }
-                        Thread.sleep(60000);
-                    }
-                } catch (InterruptedException e) {
-                    if (!shutdown.get()) {
-                        throw new ComponentApplicationException(e);
-                    }
-                } finally {
-                    if (!shutdown.get()) {
-                        try {
-                            Thread.sleep(5000);
-                        } catch (InterruptedException e) {
-                            // Ignore.
-                        } finally {
-                            Set<Thread> backgroundThreads = threadQueue.remove();
-                            try {
-                                if (!shutdown.get()) {
-                                    Thread t = detectorThreadFactory.newThread(this);
-                                    backgroundThreads.add(t);
-                                    t.start();
-                                }
-                            } finally {
-                                threadQueue.offer(backgroundThreads);
-                            }
-                        }
-                    }
-                }
-            }
-        };
-        Thread detectorThread = detectorThreadFactory.newThread(detector);
-        backgroundThreads.add(detectorThread);
-        detectorThread.start();
-
-        int processors = Runtime.getRuntime().availableProcessors();
-        final ThreadFactory reaperThreadFactory = JargoThreadFactory.
-                instance(processors == 1 ? "Jargo-ReferenceReaper" :
-                "Jargo-ConcurrentReferenceReaper");
-        for (int i = 0; i < processors; i++) {
-            Runnable reaper = new Runnable() {
-                public void run() {
-                    try {
-                        while (!shutdown.get()) {
-                            WeakComponentReference reference = weakReferences.
-                                    remove(queue.remove());
-                            assert reference != null;
-
-                            Lock writeLock = lock.writeLock();
-                            writeLock.lock();
-                            try {
-                                Set<WeakComponentReference> set = references.get(
-                                        reference.getComponentMetaData().getComponentName());
-                                if (set != null) {
-                                    boolean removed = set.remove(reference);
-                                    assert removed;
-                                }
-                            } finally {
-                                writeLock.unlock();
-                            }
-
-                            if (!reference.isRemoved()) {
-                                // This if-statement could be removed.
-                                reference.invalidate();
-                            }
-                        }
-                    } catch (InterruptedException e) {
-                        if (!shutdown.get()) {
-                            throw new ComponentApplicationException(e);
-                        }
-                    } finally {
-                        if (!shutdown.get()) {
-                            try {
-                                Thread.sleep(5000);
-                            } catch (InterruptedException e) {
-                                // Ignore.
-                            } finally {
-                                Set<Thread> backgroundThreads = threadQueue.remove();
-                                try {
-                                    if (!shutdown.get()) {
-                                        Thread t = reaperThreadFactory.newThread(this);
-                                        backgroundThreads.add(t);
-                                        t.start();
-                                    }
-                                } finally {
-                                    threadQueue.offer(backgroundThreads);
-                                }
-                            }
-                        }
-                    }
-                }
-            };
-            Thread reaperThread = reaperThreadFactory.newThread(reaper);
-            backgroundThreads.add(reaperThread);
-            reaperThread.start();
-            threadQueue.offer(backgroundThreads);
-        }
+        this.reaper = new ReferenceReaper(entries.values());
     }
 
-    @SuppressWarnings("finally")
     public void shutdown() {
-        if (!shutdown.getAndSet(true)) {
-            boolean interrupted = false;
-            for (final Thread t : threadQueue.remove()) {
-                try {
-                    AccessController.doPrivileged(
-                            new PrivilegedAction<Object>() {
-                                public Object run() {
-                                    // PERMISSION: java.lang.RuntimePermission modifyThread
-                                    t.interrupt();
-                                    return null;
-                                }
-                            });
-
-                    if (!interrupted) {
-                        t.join(5000);
-                    }
-                } catch (InterruptedException e) {
-                    interrupted = true;
-                } finally {
-                    continue;
-                }
-            }
-        }
+        reaper.shutdown();
+    }
+    
+    public ReferenceReaperMBean getReferenceReaper() {
+        return reaper;
     }
     
     public void create(final ComponentConfiguration<?> configuration) {
-        String componentName = configuration.getComponentName();
+        List<ComponentConfiguration<?>> list = 
+                new ArrayList<ComponentConfiguration<?>>(1);
+        list.add(configuration);
+        createAll(list);
+    }
+    
+    public void createAll(List<ComponentConfiguration<?>> configurations) {
+        // Providers are resolved outside the lock, all entries are published
+        // at once.
+        List<ComponentEntry<?>> resolved = resolveAll(configurations);
         boolean commit = false;
         try {
             Lock writeLock = lock.writeLock();
             writeLock.lock();
             try {
-                if (componentConfigurations.containsKey(componentName)) {
-                    throw new ComponentException(componentName,
-                            "Already exists.");
-                }
-                if (aliases.containsKey(componentName)) {
-                    throw new ComponentException(componentName,
-                            "Alias already exists.");
+                Set<String> names = new HashSet<String>();
+                for (ComponentEntry<?> entry : resolved) {
+                    String componentName = entry.getComponentConfiguration().
+                            getComponentName();
+                    if (componentConfigurations.containsKey(componentName) ||
+                            !names.add(componentName)) {
+                        throw new ComponentException(componentName,
+                                "Already exists.");
+                    }
+                    if (aliases.containsKey(componentName)) {
+                        throw new ComponentException(componentName,
+                                "Alias already exists.");
+                    }
                 }
                 
-                ComponentObjectFactory factory = providers.
-                        getComponentObjectFactoryProvider().
-                        getComponentObjectFactory(configuration);
-                if (factory == null) {
-                    throw new ComponentException(componentName,
-                            "No ComponentObjectFactory implementation found.");
+                List<ComponentFactory<?>> list = 
+                        new ArrayList<ComponentFactory<?>>(factories);
+                for (ComponentEntry<?> entry : resolved) {
+                    ComponentConfiguration<?> configuration = 
+                            entry.getComponentConfiguration();
+                    // Publish the entry before the name, so that anyone who 
+                    // can resolve the name also finds the entry.
+                    entries.put(configuration, entry);
+                    componentConfigurations.put(
+                            configuration.getComponentName(), configuration);
+                    list.add(entry.getComponentFactory());
                 }
-                EventFactory eventFactory = new EventFactories(configuration, providers);
-                InvocationFactory invocationFactory = new InvocationFactories(configuration, providers);
-
-                ComponentExceptionHandler exceptionHandler =
-                        providers.getComponentExceptionHandlerProvider().
-                        getComponentExceptionHandler(configuration);
-                if (exceptionHandler == null) {
-                    exceptionHandler = new DefaultComponentExceptionHandlerImpl();
+                typeIndex.register(resolved);
+                factories = Collections.unmodifiableList(list);
+            } finally {
+                writeLock.unlock();
+            }
+            commit = true;
+        } finally {
+            if (!commit) {
+                // Nothing has been published, only release what has been 
+                // acquired by this call.
+                for (ComponentEntry<?> entry : resolved) {
+                    entry.release();
                 }
-                componentExceptionHandlers.put(configuration, exceptionHandler);
-
-                ExecutorHandle executorHandle = providers.getExecutorHandleProvider().
-                        getExecutorHandle(configuration, JargoThreadFactory.
-                        instance("Jargo[" + configuration.getComponentName() + "]"));
-                if (executorHandle == null) {
-                    executorHandle = new DefaultExecutorHandleImpl();
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of threads configured through the 
+     * {@code org.jargo.threads} system property. Defaults to {@code 1}: 
+     * providers are not required to be thread-safe, so resolving and 
+     * prewarming in parallel is opt-in.
+     */
+    private static int getThreads() {
+        return AccessController.doPrivileged(new PrivilegedAction<Integer>() {
+            public Integer run() {
+                // PERMISSION: java.util.PropertyPermission org.jargo.threads read
+                return Integer.parseInt(System.getProperty("org.jargo.threads", 
+                        "1"));
+            }
+        });
+    }
+    
+    /**
+     * Resolves the entries for the specified {@code configurations}, in 
+     * parallel if more than one thread is configured through the 
+     * {@code org.jargo.threads} system property. Either all entries are 
+     * returned, or an exception is thrown.
+     */
+    private List<ComponentEntry<?>> resolveAll(
+            List<ComponentConfiguration<?>> configurations) {
+        int threads = Math.min(configurations.size(), getThreads());
+        List<ComponentEntry<?>> resolved = new ArrayList<ComponentEntry<?>>(
+                configurations.size());
+        boolean commit = false;
+        try {
+            if (threads <= 1) {
+                for (ComponentConfiguration<?> configuration : configurations) {
+                    resolved.add(resolve(configuration));
                 }
-                executorHandles.put(configuration, executorHandle);
-
-                @SuppressWarnings("unchecked")
-                List<ComponentLifecycle> lifecycles = 
-                        (List<ComponentLifecycle>) (List<?>) providers.
-                        getComponentLifecycleProvider().getComponentLifecycles(
-                        configuration, executorHandle.getExecutor());
+            } else {
+                List<Callable<ComponentEntry<?>>> callables = 
+                        new ArrayList<Callable<ComponentEntry<?>>>();
+                for (final ComponentConfiguration<?> configuration : 
+                        configurations) {
+                    callables.add(new Callable<ComponentEntry<?>>() {
+                        public ComponentEntry<?> call() {
+                            return resolve(configuration);
+                        }
+                    });
+                }
+                invokeAll(callables, threads, "Jargo-Resolver", resolved);
+            }
+            commit = true;
+            return resolved;
+        } finally {
+            if (!commit) {
+                for (ComponentEntry<?> entry : resolved) {
+                    entry.release();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Resolves all providers for the specified {@code configuration}. This
+     * method must be called without holding the registry lock.
+     */
+    private ComponentEntry<?> resolve(
+            final ComponentConfiguration<?> configuration) {
+        @SuppressWarnings("unchecked")
+        ComponentConfiguration<Object> cfg = 
+                (ComponentConfiguration<Object>) configuration;
+        String componentName = configuration.getComponentName();
+        ComponentObjectFactory<Object> factory = null;
+        ExecutorHandle executorHandle = null;
+        boolean commit = false;
+        try {
+            factory = providers.
+                    getComponentObjectFactoryProvider().
+                    getComponentObjectFactory(cfg);
+            if (factory == null) {
+                throw new ComponentException(componentName,
+                        "No ComponentObjectFactory implementation found.");
+            }
+            EventFactory eventFactory = new EventFactories(configuration, providers);
+            InvocationFactories invocationFactory = new InvocationFactories(
+                    configuration, providers, eventFactory.getEventTypes());
 
-                componentConfigurations.put(componentName, configuration);
-                componentObjectFactories.put(configuration, factory);
+            ComponentExceptionHandler exceptionHandler =
+                    providers.getComponentExceptionHandlerProvider().
+                    getComponentExceptionHandler(configuration);
+            if (exceptionHandler == null) {
+                exceptionHandler = new DefaultComponentExceptionHandlerImpl();
+            }
 
-                eventFactories.put(configuration, eventFactory);
-                invocationFactories.put(configuration, invocationFactory);
-                componentLifecycles.put(configuration, lifecycles);
-                
-                List<Class<?>> interfaces = eventFactory.getInterfaces();
-                boolean proxy = isProxy(configuration);
-                boolean vanilla = !(getComponentObjectFactory(configuration) 
-                        instanceof ComponentObjectPool);
-                if (!vanilla) {
-                    // Don't create reference set for vanilla components, because
-                    // storing references for such components would prevent them from
-                    // being garbage collected.
-                    references.put(componentName, new HashSet<WeakComponentReference>());
-                }
-                ComponentMetaData metaData = new ComponentMetaDataImpl(
-                        configuration, interfaces, vanilla, factory.isStatic(), 
-                        proxy, providers.getMetaDataProvider().
-                        getMetaData(configuration));
-                componentMetaData.put(configuration, metaData);
-                typeCache.clear();
-            } finally {
-                writeLock.unlock();
+            executorHandle = providers.getExecutorHandleProvider().
+                    getExecutorHandle(configuration, JargoThreadFactory.
+                    instance("Jargo[" + configuration.getComponentName() + "]"));
+            if (executorHandle == null) {
+                executorHandle = new DefaultExecutorHandleImpl();
             }
+
+            List<ComponentLifecycle<Object>> lifecycles = providers.
+                    getComponentLifecycleProvider().getComponentLifecycles(
+                    cfg, executorHandle.getExecutor());
+
+            List<Class<?>> interfaces = eventFactory.getInterfaces();
+            boolean proxy = isProxy(configuration, factory, eventFactory,
+                    invocationFactory);
+            // References of vanilla components are not tracked by their 
+            // entry, because storing references for such components 
+            // would prevent them from being garbage collected.
+            boolean vanilla = !(factory instanceof ComponentObjectPool);
+            @SuppressWarnings("unchecked")
+            ComponentMetaData<Object> metaData = new ComponentMetaDataImpl(
+                    configuration, interfaces, vanilla, factory.isStatic(), 
+                    proxy, providers.getMetaDataProvider().
+                    getMetaData(configuration));
+            
+            ComponentEntry<Object> entry = new ComponentEntry<Object>(cfg,
+                    factory, eventFactory, invocationFactory, 
+                    invocationFactory.getEventTypeIndex(), lifecycles,
+                    metaData, executorHandle, exceptionHandler, this);
             commit = true;
+            return entry;
         } catch (ComponentException e) {
             throw e;
         } catch (Exception e) {
             // PENDING: catch Errors as well?
-            throw new ComponentException(configuration.getComponentName(), e);
+            throw new ComponentException(componentName, e);
         } finally {
             if (!commit) {
-                destroy(componentName);
+                // Executors may have been obtained before the failure.
+                try {
+                    EventExecutorProviders.release(providers, configuration);
+                } finally {
+                    try {
+                        if (factory != null) {
+                            factory.destroy();
+                        }
+                    } finally {
+                        if (executorHandle != null) {
+                            executorHandle.destroy();
+                        }
+                    }
+                }
             }
         }
     }
 
-    private boolean isProxy(ComponentConfiguration<?> configuration) {
-        if (getComponentObjectFactory(configuration) instanceof ComponentObjectPool) {
+    private boolean isProxy(ComponentConfiguration<?> configuration,
+            ComponentObjectFactory<?> factory, EventFactory eventFactory,
+            InvocationFactory invocationFactory) {
+        if (factory instanceof ComponentObjectPool) {
             return true;
         }
-        if (getEventFactory(configuration).isProxy()) {
+        if (eventFactory.isProxy()) {
             return true;
         }
-        for (Class<? extends Event> type : getEventFactory(configuration).
-                getEventTypes()) {
+        for (Class<? extends Event> type : eventFactory.getEventTypes()) {
             List<EventInterceptorFactory> list = providers.
                     getEventInterceptorFactoryProvider().
                     getEventInterceptorFactories(configuration, type);
@@ -377,7 +363,7 @@ final class ComponentRegistryImpl implements ComponentRegistry {
                 return true;
             }
         }
-        for (Method method : getInvocationFactory(configuration).getMethods()) {
+        for (Method method : invocationFactory.getMethods()) {
             List<InvocationInterceptorFactory> list = providers.
                     getInvocationInterceptorFactoryProvider().
                     getInvocationInterceptorFactories(configuration, method);
@@ -385,7 +371,7 @@ final class ComponentRegistryImpl implements ComponentRegistry {
                 return true;
             }
         }
-        List<Class<?>> list = getEventFactory(configuration).getInterfaces();
+        List<Class<?>> list = eventFactory.getInterfaces();
         if (!list.isEmpty()) {
             return true;
         }
@@ -396,17 +382,8 @@ final class ComponentRegistryImpl implements ComponentRegistry {
      * Returns true component name.
      */
     public String getComponentName(String alias) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            String name = overrideAliases.get(alias);
-            if (name == null) {
-                name = aliases.get(alias);
-            }
-            return name == null ? alias : name;
-        } finally {
-            readLock.unlock();
-        }
+        String name = aliasTable.get(alias);
+        return name == null ? alias : name;
     }
     
     public void addAlias(ComponentAlias alias) {
@@ -430,6 +407,7 @@ final class ComponentRegistryImpl implements ComponentRegistry {
                 }
                 aliases.put(alias.getComponentAlias(), alias.getComponentName());
             }
+            rebuildAliasTable();
         } finally {
             writeLock.unlock();
         }
@@ -444,11 +422,21 @@ final class ComponentRegistryImpl implements ComponentRegistry {
             } else {
                 aliases.remove(alias.getComponentAlias());
             }
+            rebuildAliasTable();
         } finally {
             writeLock.unlock();
         }
     }
     
+    /**
+     * Must be called while holding the write lock.
+     */
+    private void rebuildAliasTable() {
+        Map<String, String> table = new HashMap<String, String>(aliases);
+        table.putAll(overrideAliases);
+        aliasTable = Collections.unmodifiableMap(table);
+    }
+    
     public <T> ComponentReference<T> createReference(
             ComponentConfiguration<T> configuration, Object info) throws 
             ComponentCreationException, ComponentNotActiveException {
@@ -456,24 +444,34 @@ final class ComponentRegistryImpl implements ComponentRegistry {
             final StrongComponentReference<T> strongRef;
             final WeakComponentReference<T> weakRef;
 
-            Lock writeLock = lock.writeLock();
-            writeLock.lock();
+            @SuppressWarnings("unchecked")
+            ComponentEntry<T> entry = (ComponentEntry<T>) entries.get(
+                    configuration);
+            @SuppressWarnings("unchecked")
+            ManagedComponentContext<T> ctx = 
+                    (ManagedComponentContext<T>) componentContexts.get(
+                    configuration);
+            if (entry == null || ctx == null) {
+                throw new ComponentNotActiveException(
+                        configuration.getComponentName());
+            }
+            
+            // Reference creation runs user code (factories, lifecycles), only
+            // serialize it per component. The registry lock is not required.
+            Lock componentLock = entry.getLock();
+            componentLock.lock();
             try {
-                @SuppressWarnings("unchecked")
-                ManagedComponentContext<T> ctx = 
-                        (ManagedComponentContext<T>) componentContexts.get(
-                        configuration);
-                if (ctx == null) {
+                if (entry.isDestroyed()) {
                     throw new ComponentNotActiveException(
                             configuration.getComponentName());
                 }
-                weakRef = new WeakComponentReference<T>(ctx, configuration,
+                weakRef = new WeakComponentReference<T>(ctx, entry,
                         this, info, new Destroyer());
                 ComponentMetaData<T> metaData = ctx.getComponentMetaData();
                 try {
                     ctx.attach(weakRef);
                     ComponentObjectFactory<T> factory = 
-                            getComponentObjectFactory(configuration);
+                            entry.getComponentObjectFactory();
                     if (metaData.isVanilla()) {
                         assert !(factory instanceof ComponentObjectPool);
                         ComponentObject<T> object = null;
@@ -492,31 +490,26 @@ final class ComponentRegistryImpl implements ComponentRegistry {
                         strongRef = null;
                     } else {
                         assert factory instanceof ComponentObjectPool;
-                        weakRef.setComponent(ComponentProxy.getComponentProxy(
-                                weakRef, this));
+                        weakRef.setComponent(entry.getProxyFactory().newProxy(
+                                weakRef));
                         if (!factory.isStatic()) {
                             factory.create();
                         }
                         strongRef = new StrongComponentReference<T>(weakRef);
-                        WeakReference<StrongComponentReference> weakReference = new WeakReference<StrongComponentReference>(strongRef, queue);
-                        Set<WeakComponentReference> set = references.get(metaData.getComponentName());
-                        assert set != null;
-                        boolean success = set.add(weakRef);
-                        assert success;
-                        weakReferences.put(weakReference, weakRef);
+                        reaper.track(entry, strongRef, weakRef);
                     }
                 } finally {
                     ctx.detach();
                 }
             } finally {
-                writeLock.unlock();
+                componentLock.unlock();
             }
             final ComponentReference<T> ref;
             if (strongRef == null) {
                 ref = weakRef;
             } else {
-                strongRef.setComponent(ComponentProxy.getComponentProxy(strongRef,
-                        this));
+                strongRef.setComponent(entry.getProxyFactory().newProxy(
+                        strongRef));
                 ref = strongRef;
             }    
             weakRef.init(ref);
@@ -531,8 +524,9 @@ final class ComponentRegistryImpl implements ComponentRegistry {
     }
     
     public void destroy(String componentName) {
-        Set<WeakComponentReference> refs = null;
+        Set<WeakComponentReference<Object>> refs = null;
         
+        ComponentEntry<Object> entry = null;
         ManagedComponentContext<Object> ctx = null;
         WeakComponentReference<Object> reference = null;
         ComponentObjectFactory<Object> factory = null;
@@ -541,50 +535,56 @@ final class ComponentRegistryImpl implements ComponentRegistry {
         Lock writeLock = lock.writeLock();
         writeLock.lock();
         try {
-            if (references.containsKey(componentName)) {
-                refs = references.get(componentName);
-            } else {
-                refs = Collections.emptySet();
-            }
-            references.remove(componentName);
-            
             @SuppressWarnings("unchecked")
             ComponentConfiguration<Object> configuration = 
                     (ComponentConfiguration<Object>)
                     componentConfigurations.get(componentName);
-            @SuppressWarnings("unchecked")
-            ComponentObjectFactory<Object> tmp1 = 
-                    (ComponentObjectFactory<Object>) componentObjectFactories.
-                    get(configuration);
-            @SuppressWarnings("unchecked")
-            ManagedComponentContext<Object> tmp2 = 
-                    (ManagedComponentContext<Object>) componentContexts.
-                    get(configuration);
-            factory = tmp1;
-            if (tmp2 != null) {
-                if (factory.isStatic()) {
-                    reference = new WeakComponentReference<Object>(tmp2, 
-                            configuration, this, null, new Destroyer());
-                    reference.setComponent(
-                            ComponentProxy.getComponentProxy(reference, this));
+            if (configuration != null) {
+                @SuppressWarnings("unchecked")
+                ComponentEntry<Object> tmpEntry = 
+                        (ComponentEntry<Object>) entries.get(configuration);
+                entry = tmpEntry;
+                @SuppressWarnings("unchecked")
+                ManagedComponentContext<Object> tmp = 
+                        (ManagedComponentContext<Object>) componentContexts.
+                        get(configuration);
+                factory = entry.getComponentObjectFactory();
+                if (tmp != null) {
+                    if (factory.isStatic()) {
+                        reference = new WeakComponentReference<Object>(tmp, 
+                                entry, this, null, new Destroyer());
+                        reference.setComponent(
+                                entry.getProxyFactory().newProxy(reference));
+                    }
                 }
+                ctx = tmp;
+                executorHandle = entry.getExecutorHandle();
+
+                // Unpublish the name before the entry, reverse order of create.
+                componentConfigurations.remove(componentName);
+                entries.remove(configuration);
+                componentContexts.remove(configuration);
+                typeIndex.unregister(configuration);
+                
+                List<ComponentFactory<?>> list = 
+                        new ArrayList<ComponentFactory<?>>(factories);
+                list.remove(entry.getComponentFactory());
+                factories = Collections.unmodifiableList(list);
             }
-            ctx = tmp2;
-            
-            executorHandle = executorHandles.remove(configuration);
-                       
-            eventFactories.remove(configuration);
-            invocationFactories.remove(configuration);
-            componentLifecycles.remove(configuration);
-            componentMetaData.remove(configuration);
-            typeCache.clear();
-            componentExceptionHandlers.remove(configuration);
-            
-            componentConfigurations.remove(componentName);
-            componentObjectFactories.remove(configuration);
-            componentContexts.remove(configuration);
         } finally {
             writeLock.unlock();
+            if (entry == null) {
+                refs = Collections.emptySet();
+            } else {
+                // Waits for references that are being created concurrently.
+                Lock componentLock = entry.getLock();
+                componentLock.lock();
+                try {
+                    refs = entry.destroy();
+                } finally {
+                    componentLock.unlock();
+                }
+            }
             try {
                 for (ComponentReference ref : refs) {
                     ref.invalidate();
@@ -604,8 +604,19 @@ final class ComponentRegistryImpl implements ComponentRegistry {
                         }
                     }
                 } finally {
-                    if (executorHandle != null) {
-                        executorHandle.destroy();
+                    try {
+                        if (executorHandle != null) {
+                            executorHandle.destroy();
+                        }
+                    } finally {
+                        if (entry != null) {
+                            // Objects recycled for this component are no 
+                            // longer needed.
+                            InvocationFrame.invalidateRecycled(
+                                    entry.getCallSites());
+                            InvocationFrame.invalidateRecycled(
+                                    entry.getInvocationFactory());
+                        }
                     }
                 }
             }
@@ -630,16 +641,21 @@ final class ComponentRegistryImpl implements ComponentRegistry {
         ComponentObjectBuilderImpl<Object> builder = 
                 new ComponentObjectBuilderImpl<Object>(tmp, configuration, this);
         try {
+            WeakComponentReference<Object> reference = null;
             if (factory.isStatic()) {
-                WeakComponentReference<Object> reference = 
-                        new WeakComponentReference<Object>(
-                        tmp, configuration, this, null, new Destroyer());
+                ComponentEntry<Object> entry = getEntry(configuration);
+                reference = new WeakComponentReference<Object>(
+                        tmp, entry, this, null, new Destroyer());
                 reference.setComponent(
-                        ComponentProxy.getComponentProxy(reference, this));
+                        entry.getProxyFactory().newProxy(reference));
                 tmp.attach(reference);
             }
             try {
                 factory.init(builder);
+                if (factory instanceof PrewarmedComponentObjectFactory) {
+                    prewarm(tmp, reference, builder, 
+                            (PrewarmedComponentObjectFactory<Object>) factory);
+                }
             } finally {
                 if (factory.isStatic()) {
                     tmp.detach();
@@ -656,239 +672,198 @@ final class ComponentRegistryImpl implements ComponentRegistry {
         }
     }
     
-    public boolean exists(String componentName, boolean useAlias) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
+    /**
+     * Creates the objects requested by the specified {@code factory} before
+     * the component is activated, so that first requests do not pay for 
+     * their construction. If the factory is static, {@code reference} is 
+     * attached to each of the creating threads.
+     */
+    private <T> void prewarm(final ManagedComponentContext<T> ctx, 
+            final ComponentReference<T> reference, 
+            final ComponentObjectBuilder<T> builder,
+            PrewarmedComponentObjectFactory<T> factory) {
+        int size = factory.getPrewarmSize();
+        if (size <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<ComponentObject<T>> objects = 
+                new ArrayList<ComponentObject<T>>(size);
+        boolean commit = false;
         try {
-            if (useAlias) {
-                componentName = getComponentName(componentName);
+            int threads = Math.min(size, getThreads());
+            if (threads <= 1) {
+                for (int i = 0; i < size; i++) {
+                    objects.add(builder.newInstance());
+                }
+            } else {
+                Callable<ComponentObject<T>> callable = 
+                        new Callable<ComponentObject<T>>() {
+                    public ComponentObject<T> call() {
+                        if (reference != null) {
+                            ctx.attach(reference);
+                        }
+                        try {
+                            return builder.newInstance();
+                        } finally {
+                            if (reference != null) {
+                                ctx.detach();
+                            }
+                        }
+                    }
+                };
+                List<Callable<ComponentObject<T>>> callables = 
+                        Collections.nCopies(size, callable);
+                invokeAll(callables, threads, "Jargo-Prewarm", objects);
             }
-            return componentConfigurations.containsKey(componentName);
+            factory.prewarm(objects);
+            commit = true;
         } finally {
-            readLock.unlock();
+            if (!commit) {
+                for (ComponentObject<T> object : objects) {
+                    object.destroy();
+                }
+            }
         }
+        logger.info("Prewarmed " + size + " object(s) of '" + 
+                ctx.getComponentMetaData().getComponentName() + "' in " + 
+                ((System.nanoTime() - start) / 1000000) + " ms.");
     }
     
-    public List<ComponentFactory<?>> list() {
-        Lock readLock = lock.readLock();
-        readLock.lock();
+    /**
+     * Calls the specified {@code callables} on a pool of {@code threads} 
+     * threads, and adds the results of those that succeeded to 
+     * {@code results}, in order, so that the caller can release them if 
+     * another one failed. Once all callables have completed, the first 
+     * failure is rethrown.
+     */
+    @SuppressWarnings("finally")
+    private static <V> void invokeAll(List<? extends Callable<V>> callables,
+            int threads, String threadName, List<? super V> results) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, 
+                JargoThreadFactory.instance(threadName));
         try {
-            List<ComponentFactory<?>> list = new ArrayList<ComponentFactory<?>>();
-            for (ComponentConfiguration<?> configuration : componentConfigurations.values()) {
-                @SuppressWarnings("unchecked")
-                ComponentConfiguration<Object> cfg = (ComponentConfiguration<Object>) configuration;
-                ComponentFactory<?> factory = new ComponentFactoryImpl<Object>(
-                        cfg, this);
-                list.add(factory);
+            Throwable throwable = null;
+            for (Future<V> future : executor.invokeAll(callables)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (throwable == null) {
+                        throwable = e.getCause();
+                    }
+                } finally {
+                    continue;
+                }
+            }
+            if (throwable instanceof RuntimeException) {
+                throw (RuntimeException) throwable;
+            } else if (throwable instanceof Error) {
+                throw (Error) throwable;
+            } else if (throwable != null) {
+                throw new ComponentApplicationException(throwable);
             }
-            return Collections.unmodifiableList(list);
+        } catch (InterruptedException e) {
+            throw new ComponentApplicationException(e);
         } finally {
-            readLock.unlock();
+            List<Runnable> runnables = executor.shutdownNow();
+            assert runnables.isEmpty();
         }
     }
+    
+    public boolean exists(String componentName, boolean useAlias) {
+        if (useAlias) {
+            componentName = getComponentName(componentName);
+        }
+        return componentConfigurations.containsKey(componentName);
+    }
+    
+    public List<ComponentFactory<?>> list() {
+        return factories;
+    }
 
     public <T> List<ComponentFactory<? extends T>> list(Class<T> type) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            List<ComponentFactory<Object>> list = null;
-            if (typeCache.containsKey(type)) {
-                list = typeCache.get(type);
-            } else {
-                for (Map.Entry<ComponentConfiguration, ComponentMetaData> e :
-                        componentMetaData.entrySet()) {
-                    ComponentConfiguration<?> configuration = e.getKey();
-                    ComponentMetaData<?> metaData = e.getValue();
-                    final List<Class<?>> types;
-                    if (metaData.isVanilla()) {
-                        types = new ArrayList<Class<?>>(metaData.getInterfaces());
-                        types.add(metaData.getType());
-                    } else {
-                        types = metaData.getInterfaces();
-                    }
-                    for (Class<?> t : types) {
-                        if (type.isAssignableFrom(t)) {
-                            @SuppressWarnings("unchecked")
-                            ComponentConfiguration<Object> cfg =
-                                    (ComponentConfiguration<Object>) configuration;
-                            ComponentFactory<Object> factory =
-                                    new ComponentFactoryImpl<Object>(cfg, this);
-                            if (list == null) {
-                                list = new ArrayList<ComponentFactory<Object>>();
-                            }
-                            list.add(factory);
-                            break;
-                        }
-                    }
-                }
-                typeCache.put(type, list);
-            }
-            @SuppressWarnings("unchecked")
-            List<ComponentFactory<? extends T>> tmp = (List<ComponentFactory<? extends T>>) (list == null ?
-                    Collections.<ComponentFactory<? extends T>>emptyList() :
-                    Collections.unmodifiableList(list));
-            return tmp;
-
-        } finally {
-            readLock.unlock();
-        }
+        // The index is updated incrementally under the write lock and lists
+        // are immutable, hence no locking is required here.
+        @SuppressWarnings("unchecked")
+        List<ComponentFactory<? extends T>> list = 
+                (List<ComponentFactory<? extends T>>) (List<?>) typeIndex.list(type);
+        return list;
     }
     
     public ComponentFactory<?> lookup(String componentName) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            String name = getComponentName(componentName);
-            @SuppressWarnings("unchecked")
-            ComponentConfiguration<Object> configuration = 
-                    (ComponentConfiguration<Object>) componentConfigurations.get(name);
-            if (configuration == null) {
-                throw new ComponentNotFoundException(componentName);
-            }
-            ComponentFactory<?> factory = new ComponentFactoryImpl<Object>(
-                    configuration, this);
-            return factory;
-        } finally {
-            readLock.unlock();
+        String name = getComponentName(componentName);
+        ComponentConfiguration<?> configuration = 
+                componentConfigurations.get(name);
+        ComponentEntry<?> entry = configuration == null ? null : 
+                entries.get(configuration);
+        if (entry == null) {
+            throw new ComponentNotFoundException(componentName);
         }
+        return entry.getComponentFactory();
     }
     
     public ComponentConfiguration<?> getComponentConfiguration(String componentName) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            ComponentConfiguration<?> configuration = componentConfigurations.
-                    get(componentName);
-            if (configuration == null) {
-                throw new ComponentNotFoundException(componentName);
-            }
-            return configuration;
-        } finally {
-            readLock.unlock();
+        ComponentConfiguration<?> configuration = componentConfigurations.
+                get(componentName);
+        if (configuration == null) {
+            throw new ComponentNotFoundException(componentName);
         }
+        return configuration;
+    }
+    
+    /**
+     * Returns the entry for the specified {@code configuration}. This method 
+     * does not acquire any lock.
+     */
+    private <T> ComponentEntry<T> getEntry(
+            ComponentConfiguration<T> configuration) throws 
+            ComponentNotFoundException {
+        @SuppressWarnings("unchecked")
+        ComponentEntry<T> entry = (ComponentEntry<T>) entries.get(configuration);
+        if (entry == null) {
+            throw new ComponentNotFoundException(
+                    configuration.getComponentName());
+        }
+        return entry;
     }
     
     public <T> List<ComponentLifecycle<T>> getComponentLifecycles(
             ComponentConfiguration<T> configuration) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            List<ComponentLifecycle<T>> lifecycles = 
-                    new ArrayList<ComponentLifecycle<T>>();
-            List<ComponentLifecycle> tmp = componentLifecycles.get(configuration);
-            if (lifecycles == null) {
-                throw new ComponentNotFoundException(
-                        configuration.getComponentName());
-            }
-            for (ComponentLifecycle lifecycle : tmp) {
-                @SuppressWarnings("unchecked")
-                ComponentLifecycle<T> t = (ComponentLifecycle<T>) lifecycle;
-                lifecycles.add(t);
-            }
-            return lifecycles;
-        } finally {
-            readLock.unlock();
-        }
+        return getEntry(configuration).getComponentLifecycles();
     }
     
     public <T> ComponentObjectFactory<T> getComponentObjectFactory(
             ComponentConfiguration<T> configuration) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            @SuppressWarnings("unchecked")
-            ComponentObjectFactory<T> factory = (ComponentObjectFactory<T>)
-                    componentObjectFactories.get(configuration);
-            if (factory == null) {
-                throw new ComponentNotFoundException(
-                        configuration.getComponentName());
-            }
-            return factory;
-        } finally {
-            readLock.unlock();
-        }
+        return getEntry(configuration).getComponentObjectFactory();
     }
     
     public EventFactory getEventFactory(
             ComponentConfiguration<?> configuration) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            EventFactory factory = eventFactories.get(configuration);
-            if (factory == null) {
-                throw new ComponentNotFoundException(
-                        configuration.getComponentName());
-            }
-            return factory;
-        } finally {
-            readLock.unlock();
-        }
+        return getEntry(configuration).getEventFactory();
     }
     
     public InvocationFactory getInvocationFactory(
             ComponentConfiguration<?> configuration) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            InvocationFactory factory = invocationFactories.get(configuration);
-            if (factory == null) {
-                throw new ComponentNotFoundException(
-                        configuration.getComponentName());
-            }
-            return factory;
-        } finally {
-            readLock.unlock();
-        }
+        return getEntry(configuration).getInvocationFactory();
+    }
+    
+    public EventTypeIndex getEventTypeIndex(
+            ComponentConfiguration<?> configuration) {
+        return getEntry(configuration).getEventTypeIndex();
     }
     
     public <T> ComponentMetaData<T> getComponentMetaData(
             ComponentConfiguration<T> configuration) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            @SuppressWarnings("unchecked")
-            ComponentMetaData<T> metaData = (ComponentMetaData<T>)
-                    componentMetaData.get(configuration);
-            if (metaData == null) {
-                throw new ComponentNotFoundException(
-                        configuration.getComponentName());
-            }
-            return metaData;
-        } finally {
-            readLock.unlock();
-        }
+        return getEntry(configuration).getComponentMetaData();
     }
     
     public ExecutorHandle getExecutorHandle(
             ComponentConfiguration<?> configuration) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            ExecutorHandle handle = executorHandles.get(configuration);
-            if (handle == null) {
-                throw new ComponentNotFoundException(
-                        configuration.getComponentName());
-            }
-            return handle;
-        } finally {
-            readLock.unlock();
-        }
+        return getEntry(configuration).getExecutorHandle();
     }
     
     public ComponentExceptionHandler getComponentExceptionHandler(
             ComponentConfiguration<?> configuration) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            ComponentExceptionHandler exceptionHandler =
-                    componentExceptionHandlers.get(configuration);
-            if (exceptionHandler == null) {
-                throw new ComponentNotFoundException(
-                        configuration.getComponentName());
-            }
-            return exceptionHandler;
-        } finally {
-            readLock.unlock();
-        }
+        return getEntry(configuration).getComponentExceptionHandler();
     }
 }
@@ -0,0 +1,168 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.jargo.ComponentConfiguration;
+import org.jargo.ComponentFactory;
+import org.jargo.ComponentMetaData;
+
+/**
+ * Maps types to the factories of all components that can be assigned to 
+ * them. Each component is indexed under the full closure of its exposed 
+ * types, including all super classes and interfaces. As a result, a lookup is 
+ * a single map probe, which does not require any locking.
+ * 
+ * <p>The index is updated incrementally. Mutating methods must be serialized
+ * by the caller, lists are replaced, never modified.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+final class ComponentTypeIndex {
+    
+    private final ConcurrentMap<Class<?>, List<ComponentFactory<Object>>> index;
+    private final Map<ComponentConfiguration, Registration> registrations;
+    
+    public ComponentTypeIndex() {
+        this.index = new ConcurrentHashMap<Class<?>, List<ComponentFactory<Object>>>();
+        this.registrations = new HashMap<ComponentConfiguration, Registration>();
+    }
+    
+    /**
+     * Adds the factories of the specified {@code entries} under all types 
+     * that can be assigned from the types exposed by these components. Each
+     * affected list is copied only once, regardless of the number of entries.
+     */
+    public void register(List<ComponentEntry<?>> entries) {
+        Map<Class<?>, List<ComponentFactory<Object>>> additions = 
+                new HashMap<Class<?>, List<ComponentFactory<Object>>>();
+        for (ComponentEntry<?> entry : entries) {
+            ComponentConfiguration<?> configuration = 
+                    entry.getComponentConfiguration();
+            assert !registrations.containsKey(configuration);
+            @SuppressWarnings("unchecked")
+            ComponentFactory<Object> factory = 
+                    (ComponentFactory<Object>) entry.getComponentFactory();
+            ComponentMetaData<?> metaData = entry.getComponentMetaData();
+            Set<Class<?>> closure = new LinkedHashSet<Class<?>>();
+            for (Class<?> type : metaData.getInterfaces()) {
+                addClosure(type, closure);
+            }
+            if (metaData.isVanilla()) {
+                addClosure(metaData.getType(), closure);
+            }
+            // Every type, including interfaces, can be assigned to Object.
+            closure.add(Object.class);
+            for (Class<?> type : closure) {
+                List<ComponentFactory<Object>> list = additions.get(type);
+                if (list == null) {
+                    list = new ArrayList<ComponentFactory<Object>>();
+                    additions.put(type, list);
+                }
+                list.add(factory);
+            }
+            registrations.put(configuration, new Registration(factory, closure));
+        }
+        for (Map.Entry<Class<?>, List<ComponentFactory<Object>>> e : 
+                additions.entrySet()) {
+            List<ComponentFactory<Object>> current = index.get(e.getKey());
+            List<ComponentFactory<Object>> list = current == null ?
+                    new ArrayList<ComponentFactory<Object>>() :
+                    new ArrayList<ComponentFactory<Object>>(current);
+            list.addAll(e.getValue());
+            index.put(e.getKey(), Collections.unmodifiableList(list));
+        }
+    }
+    
+    /**
+     * Removes the factory of the specified {@code configuration} from this
+     * index. This method is idempotent.
+     */
+    public void unregister(ComponentConfiguration<?> configuration) {
+        Registration registration = registrations.remove(configuration);
+        if (registration != null) {
+            for (Class<?> type : registration.closure) {
+                List<ComponentFactory<Object>> current = index.get(type);
+                if (current != null) {
+                    List<ComponentFactory<Object>> list = 
+                            new ArrayList<ComponentFactory<Object>>(current);
+                    list.remove(registration.factory);
+                    if (list.isEmpty()) {
+                        index.remove(type);
+                    } else {
+                        index.put(type, Collections.unmodifiableList(list));
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns an immutable list of factories for components that can be 
+     * assigned to the specified {@code type}.
+     */
+    public List<ComponentFactory<Object>> list(Class<?> type) {
+        List<ComponentFactory<Object>> list = index.get(type);
+        if (list == null) {
+            list = Collections.emptyList();
+        }
+        return list;
+    }
+    
+    private static void addClosure(Class<?> type, Set<Class<?>> closure) {
+        if (type != null && closure.add(type)) {
+            addClosure(type.getSuperclass(), closure);
+            for (Class<?> cls : type.getInterfaces()) {
+                addClosure(cls, closure);
+            }
+        }
+    }
+    
+    private static final class Registration {
+        
+        private final ComponentFactory<Object> factory;
+        private final Set<Class<?>> closure;
+        
+        private Registration(ComponentFactory<Object> factory, 
+                Set<Class<?>> closure) {
+            this.factory = factory;
+            this.closure = closure;
+        }
+    }
+}
@@ -38,28 +38,28 @@ import org.jargo.EventContext;
  */
 abstract class ConcurrentEventContext implements EventContext {
     
-    private final ThreadLocal<JargoStack<Event>> events;
-    
-    public ConcurrentEventContext() {
-        this.events = new ThreadLocal<JargoStack<Event>>() {
-            @Override
-            protected JargoStack<Event> initialValue() {
-                return new JargoStack<Event>();
-            }
-        };
+    public void attach(Event e) {
+        attach(e, InvocationFrame.current());
     }
     
-    public void attach(Event e) {
-        events.get().push(e);
+    public void attach(Event e, InvocationFrame frame) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        frame.push(this, e);
     }
     
     public void detach() {
-        if (events.get().poll() == null) {
+        detach(InvocationFrame.current());
+    }
+    
+    public void detach(InvocationFrame frame) {
+        if (frame.pop(this) == null) {
             throw new AssertionError();
         }
     }
     
     public Event getEvent() {
-        return events.get().peek();
+        return (Event) InvocationFrame.current().peek(this);
     }
 }
@@ -39,28 +39,28 @@ import org.jargo.InvocationContext;
 abstract class ConcurrentInvocationContext implements 
         InvocationContext {
     
-    private final ThreadLocal<JargoStack<Invocation>> invocations;
-    
-    public ConcurrentInvocationContext() {
-        this.invocations = new ThreadLocal<JargoStack<Invocation>>() {
-            @Override
-            protected JargoStack<Invocation> initialValue() {
-                return new JargoStack<Invocation>();
-            }
-        };
-    }
-
     public void attach(Invocation i) {
-        invocations.get().push(i);
+        attach(i, InvocationFrame.current());
+    }
+    
+    public void attach(Invocation i, InvocationFrame frame) {
+        if (i == null) {
+            throw new NullPointerException();
+        }
+        frame.push(this, i);
     }
     
     public void detach() {
-        if (invocations.get().poll() == null) {
+        detach(InvocationFrame.current());
+    }
+    
+    public void detach(InvocationFrame frame) {
+        if (frame.pop(this) == null) {
             throw new AssertionError();
         }
     }
     
     public Invocation getInvocation() {
-        return invocations.get().peek();
+        return (Invocation) InvocationFrame.current().peek(this);
     }
 }
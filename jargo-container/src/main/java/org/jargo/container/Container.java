@@ -68,14 +68,6 @@ public final class Container extends ComponentApplicationContext {
     
     private final List<Deployable> deployables = new ArrayList<Deployable>();
 
-    // Doesn't need to be final, as only one instance exists.
-    private final ThreadLocal<LinkedList<ComponentReference<?>>> callStack = new ThreadLocal<LinkedList<ComponentReference<?>>>() {
-        @Override
-        protected LinkedList<ComponentReference<?>> initialValue() {
-            return new LinkedList<ComponentReference<?>>();
-        }
-    };
-
     private final ContainerLocalURLRegistration registration = new ContainerLocalURLRegistration();
 
     public Container() {
@@ -125,7 +117,8 @@ public final class Container extends ComponentApplicationContext {
      * is to be returned by {@link #instance}.
      */
     protected ComponentApplicationContext resolveInstance() {
-        if (!init.getAndSet(true)) {
+        // Plain read first, so that resolved instances are not written to.
+        if (!init.get() && !init.getAndSet(true)) {
             try {
                 deployables.addAll(getDeployables(registration.getClassLoader()));
                 for (Deployable deployable : deployables) {
@@ -177,24 +170,28 @@ public final class Container extends ComponentApplicationContext {
         }
     }
 
-    static LinkedList<ComponentReference<?>> getCallStack() {
-        Container c = (Container) ComponentApplicationContext.instance();
-        return c.callStack.get();
-    }
-
-    static void attach(ComponentReference<?> reference) {
-        assert reference != null;
-        getCallStack().addFirst(reference);
-    }
-
-    static void detach() {
-        if (getCallStack().removeFirst() == null) {
-            assert false;
+    /**
+     * Returns the references attached by the component contexts of the 
+     * calling thread, most recent first.
+     */
+    public List<ComponentReference<?>> referenceStack() {
+        InvocationFrame frame = InvocationFrame.current();
+        List<ComponentReference<?>> references = 
+                new ArrayList<ComponentReference<?>>();
+        for (int i = frame.size() - 1; i >= 0; i--) {
+            if (frame.getOwner(i) instanceof ManagedComponentContext) {
+                references.add((ComponentReference<?>) frame.get(i));
+            }
         }
+        return Collections.unmodifiableList(references);
     }
-
-    public List<ComponentReference<?>> referenceStack() {
-        return Collections.unmodifiableList(getCallStack());
+    
+    /**
+     * Returns the statistics of the reaper that invalidates references to 
+     * pooled components which are no longer in use.
+     */
+    public ReferenceReaperMBean getReferenceReaper() {
+        return registry.getReferenceReaper();
     }
     
     public void setParent(Deployer parent) {
@@ -46,11 +46,13 @@ import org.jargo.Destroyable;
 final class Destroyer implements Destroyable {
     
     private static final Logger logger = Logger.getLogger(Destroyer.class.getName());
+    
+    // Created for the first hook, most destroyers never get one.
     private Map<Runnable, Runnable> hooks;
+    private boolean destroyed;
     
     /** Creates a new instance of Destroyer */
     public Destroyer() {
-        this.hooks = new IdentityHashMap<Runnable, Runnable>();
     }
     
     /**
@@ -66,6 +68,7 @@ final class Destroyer implements Destroyable {
             } else {
                 runnables = Collections.emptySet();
             }
+            destroyed = true;
         }
         destroy(runnables.iterator());
     }
@@ -83,25 +86,27 @@ final class Destroyer implements Destroyable {
     }
 
     public synchronized void addDestroyHook(Runnable hook) {
-        if(hooks == null) {
+        if (destroyed) {
             throw new IllegalStateException("Destroy in progress.");
         }
 	if (hook == null) {
 	    throw new NullPointerException();
         }
-        if (hooks.containsKey(hook)) {
+        if (hooks == null) {
+            hooks = new IdentityHashMap<Runnable, Runnable>(4);
+        } else if (hooks.containsKey(hook)) {
             throw new IllegalArgumentException("Hook previously registered.");
         }
         hooks.put(hook, hook);
     }
     
     public synchronized boolean removeDestroyHook(Runnable hook) {
-	if (hooks == null) {
+	if (destroyed) {
 	    throw new IllegalStateException("Destroy in progress.");
         }
 	if (hook == null) {
 	    throw new NullPointerException();
         }
-	return hooks.remove(hook) != null;
+	return hooks != null && hooks.remove(hook) != null;
     }
 }
@@ -81,9 +81,47 @@ final class EventExecutorProviders extends
         return eventExecutor;
     }
 
+    /**
+     * Forgets the executors of the specified {@code configuration}, of which
+     * the registration failed, and lets the standard providers shut them 
+     * down.
+     */
+    public void release(ComponentConfiguration<?> configuration) {
+        cache.remove(configuration);
+        for (EventExecutorProvider provider : getProviders()) {
+            if (provider instanceof StandardEventExecutorProvider) {
+                ((StandardEventExecutorProvider) provider).release(
+                        configuration);
+            }
+        }
+    }
+
+    /**
+     * Releases the executors of the specified {@code configuration} if 
+     * {@code providers} hands them out through this class.
+     */
+    static void release(Providers providers, 
+            ComponentConfiguration<?> configuration) {
+        EventExecutorProvider provider = providers.getEventExecutorProvider();
+        if (provider instanceof EventExecutorProviders) {
+            ((EventExecutorProviders) provider).release(configuration);
+        }
+    }
+
+    @Override
+    public void deploy(Deployable deployable) throws Exception {
+        super.deploy(deployable);
+        if (deployable instanceof StandardEventExecutorProvider) {
+            ((StandardEventExecutorProvider) deployable).start();
+        }
+    }
+
     @Override
     public void undeploy(Deployable deployable) throws Exception {
         super.undeploy(deployable);
+        if (deployable instanceof StandardEventExecutorProvider) {
+            ((StandardEventExecutorProvider) deployable).shutdown();
+        }
         if (deployable instanceof ComponentRegistration) {
             List<ComponentConfiguration<?>> configurations = 
                     ((ComponentRegistration) deployable).getComponentConfigurations();
@@ -75,6 +75,13 @@ final class EventFactories implements EventFactory {
         this.eventTypes = Collections.unmodifiableSet(s);
     }
 
+    /**
+     * Returns the event factories in order of precedence.
+     */
+    List<EventFactory> getEventFactories() {
+        return factories;
+    }
+    
     public List<Class<?>> getInterfaces() {
         return interfaces;
     }
@@ -31,75 +31,124 @@
 package org.jargo.container;
 
 import java.util.List;
-import java.util.ListIterator;
 import org.jargo.ComponentContext;
 import org.jargo.Event;
 import org.jargo.EventInterceptor;
 import org.jargo.EventContext;
 
 /**
+ * Interceptor chain that keeps its interceptors in a flat array. The position
+ * of a call within the chain is kept in a cursor that is created once per 
+ * call and passed to the interceptors as their context, so 
+ * {@code get}, {@code set}, {@code getEvent} and {@code getTarget} do not 
+ * depend on the length of the chain.
+ * 
  * @author Leon van Zantvoort
  */
 final class EventInterceptorChain implements EventContext {
     
     public static EventContext instance(List<EventInterceptor> interceptors,
             ComponentContext ctx) {
-        return instance(interceptors, 
-                new EventInterceptorChain(null, null, ctx), ctx);
+        return instance(interceptors, null, ctx);
     }
     
+    /**
+     * Returns the {@code terminator} itself if {@code interceptors} is empty.
+     */
     public static EventContext instance(
             List<EventInterceptor> interceptors,
             EventContext terminator, ComponentContext ctx) {
-        EventContext ectx = terminator;
-        for (ListIterator<EventInterceptor> i = interceptors.
-                listIterator(interceptors.size()); i.hasPrevious();) {
-            ectx = new EventInterceptorChain(i.previous(), ectx, ctx);
+        if (interceptors.isEmpty() && terminator != null) {
+            return terminator;
         }
-        return ectx;
+        return new EventInterceptorChain(interceptors.toArray(
+                new EventInterceptor[interceptors.size()]), terminator, ctx);
     }
     
-    private final EventInterceptor interceptor;
-    private final EventContext next;
+    private final EventInterceptor[] interceptors;
+    private final EventContext terminator;
     private final ComponentContext ctx;
     
-    private EventInterceptorChain(EventInterceptor interceptor, 
-            EventContext next, ComponentContext ctx) {
-        if (next == null && interceptor != null) {
-            throw new IllegalStateException();
-        }
-        this.interceptor = interceptor;
-        this.next = next;
+    private EventInterceptorChain(EventInterceptor[] interceptors, 
+            EventContext terminator, ComponentContext ctx) {
+        this.interceptors = interceptors;
+        this.terminator = terminator;
         this.ctx = ctx;
     }
     
     public Object get() {
-        if (next == null) {
+        if (terminator == null) {
             throw new IllegalStateException();
         }
-        return next.get();
+        return terminator.get();
     }
     
     public void set(Object o) {
-        if (next == null) {
+        if (terminator == null) {
             throw new IllegalStateException();
         }
-        next.set(o);
+        terminator.set(o);
     }
 
     public Event getEvent() {
-        return next == null ? null : next.getEvent();
+        return terminator == null ? null : terminator.getEvent();
     }
     
     public Object proceed() throws Exception {
-        return interceptor == null ? null : interceptor.intercept(next);
+        if (interceptors.length == 0) {
+            return terminator == null ? null : terminator.proceed();
+        }
+        return interceptors[0].intercept(new Cursor());
     }
 
     public Object getTarget() {
-        return next == null ? null : next.getTarget();
+        return terminator == null ? null : terminator.getTarget();
     }
     
     public ComponentContext getComponentContext() {
         return ctx;
     }
+    
+    /**
+     * Context that is passed to the interceptors. Proceeds with the 
+     * interceptor following the one at the current position.
+     */
+    private final class Cursor implements EventContext {
+        
+        private int index;
+        
+        public Object proceed() throws Exception {
+            int next = index + 1;
+            if (next == interceptors.length) {
+                return terminator == null ? null : terminator.proceed();
+            }
+            index = next;
+            try {
+                return interceptors[next].intercept(this);
+            } finally {
+                // Restore the position, interceptors may proceed repeatedly.
+                index = next - 1;
+            }
+        }
+        
+        public Object get() {
+            return EventInterceptorChain.this.get();
+        }
+        
+        public void set(Object o) {
+            EventInterceptorChain.this.set(o);
+        }
+        
+        public Event getEvent() {
+            return EventInterceptorChain.this.getEvent();
+        }
+        
+        public Object getTarget() {
+            return EventInterceptorChain.this.getTarget();
+        }
+        
+        public ComponentContext getComponentContext() {
+            return ctx;
+        }
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.jargo.Event;
+
+/**
+ * Event type dispatch structure that is shared by everything that resolves
+ * handlers by event class for a single component. Each event type declared 
+ * by the component is assigned a slot. Handlers are kept in arrays indexed 
+ * by slot, and the slots matching a concrete event class are resolved once 
+ * and cached, including classes that match no slot at all.
+ * 
+ * @author Leon van Zantvoort
+ */
+final class EventTypeIndex {
+    
+    private static final int[] NONE = new int[0];
+    
+    private final List<Class<? extends Event>> types;
+    private final Map<Class<? extends Event>, Integer> indices;
+    private final ConcurrentMap<Class<?>, int[]> slots;
+    
+    /**
+     * Creates an index of the event types of the component's event factory,
+     * followed by those of its invocation factory.
+     */
+    public EventTypeIndex(Set<Class<? extends Event>> eventTypes, 
+            Set<Class<? extends Event>> invocationTypes) {
+        Set<Class<? extends Event>> s = 
+                new LinkedHashSet<Class<? extends Event>>(eventTypes);
+        s.addAll(invocationTypes);
+        this.types = Collections.unmodifiableList(
+                new ArrayList<Class<? extends Event>>(s));
+        this.indices = new HashMap<Class<? extends Event>, Integer>();
+        for (Class<? extends Event> type : types) {
+            indices.put(type, indices.size());
+        }
+        this.slots = new ConcurrentHashMap<Class<?>, int[]>();
+    }
+    
+    /**
+     * Returns the number of slots.
+     */
+    public int size() {
+        return types.size();
+    }
+    
+    /**
+     * Returns the slot of the specified event {@code type}.
+     * 
+     * @throws IllegalArgumentException if {@code type} is not declared by 
+     * the component.
+     */
+    public int slotOf(Class<? extends Event> type) throws 
+            IllegalArgumentException {
+        Integer index = indices.get(type);
+        if (index == null) {
+            throw new IllegalArgumentException(type.getName());
+        }
+        return index;
+    }
+    
+    /**
+     * Returns the slots of all event types the specified event {@code cls} 
+     * can be assigned to, in order of declaration. The returned array must 
+     * not be modified.
+     */
+    public int[] slotsOf(Class<?> cls) {
+        int[] tmp = slots.get(cls);
+        if (tmp == null) {
+            List<Integer> list = new ArrayList<Integer>();
+            for (int i = 0; i < types.size(); i++) {
+                if (types.get(i).isAssignableFrom(cls)) {
+                    list.add(i);
+                }
+            }
+            if (list.isEmpty()) {
+                tmp = NONE;
+            } else {
+                tmp = new int[list.size()];
+                for (int i = 0; i < tmp.length; i++) {
+                    tmp[i] = list.get(i);
+                }
+            }
+            slots.putIfAbsent(cls, tmp);
+        }
+        return tmp;
+    }
+    
+    /**
+     * Returns the handler of the first slot that matches {@code cls} and 
+     * holds a handler, or {@code null} if no such slot exists.
+     * 
+     * @param handlers handlers indexed by slot.
+     */
+    public <H> H lookup(H[] handlers, Class<?> cls) {
+        for (int slot : slotsOf(cls)) {
+            H handler = handlers[slot];
+            if (handler != null) {
+                return handler;
+            }
+        }
+        return null;
+    }
+}
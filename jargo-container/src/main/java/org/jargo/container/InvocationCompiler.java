@@ -0,0 +1,224 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static java.util.logging.Level.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+import net.sf.cglib.reflect.FastClass;
+import org.jargo.Invocation;
+
+/**
+ * Compiles methods into {@code Invocation} implementations that do not use
+ * reflection. Public methods of public classes are invoked through a 
+ * generated CGLib {@code FastClass}, which calls the method directly. Other 
+ * methods, or all methods if CGLib is not available, fall back to 
+ * {@code Method.invoke}.
+ * 
+ * <p>Compiled methods are cached by the compiler instance. Providers 
+ * typically keep one compiler per {@code InvocationFactory}, so that the 
+ * cache is discarded together with the component.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+public final class InvocationCompiler {
+    
+    private static final Object[] EMPTY = new Object[0];
+    
+    private final Logger logger;
+    private final ConcurrentMap<Class<?>, FastClass> classes;
+    private final ConcurrentMap<Method, Invoker> invokers;
+    
+    public InvocationCompiler() {
+        this.logger = Logger.getLogger(getClass().getName());
+        this.classes = new ConcurrentHashMap<Class<?>, FastClass>();
+        this.invokers = new ConcurrentHashMap<Method, Invoker>();
+    }
+    
+    /**
+     * Returns an invocation of the specified {@code method} with the 
+     * specified arguments.
+     */
+    public Invocation compile(Method method, Object... args) {
+        return new CompiledInvocation(method, getInvoker(method), 
+                args == null ? EMPTY : args);
+    }
+    
+    /**
+     * Compiles the specified {@code method} ahead of its first invocation.
+     */
+    public void prepare(Method method) {
+        getInvoker(method);
+    }
+    
+    private Invoker getInvoker(Method method) {
+        Invoker invoker = invokers.get(method);
+        if (invoker == null) {
+            invoker = createInvoker(method);
+            Invoker tmp = invokers.putIfAbsent(method, invoker);
+            if (tmp != null) {
+                invoker = tmp;
+            }
+        }
+        return invoker;
+    }
+    
+    private Invoker createInvoker(final Method method) {
+        Class<?> type = method.getDeclaringClass();
+        if (VanillaProxyGenerator.isCGLibSupported() &&
+                Modifier.isPublic(method.getModifiers()) && 
+                Modifier.isPublic(type.getModifiers())) {
+            try {
+                FastClass fastClass = classes.get(type);
+                if (fastClass == null) {
+                    fastClass = FastClass.create(type);
+                    FastClass tmp = classes.putIfAbsent(type, fastClass);
+                    if (tmp != null) {
+                        fastClass = tmp;
+                    }
+                }
+                int index = fastClass.getIndex(method.getName(), 
+                        method.getParameterTypes());
+                if (index != -1) {
+                    return new FastInvoker(fastClass, index);
+                }
+            } catch (RuntimeException e) {
+                logger.log(FINE, "Failed to compile " + method + 
+                        ". Using reflection instead.", e);
+            } catch (LinkageError e) {
+                logger.log(FINE, "Failed to compile " + method + 
+                        ". Using reflection instead.", e);
+            }
+        }
+        if (!Modifier.isPublic(method.getModifiers()) || 
+                !Modifier.isPublic(type.getModifiers())) {
+            AccessController.doPrivileged(new PrivilegedAction<Object>() {
+                public Object run() {
+                    // PERMISSION: java.lang.reflect.ReflectPermission suppressAccessChecks
+                    method.setAccessible(true);
+                    return null;
+                }
+            });
+        }
+        return new ReflectiveInvoker(method);
+    }
+    
+    private static Exception unwrap(InvocationTargetException e) {
+        Throwable t = e.getTargetException();
+        if (t instanceof Exception) {
+            return (Exception) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return e;
+    }
+    
+    private interface Invoker {
+        Object invoke(Object instance, Object[] args) throws Exception;
+    }
+    
+    private static final class FastInvoker implements Invoker {
+        
+        private final FastClass fastClass;
+        private final int index;
+        
+        public FastInvoker(FastClass fastClass, int index) {
+            this.fastClass = fastClass;
+            this.index = index;
+        }
+        
+        public Object invoke(Object instance, Object[] args) throws Exception {
+            try {
+                return fastClass.invoke(index, instance, args);
+            } catch (InvocationTargetException e) {
+                throw unwrap(e);
+            }
+        }
+    }
+    
+    private static final class ReflectiveInvoker implements Invoker {
+        
+        private final Method method;
+        
+        public ReflectiveInvoker(Method method) {
+            this.method = method;
+        }
+        
+        public Object invoke(Object instance, Object[] args) throws Exception {
+            try {
+                return method.invoke(instance, args);
+            } catch (InvocationTargetException e) {
+                throw unwrap(e);
+            }
+        }
+    }
+    
+    private static final class CompiledInvocation implements Invocation {
+        
+        private final Method method;
+        private final Invoker invoker;
+        private Object[] args;
+        
+        public CompiledInvocation(Method method, Invoker invoker, 
+                Object[] args) {
+            this.method = method;
+            this.invoker = invoker;
+            this.args = args;
+        }
+        
+        public Method getMethod() {
+            return method;
+        }
+        
+        public Object[] getParameters() {
+            return args;
+        }
+        
+        public void setParameters(Object[] args) {
+            this.args = args == null ? EMPTY : args;
+        }
+        
+        public Object invoke(Object instance) throws Exception {
+            return invoker.invoke(instance, args);
+        }
+        
+        public String toString() {
+            return "Invocation{method=" + method + "}";
+        }
+    }
+}
@@ -31,15 +31,19 @@
 package org.jargo.container;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import org.jargo.Event;
 import org.jargo.Invocation;
 import org.jargo.InvocationFactory;
-import org.jargo.spi.InvocationFactoryProvider;
+import org.jargo.ReusableInvocationFactory;
 import org.jargo.ComponentConfiguration;
 
 /**
@@ -47,32 +51,81 @@ import org.jargo.ComponentConfiguration;
  */
 final class InvocationFactories implements InvocationFactory {
     
-    private final ComponentConfiguration configuration;
-    private final InvocationFactoryProvider provider;
-    private final ConcurrentMap<Class<? extends Event>, InvocationFactory> 
-            factories;
+    // Marks event classes without a factory, ConcurrentMap has no nulls.
+    private static final InvocationFactory NONE = new InvocationFactory() {
+        public Set<Method> getMethods() {
+            return Collections.emptySet();
+        }
+        
+        public Set<Class<? extends Event>> getEventTypes() {
+            return Collections.emptySet();
+        }
+        
+        public Invocation getInvocation(Event event) {
+            return null;
+        }
+    };
+    
+    private final List<InvocationFactory> list;
+    private final EventTypeIndex index;
+    
+    // Factory per slot, the first factory declaring the slot's type.
+    private final InvocationFactory[] factories;
+    
+    // Position of each factory in list, lowest position wins.
+    private final Map<InvocationFactory, Integer> ranks;
+    
+    // Winning factory per concrete event class, NONE if there is none.
+    private final ConcurrentMap<Class<?>, InvocationFactory> resolved;
     
     private final Set<Method> methods;
     private final Set<Class<? extends Event>> eventTypes;
     
-    public InvocationFactories(ComponentConfiguration configuration, Providers providers) {
-        this.configuration = configuration;
-        this.provider = providers.getInvocationFactoryProvider();
-        this.factories = new ConcurrentHashMap<Class<? extends Event>, 
-                InvocationFactory>();
+    /**
+     * @param types event types of the component's event factory, used to 
+     * build the component's {@code EventTypeIndex}.
+     */
+    public InvocationFactories(ComponentConfiguration configuration, 
+            Providers providers, Set<Class<? extends Event>> types) {
+        this.list = new ArrayList<InvocationFactory>(providers.
+                getInvocationFactoryProvider().getInvocationFactories(
+                configuration));
         
         Set<Method> m = new LinkedHashSet<Method>();
-        for (InvocationFactory factory : provider.getInvocationFactories(configuration)) {
+        for (InvocationFactory factory : list) {
             m.addAll(factory.getMethods());
         }
         this.methods = Collections.unmodifiableSet(m);
         
         Set<Class<? extends Event>> s = 
                 new LinkedHashSet<Class<? extends Event>>();
-        for (InvocationFactory factory : provider.getInvocationFactories(configuration)) {
+        for (InvocationFactory factory : list) {
             s.addAll(factory.getEventTypes());
         }
         this.eventTypes = Collections.unmodifiableSet(s);
+        
+        this.index = new EventTypeIndex(types, eventTypes);
+        this.factories = new InvocationFactory[index.size()];
+        this.ranks = new IdentityHashMap<InvocationFactory, Integer>();
+        this.resolved = new ConcurrentHashMap<Class<?>, InvocationFactory>();
+        for (InvocationFactory factory : list) {
+            if (!ranks.containsKey(factory)) {
+                ranks.put(factory, ranks.size());
+            }
+            for (Class<? extends Event> type : factory.getEventTypes()) {
+                int slot = index.slotOf(type);
+                if (factories[slot] == null) {
+                    factories[slot] = factory;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the event type index of the component.
+     */
+    public EventTypeIndex getEventTypeIndex() {
+        return index;
     }
 
     public Set<Method> getMethods() {
@@ -83,20 +136,77 @@ final class InvocationFactories implements InvocationFactory {
         return eventTypes;
     }
     
-    public Invocation getInvocation(Event event) {
-        InvocationFactory factory = factories.get(event.getClass());
+    /**
+     * Returns the first factory that declares an event type the specified 
+     * {@code event} can be assigned to, or {@code null}. The factory is 
+     * resolved once per event class.
+     */
+    private InvocationFactory getInvocationFactory(Event event) {
+        InvocationFactory factory = resolved.get(event.getClass());
         if (factory == null) {
-            for (InvocationFactory f : provider.getInvocationFactories(configuration)) {
-                for (Class<? extends Event> type : f.getEventTypes()) {
-                    if (type.isAssignableFrom(event.getClass())) {
-                        factories.put(event.getClass(), f);
-                        return f.getInvocation(event);
-                    }
+            factory = resolve(event.getClass());
+            resolved.putIfAbsent(event.getClass(), factory);
+        }
+        return factory == NONE ? null : factory;
+    }
+    
+    private InvocationFactory resolve(Class<?> cls) {
+        InvocationFactory factory = NONE;
+        int rank = Integer.MAX_VALUE;
+        for (int slot : index.slotsOf(cls)) {
+            InvocationFactory f = factories[slot];
+            if (f != null) {
+                int r = ranks.get(f);
+                if (r < rank) {
+                    factory = f;
+                    rank = r;
                 }
             }
+        }
+        return factory;
+    }
+    
+    /**
+     * Returns {@code true} if an invocation exists for {@code event}. Unlike
+     * {@code getInvocation}, this does not take the invocation recycled by 
+     * the calling thread.
+     */
+    boolean isExecutable(Event event) {
+        InvocationFactory factory = getInvocationFactory(event);
+        return factory != null && factory.getInvocation(event) != null;
+    }
+    
+    public Invocation getInvocation(Event event) {
+        return getInvocation(event, InvocationFrame.current());
+    }
+    
+    /**
+     * Same as {@code getInvocation(event)}, for callers that already looked
+     * up the frame of the calling thread.
+     */
+    Invocation getInvocation(Event event, InvocationFrame frame) {
+        InvocationFactory factory = getInvocationFactory(event);
+        if (factory == null) {
             return null;
-        } else {
-            return factory.getInvocation(event);
+        }
+        if (factory instanceof ReusableInvocationFactory) {
+            Invocation invocation = (Invocation) frame.acquire(this, factory);
+            return ((ReusableInvocationFactory) factory).getInvocation(event, 
+                    invocation);
+        }
+        return factory.getInvocation(event);
+    }
+    
+    /**
+     * Called once {@code invocation}, obtained for {@code event}, has been
+     * performed. Keeps the invocation for recycling if its factory allows.
+     */
+    void release(Event event, Invocation invocation, InvocationFrame frame) {
+        InvocationFactory factory = getInvocationFactory(event);
+        if (factory instanceof ReusableInvocationFactory && 
+                ((ReusableInvocationFactory) factory).isReusable(
+                invocation.getMethod())) {
+            frame.release(this, factory, invocation);
         }
     }
 }
@@ -0,0 +1,378 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Per-thread stack of invocation state. Every party that needs to keep track
+ * of thread bound state during a call (component contexts, event and
+ * invocation contexts, interceptor context data) pushes a slot onto the
+ * same array-backed stack, identified by its owner. The arrays are reused
+ * across calls, so no objects are created once the stack has grown to the
+ * maximum call depth of the thread.
+ * 
+ * <p>The frame also keeps objects that are recycled across calls, such as 
+ * reusable events and invocations. Recycled objects are grouped by the 
+ * component that owns them, and the objects of a component are dropped by 
+ * all frames as soon as that component is destroyed, so that they do not 
+ * keep undeployed components reachable. With assertions enabled, each frame
+ * tracks its recycled objects until they are acquired again, so that objects
+ * which escaped the call that created them can be detected.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+final class InvocationFrame {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final ThreadLocal<InvocationFrame> frames =
+            new ThreadLocal<InvocationFrame>() {
+        @Override
+        protected InvocationFrame initialValue() {
+            return new InvocationFrame();
+        }
+    };
+
+    private static final boolean debug;
+    
+    // Frames that recycle objects, held weakly so that they die with their
+    // thread.
+    private static final List<Reference<InvocationFrame>> recycling;
+    
+    // Owners that have been invalidated, held weakly so that they can be
+    // garbage collected. Owners do not override equals.
+    private static final Map<Object, Boolean> invalidated;
+    
+    static {
+        boolean b = false;
+        assert b = true;
+        debug = b;
+        recycling = new CopyOnWriteArrayList<Reference<InvocationFrame>>();
+        invalidated = Collections.synchronizedMap(
+                new WeakHashMap<Object, Boolean>());
+    }
+
+    /**
+     * Returns the frame of the calling thread. Code on the call path of an 
+     * event looks the frame up once and passes it down, rather than calling 
+     * this method for every slot it accesses.
+     */
+    public static InvocationFrame current() {
+        return frames.get();
+    }
+    
+    /**
+     * Makes all threads drop the objects recycled for the specified 
+     * {@code owner}, now and after. Other threads only remove the owner's 
+     * map of recycled objects, they never modify it. A thread that releases
+     * an object concurrently either puts its map before it is removed here,
+     * or finds the owner invalidated and removes the map itself.
+     */
+    public static void invalidateRecycled(Object owner) {
+        invalidated.put(owner, Boolean.TRUE);
+        for (Reference<InvocationFrame> ref : recycling) {
+            InvocationFrame frame = ref.get();
+            if (frame != null) {
+                frame.recycled.remove(owner);
+            }
+        }
+    }
+    
+    /**
+     * Returns {@code true} if {@code o} has been released for recycling by 
+     * any thread and has not been acquired since. Always returns 
+     * {@code false} if assertions are disabled.
+     */
+    public static boolean isReleased(Object o) {
+        if (!debug || o == null) {
+            return false;
+        }
+        for (Reference<InvocationFrame> ref : recycling) {
+            InvocationFrame frame = ref.get();
+            if (frame != null) {
+                synchronized (frame.released) {
+                    if (frame.released.contains(o)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private Object[] owners;
+    private Object[] values;
+    private int size;
+    
+    // Recycled objects per owner. Other threads only remove owners, see 
+    // invalidateRecycled.
+    private final ConcurrentMap<Object, Map<Object, Object>> recycled;
+    private boolean registered;
+    
+    // Recycled objects of this frame, only tracked if assertions are enabled.
+    private final WeakIdentitySet released;
+
+    private InvocationFrame() {
+        this.owners = new Object[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+        this.recycled = new ConcurrentHashMap<Object, Map<Object, Object>>();
+        this.released = debug ? new WeakIdentitySet() : null;
+    }
+
+    /**
+     * Pushes a new slot for the specified {@code owner} onto the stack.
+     */
+    public void push(Object owner, Object value) {
+        assert owner != null;
+        if (size == owners.length) {
+            int capacity = size << 1;
+            Object[] o = new Object[capacity];
+            Object[] v = new Object[capacity];
+            System.arraycopy(owners, 0, o, 0, size);
+            System.arraycopy(values, 0, v, 0, size);
+            owners = o;
+            values = v;
+        }
+        owners[size] = owner;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Removes the top-most slot of the specified {@code owner} and returns
+     * its value. Slots are normally popped in reverse order of pushing, but
+     * slots of other owners that were pushed later are left intact.
+     *
+     * @throws NoSuchElementException if no slot of {@code owner} exists.
+     */
+    public Object pop(Object owner) throws NoSuchElementException {
+        int index = indexOf(owner);
+        if (index == -1) {
+            throw new NoSuchElementException();
+        }
+        Object value = values[index];
+        int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(owners, index + 1, owners, index, moved);
+            System.arraycopy(values, index + 1, values, index, moved);
+        }
+        size--;
+        owners[size] = null;
+        values[size] = null;
+        return value;
+    }
+
+    /**
+     * Returns the value of the top-most slot of the specified {@code owner},
+     * or {@code null} if no such slot exists.
+     */
+    public Object peek(Object owner) {
+        int index = indexOf(owner);
+        return index == -1 ? null : values[index];
+    }
+
+    /**
+     * Returns the index of the top-most slot of the specified {@code owner},
+     * or {@code -1} if no such slot exists.
+     */
+    public int indexOf(Object owner) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (owners[i] == owner) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public Object getOwner(int index) {
+        assert index < size;
+        return owners[index];
+    }
+
+    public Object get(int index) {
+        assert index < size;
+        return values[index];
+    }
+
+    public void set(int index, Object value) {
+        assert index < size;
+        values[index] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Removes and returns the object recycled for {@code key} of the 
+     * specified {@code owner} by this thread, or returns {@code null} if no 
+     * such object exists.
+     */
+    public Object acquire(Object owner, Object key) {
+        Map<Object, Object> map = recycled.get(owner);
+        if (map == null) {
+            return null;
+        }
+        Object o = map.remove(key);
+        if (debug && o != null) {
+            synchronized (released) {
+                released.remove(o);
+            }
+        }
+        return o;
+    }
+    
+    /**
+     * Keeps {@code o} for recycling under the specified {@code key} of 
+     * {@code owner}, the component whose destruction invalidates the object.
+     * Only one object is kept per key.
+     */
+    public void release(Object owner, Object key, Object o) {
+        assert o != null;
+        Map<Object, Object> map = recycled.get(owner);
+        if (map == null) {
+            if (!registered) {
+                register();
+            }
+            if (invalidated.containsKey(owner)) {
+                return;
+            }
+            map = new IdentityHashMap<Object, Object>();
+            recycled.put(owner, map);
+            if (invalidated.containsKey(owner)) {
+                // Invalidated after the check above, the sweep may have 
+                // missed this map.
+                recycled.remove(owner);
+                return;
+            }
+        }
+        Object previous = map.put(key, o);
+        if (debug) {
+            synchronized (released) {
+                if (previous != null) {
+                    released.remove(previous);
+                }
+                released.add(o);
+            }
+        }
+    }
+    
+    /**
+     * Makes this frame visible to {@code invalidateRecycled}, and forgets the
+     * frames of threads that have died.
+     */
+    private void register() {
+        List<Reference<InvocationFrame>> cleared = 
+                new ArrayList<Reference<InvocationFrame>>();
+        for (Reference<InvocationFrame> ref : recycling) {
+            if (ref.get() == null) {
+                cleared.add(ref);
+            }
+        }
+        recycling.removeAll(cleared);
+        recycling.add(new WeakReference<InvocationFrame>(this));
+        registered = true;
+    }
+    
+    /**
+     * Set of objects compared by identity, which does not keep its elements
+     * reachable.
+     */
+    private static final class WeakIdentitySet {
+        
+        private final Map<Key, Object> map = new HashMap<Key, Object>();
+        private final ReferenceQueue<Object> queue = 
+                new ReferenceQueue<Object>();
+        
+        public boolean contains(Object o) {
+            expunge();
+            return map.containsKey(new Key(o, null));
+        }
+        
+        public void add(Object o) {
+            expunge();
+            map.put(new Key(o, queue), null);
+        }
+        
+        public void remove(Object o) {
+            expunge();
+            map.remove(new Key(o, null));
+        }
+        
+        private void expunge() {
+            Reference<?> ref;
+            while ((ref = queue.poll()) != null) {
+                map.remove(ref);
+            }
+        }
+        
+        private static final class Key extends WeakReference<Object> {
+            
+            private final int hash;
+            
+            public Key(Object o, ReferenceQueue<Object> queue) {
+                super(o, queue);
+                this.hash = System.identityHashCode(o);
+            }
+            
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+            
+            @Override
+            public boolean equals(Object o) {
+                if (o == this) {
+                    return true;
+                }
+                if (!(o instanceof Key)) {
+                    return false;
+                }
+                Object referent = get();
+                return referent != null && referent == ((Key) o).get();
+            }
+        }
+    }
+}
@@ -31,75 +31,124 @@
 package org.jargo.container;
 
 import java.util.List;
-import java.util.ListIterator;
 import org.jargo.ComponentContext;
 import org.jargo.Invocation;
 import org.jargo.InvocationInterceptor;
 import org.jargo.InvocationContext;
 
 /**
+ * Interceptor chain that keeps its interceptors in a flat array. The position
+ * of a call within the chain is kept in a cursor that is created once per 
+ * call and passed to the interceptors as their context, so 
+ * {@code get}, {@code set}, {@code getInvocation} and {@code getTarget} do not 
+ * depend on the length of the chain.
+ * 
  * @author Leon van Zantvoort
  */
 final class InvocationInterceptorChain implements InvocationContext {
     
-    public static InvocationContext instance(
-            List<InvocationInterceptor> interceptors, ComponentContext ctx) {
-        return instance(interceptors, 
-                new InvocationInterceptorChain(null, null, ctx), ctx);
+    public static InvocationContext instance(List<InvocationInterceptor> interceptors,
+            ComponentContext ctx) {
+        return instance(interceptors, null, ctx);
     }
-            
+    
+    /**
+     * Returns the {@code terminator} itself if {@code interceptors} is empty.
+     */
     public static InvocationContext instance(
             List<InvocationInterceptor> interceptors,
             InvocationContext terminator, ComponentContext ctx) {
-        InvocationContext ictx = terminator;
-        for (ListIterator<InvocationInterceptor> i = interceptors.
-                listIterator(interceptors.size()); i.hasPrevious();) {
-            ictx = new InvocationInterceptorChain(i.previous(), ictx, ctx);
+        if (interceptors.isEmpty() && terminator != null) {
+            return terminator;
         }
-        return ictx;
+        return new InvocationInterceptorChain(interceptors.toArray(
+                new InvocationInterceptor[interceptors.size()]), terminator, ctx);
     }
     
-    private final InvocationInterceptor interceptor;
-    private final InvocationContext next;
+    private final InvocationInterceptor[] interceptors;
+    private final InvocationContext terminator;
     private final ComponentContext ctx;
     
-    private InvocationInterceptorChain(InvocationInterceptor interceptor, 
-            InvocationContext next, ComponentContext ctx) {
-        if (next == null && interceptor != null) {
-            throw new IllegalStateException();
-        }
-        this.interceptor = interceptor;
-        this.next = next;
+    private InvocationInterceptorChain(InvocationInterceptor[] interceptors, 
+            InvocationContext terminator, ComponentContext ctx) {
+        this.interceptors = interceptors;
+        this.terminator = terminator;
         this.ctx = ctx;
     }
     
     public Object get() {
-        if (next == null) {
+        if (terminator == null) {
             throw new IllegalStateException();
         }
-        return next.get();
+        return terminator.get();
     }
     
     public void set(Object o) {
-        if (next == null) {
+        if (terminator == null) {
             throw new IllegalStateException();
         }
-        next.set(o);
+        terminator.set(o);
     }
 
     public Invocation getInvocation() {
-        return next == null ? null : next.getInvocation();
+        return terminator == null ? null : terminator.getInvocation();
     }
     
     public Object proceed() throws Exception {
-        return interceptor == null ? null : interceptor.intercept(next);
+        if (interceptors.length == 0) {
+            return terminator == null ? null : terminator.proceed();
+        }
+        return interceptors[0].intercept(new Cursor());
     }
 
     public Object getTarget() {
-        return next == null ? null : next.getTarget();
+        return terminator == null ? null : terminator.getTarget();
     }
     
     public ComponentContext getComponentContext() {
         return ctx;
     }
+    
+    /**
+     * Context that is passed to the interceptors. Proceeds with the 
+     * interceptor following the one at the current position.
+     */
+    private final class Cursor implements InvocationContext {
+        
+        private int index;
+        
+        public Object proceed() throws Exception {
+            int next = index + 1;
+            if (next == interceptors.length) {
+                return terminator == null ? null : terminator.proceed();
+            }
+            index = next;
+            try {
+                return interceptors[next].intercept(this);
+            } finally {
+                // Restore the position, interceptors may proceed repeatedly.
+                index = next - 1;
+            }
+        }
+        
+        public Object get() {
+            return InvocationInterceptorChain.this.get();
+        }
+        
+        public void set(Object o) {
+            InvocationInterceptorChain.this.set(o);
+        }
+        
+        public Invocation getInvocation() {
+            return InvocationInterceptorChain.this.getInvocation();
+        }
+        
+        public Object getTarget() {
+            return InvocationInterceptorChain.this.getTarget();
+        }
+        
+        public ComponentContext getComponentContext() {
+            return ctx;
+        }
+    }
 }
@@ -40,5 +40,17 @@ interface ManagedComponentContext<T> extends ComponentContext<T> {
 
     void attach(ComponentReference<T> reference);
 
+    /**
+     * Same as {@code attach(reference)}, for callers that already looked up 
+     * the frame of the calling thread.
+     */
+    void attach(ComponentReference<T> reference, InvocationFrame frame);
+
     public void detach();
+    
+    /**
+     * Same as {@code detach()}, for callers that already looked up the frame
+     * of the calling thread.
+     */
+    void detach(InvocationFrame frame);
 }
@@ -41,16 +41,9 @@ final class ManagedComponentContextImpl<T> implements
         ManagedComponentContext<T> {
 
     private final ComponentMetaData<T> metaData;
-    private final ThreadLocal<JargoStack<ComponentReference<T>>> referenceStack;
     
     public ManagedComponentContextImpl(ComponentMetaData<T> metaData) {
         this.metaData = metaData;
-        this.referenceStack = new ThreadLocal<JargoStack<ComponentReference<T>>>() {
-            @Override
-            protected JargoStack<ComponentReference<T>> initialValue() {
-                return new JargoStack<ComponentReference<T>>();
-            }
-        };
     }
 
     public ComponentMetaData<T> getComponentMetaData() {
@@ -58,19 +51,28 @@ final class ManagedComponentContextImpl<T> implements
     }
     
     public void attach(ComponentReference<T> reference) {
+        attach(reference, InvocationFrame.current());
+    }
+    
+    public void attach(ComponentReference<T> reference, InvocationFrame frame) {
         assert reference != null;
-        referenceStack.get().push(reference);
-        Container.attach(reference);
+        // Also serves as the container call stack, see Container.referenceStack().
+        frame.push(this, reference);
     }
 
     public void detach() {
-        ComponentReference<T> reference = referenceStack.get().poll();
+        detach(InvocationFrame.current());
+    }
+    
+    public void detach(InvocationFrame frame) {
+        Object reference = frame.pop(this);
         assert reference != null;
-        Container.detach();
     }
     
+    @SuppressWarnings("unchecked")
     public ComponentReference<T> reference() {
-        ComponentReference<T> reference = referenceStack.get().peek();
+        ComponentReference<T> reference = (ComponentReference<T>) 
+                InvocationFrame.current().peek(this);
         if (reference == null) {
             throw new ComponentStateException(metaData.getComponentName());
         }
@@ -0,0 +1,467 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static java.util.logging.Level.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.WeakReference;
+import java.net.URLClassLoader;
+import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+import net.sf.cglib.core.DefaultGeneratorStrategy;
+import net.sf.cglib.core.ReflectUtils;
+import net.sf.cglib.proxy.Enhancer;
+
+/**
+ * Cache of generated proxy classes. Classes are kept in memory per class 
+ * loader and, if the {@code org.jargo.workDir} system property is set, their
+ * bytecode is written to the {@code proxies} directory under the work 
+ * directory. After a restart, cached classes are defined directly instead of 
+ * being generated again.
+ * 
+ * <p>Cache files are named after the proxy's superclass, interfaces, 
+ * callback layout and class loader. A class loader is identified by its 
+ * type and, for {@code URLClassLoader}s, its URLs, including those of its 
+ * parents. Each file records a digest of the bytecode of these classes, all 
+ * their ancestor classes and superinterfaces, and of CGLib. An entry whose 
+ * digest no longer matches is stale; it is deleted and replaced by a newly 
+ * generated class. The stored bytecode is verified against a checksum before
+ * it is defined, so that truncated or corrupt files are evicted as well.</p>
+ * 
+ * <p>The checksum does not authenticate the bytecode. Cached classes are 
+ * defined with the permissions of the component's class loader, so the work
+ * directory must only be writable by trusted users.</p>
+ * 
+ * <p>Lookups for different proxy classes do not block each other; only 
+ * concurrent lookups of the same proxy class wait for it to be generated or
+ * loaded once.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+final class ProxyClassCache {
+    
+    private static final int MAGIC = 0x4a505843;
+    private static final int VERSION = 3;
+    
+    private static final ProxyClassCache instance = new ProxyClassCache();
+    
+    public static ProxyClassCache instance() {
+        return instance;
+    }
+    
+    private final Logger logger;
+    private final File directory;
+    private final Map<ClassLoader, ConcurrentMap<String, Slot>> classes;
+    private final Map<Class<?>, String> digests;
+    
+    private ProxyClassCache() {
+        this(getDirectory());
+    }
+    
+    /**
+     * Creates a cache that writes its files to the specified 
+     * {@code directory}, or only keeps classes in memory if 
+     * {@code directory} is {@code null}.
+     */
+    ProxyClassCache(File directory) {
+        this.logger = Logger.getLogger(getClass().getName());
+        this.directory = directory;
+        this.classes = new WeakHashMap<ClassLoader, 
+                ConcurrentMap<String, Slot>>();
+        this.digests = Collections.synchronizedMap(
+                new WeakHashMap<Class<?>, String>());
+    }
+    
+    /**
+     * Returns the {@code proxies} directory under the work directory, or 
+     * {@code null} if no work directory is configured.
+     */
+    private static File getDirectory() {
+        String workDir = AccessController.doPrivileged(
+                new PrivilegedAction<String>() {
+            public String run() {
+                // PERMISSION: java.util.PropertyPermission "org.jargo.*" "read"
+                return System.getProperty("org.jargo.workDir");
+            }
+        });
+        return workDir == null ? null : new File(workDir, "proxies");
+    }
+    
+    /**
+     * Returns the proxy class for the specified {@code enhancer}, which must 
+     * be configured with the specified {@code superclass}, 
+     * {@code interfaces} and class loader, and must not use the CGLib cache.
+     * 
+     * @param layout describes the callback types and callback filter of the
+     * enhancer. Proxies that only differ in layout must not share a class.
+     */
+    public Class<?> getProxyClass(ClassLoader loader, Class<?> superclass, 
+            Class<?>[] interfaces, String layout, Enhancer enhancer) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(superclass == null ? Object.class.getName() : 
+                superclass.getName());
+        for (Class<?> cls : interfaces) {
+            builder.append(',').append(cls.getName());
+        }
+        builder.append(';').append(layout);
+        String name = builder.toString();
+        
+        ConcurrentMap<String, Slot> map;
+        synchronized (classes) {
+            map = classes.get(loader);
+            if (map == null) {
+                map = new ConcurrentHashMap<String, Slot>();
+                classes.put(loader, map);
+            }
+        }
+        Slot slot = map.get(name);
+        if (slot == null) {
+            Slot tmp = map.putIfAbsent(name, slot = new Slot());
+            if (tmp != null) {
+                slot = tmp;
+            }
+        }
+        synchronized (slot) {
+            Class<?> cls = slot.ref == null ? null : slot.ref.get();
+            if (cls == null) {
+                cls = load(loader, superclass, interfaces, name, enhancer);
+                slot.ref = new WeakReference<Class<?>>(cls);
+            }
+            return cls;
+        }
+    }
+    
+    private Class<?> load(ClassLoader loader, Class<?> superclass, 
+            Class<?>[] interfaces, String name, Enhancer enhancer) {
+        String digest = null;
+        File file = null;
+        if (directory != null) {
+            digest = digest(superclass, interfaces);
+            if (digest != null) {
+                // Loaders with the same type names must not share a file.
+                name = name + ';' + identify(loader);
+                file = new File(directory, hex(sha1(name)) + ".class");
+                Class<?> cls = read(file, name, digest, loader);
+                if (cls != null) {
+                    return cls;
+                }
+            }
+        }
+        if (file == null) {
+            return enhancer.createClass();
+        }
+        CapturingStrategy strategy = new CapturingStrategy();
+        enhancer.setStrategy(strategy);
+        Class<?> cls = enhancer.createClass();
+        if (strategy.bytes != null) {
+            write(file, name, digest, cls.getName(), strategy.bytes);
+        }
+        return cls;
+    }
+    
+    private Class<?> read(final File file, String name, String digest, 
+            ClassLoader loader) {
+        Boolean exists = AccessController.doPrivileged(
+                new PrivilegedAction<Boolean>() {
+            public Boolean run() {
+                // PERMISSION: java.io.FilePermission "${org.jargo.workDir}/proxies/-" "read"
+                return file.isFile();
+            }
+        });
+        if (!exists) {
+            return null;
+        }
+        try {
+            String className = null;
+            byte[] bytes = null;
+            String checksum = null;
+            DataInputStream in = new DataInputStream(open(file));
+            try {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION && 
+                        in.readUTF().equals(name) && 
+                        in.readUTF().equals(digest)) {
+                    className = in.readUTF();
+                    bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    checksum = in.readUTF();
+                }
+            } finally {
+                in.close();
+            }
+            if (bytes == null) {
+                logger.fine("Evicting stale proxy class " + file + ".");
+                delete(file);
+                return null;
+            }
+            if (!hex(sha1(bytes)).equals(checksum)) {
+                logger.fine("Evicting corrupt proxy class " + file + ".");
+                delete(file);
+                return null;
+            }
+            return ReflectUtils.defineClass(className, bytes, loader);
+        } catch (Exception e) {
+            logger.log(FINE, "Evicting unreadable proxy class " + file + ".", e);
+            delete(file);
+            return null;
+        } catch (LinkageError e) {
+            logger.log(FINE, "Evicting unusable proxy class " + file + ".", e);
+            delete(file);
+            return null;
+        }
+    }
+    
+    private void write(final File file, final String name, 
+            final String digest, final String className, final byte[] bytes) {
+        AccessController.doPrivileged(new PrivilegedAction<Object>() {
+            public Object run() {
+                // PERMISSION: java.io.FilePermission "${org.jargo.workDir}/proxies/-" "read,write,delete"
+                File tmp = new File(file.getPath() + ".tmp");
+                try {
+                    directory.mkdirs();
+                    DataOutputStream out = new DataOutputStream(
+                            new FileOutputStream(tmp));
+                    try {
+                        out.writeInt(MAGIC);
+                        out.writeInt(VERSION);
+                        out.writeUTF(name);
+                        out.writeUTF(digest);
+                        out.writeUTF(className);
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                        out.writeUTF(hex(sha1(bytes)));
+                    } finally {
+                        out.close();
+                    }
+                    if (!tmp.renameTo(file)) {
+                        file.delete();
+                        if (!tmp.renameTo(file)) {
+                            tmp.delete();
+                        }
+                    }
+                } catch (IOException e) {
+                    logger.log(FINE, "Failed to write proxy class " + file + 
+                            ".", e);
+                    tmp.delete();
+                }
+                return null;
+            }
+        });
+    }
+    
+    private InputStream open(final File file) throws IOException {
+        try {
+            return AccessController.doPrivileged(
+                    new java.security.PrivilegedExceptionAction<InputStream>() {
+                public InputStream run() throws IOException {
+                    // PERMISSION: java.io.FilePermission "${org.jargo.workDir}/proxies/-" "read"
+                    return new FileInputStream(file);
+                }
+            });
+        } catch (java.security.PrivilegedActionException e) {
+            throw (IOException) e.getException();
+        }
+    }
+    
+    private void delete(final File file) {
+        AccessController.doPrivileged(new PrivilegedAction<Object>() {
+            public Object run() {
+                // PERMISSION: java.io.FilePermission "${org.jargo.workDir}/proxies/-" "delete"
+                file.delete();
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * Returns a description of {@code loader} and its parents that is 
+     * stable across restarts.
+     */
+    private static String identify(final ClassLoader loader) {
+        return AccessController.doPrivileged(new PrivilegedAction<String>() {
+            public String run() {
+                // PERMISSION: java.lang.RuntimePermission getClassLoader
+                StringBuilder builder = new StringBuilder();
+                for (ClassLoader l = loader; l != null; l = l.getParent()) {
+                    builder.append(l.getClass().getName());
+                    if (l instanceof URLClassLoader) {
+                        builder.append(Arrays.toString(
+                                ((URLClassLoader) l).getURLs()));
+                    }
+                    builder.append('/');
+                }
+                return builder.toString();
+            }
+        });
+    }
+    
+    /**
+     * Returns a digest of the bytecode of the specified classes, their 
+     * ancestor classes and superinterfaces, and of CGLib, or {@code null} if
+     * the bytecode of any of them is unavailable.
+     */
+    private String digest(Class<?> superclass, Class<?>[] interfaces) {
+        Set<Class<?>> closure = new LinkedHashSet<Class<?>>();
+        closure.add(Enhancer.class);
+        addClosure(superclass, closure);
+        for (Class<?> cls : interfaces) {
+            addClosure(cls, closure);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Class<?> cls : closure) {
+            String tmp = digest(cls);
+            if (tmp == null) {
+                return null;
+            }
+            builder.append(tmp);
+        }
+        return hex(sha1(builder.toString()));
+    }
+    
+    private static void addClosure(Class<?> type, Set<Class<?>> closure) {
+        if (type != null && closure.add(type)) {
+            addClosure(type.getSuperclass(), closure);
+            for (Class<?> cls : type.getInterfaces()) {
+                addClosure(cls, closure);
+            }
+        }
+    }
+    
+    private String digest(final Class<?> cls) {
+        String digest = digests.get(cls);
+        if (digest == null) {
+            InputStream in = AccessController.doPrivileged(
+                    new PrivilegedAction<InputStream>() {
+                public InputStream run() {
+                    // PERMISSION: java.lang.RuntimePermission getClassLoader
+                    ClassLoader loader = cls.getClassLoader();
+                    String resource = cls.getName().replace('.', '/') + 
+                            ".class";
+                    return loader == null ? 
+                            ClassLoader.getSystemResourceAsStream(resource) :
+                            loader.getResourceAsStream(resource);
+                }
+            });
+            if (in == null) {
+                return null;
+            }
+            try {
+                try {
+                    MessageDigest md = MessageDigest.getInstance("SHA-1");
+                    byte[] buffer = new byte[4096];
+                    int n;
+                    while ((n = in.read(buffer)) != -1) {
+                        md.update(buffer, 0, n);
+                    }
+                    digest = hex(md.digest());
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                return null;
+            } catch (NoSuchAlgorithmException e) {
+                return null;
+            }
+            digests.put(cls, digest);
+        }
+        return digest;
+    }
+    
+    private static byte[] sha1(String s) {
+        try {
+            return sha1(s.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            AssertionError ae = new AssertionError();
+            ae.initCause(e);
+            throw ae;
+        }
+    }
+    
+    private static byte[] sha1(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            AssertionError ae = new AssertionError();
+            ae.initCause(e);
+            throw ae;
+        }
+    }
+    
+    private static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+            builder.append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * Proxy class of a single cache key. Lookups of the same key synchronize
+     * on its slot.
+     */
+    private static final class Slot {
+        
+        private WeakReference<Class<?>> ref;
+    }
+    
+    /**
+     * Generator strategy that keeps the generated bytecode.
+     */
+    private static final class CapturingStrategy extends 
+            DefaultGeneratorStrategy {
+        
+        private byte[] bytes;
+        
+        @Override
+        protected byte[] transform(byte[] b) throws Exception {
+            bytes = b;
+            return b;
+        }
+    }
+}
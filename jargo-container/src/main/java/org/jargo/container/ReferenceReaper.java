@@ -0,0 +1,406 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static java.util.logging.Level.*;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Invalidates pooled component references once their strong reference is no 
+ * longer reachable. 
+ * 
+ * <p>A collector thread moves cleared references from the reference queue
+ * into a pending queue, stamping them with the time they were observed. 
+ * Pending references are drained in batches by a small number of reaper 
+ * threads. The bookkeeping of live references is sharded per component (see 
+ * {@link ComponentEntry}), so reaping never touches the registry lock.</p>
+ * 
+ * <p>The number of reaper threads and the batch size can be configured by 
+ * the {@code org.jargo.reaperThreads} and {@code org.jargo.reaperBatchSize} 
+ * system properties.</p>
+ * 
+ * <p>Each reaper is registered with JMX under its own 
+ * {@code org.jargo:type=ReferenceReaper,id=<n>} object name until it is 
+ * shut down.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+final class ReferenceReaper implements ReferenceReaperMBean {
+    
+    private static final AtomicInteger counter = new AtomicInteger();
+    
+    private static final int threadCount;
+    private static final int batchSize;
+    
+    static {
+        final int i[] = new int[2];
+        AccessController.doPrivileged(new PrivilegedAction<Object>() {
+            public Object run() {
+                // PERMISSION: java.util.PropertyPermission "org.jargo.*" "read"
+                i[0] = Integer.getInteger("org.jargo.reaperThreads", 1);
+                i[1] = Integer.getInteger("org.jargo.reaperBatchSize", 64);
+                return null;
+            }
+        });
+        threadCount = Math.max(1, i[0]);
+        batchSize = Math.max(1, i[1]);
+    }
+    
+    private final Logger logger;
+    private final AtomicBoolean shutdown;
+    private final Collection<ComponentEntry> entries;
+    private final ReferenceQueue<StrongComponentReference> queue;
+    private final BlockingQueue<Tracker> pending;
+    private final List<Thread> threads;
+    
+    /**
+     * Holds per reaper thread the time at which it started processing its 
+     * current batch, or {@code 0} if the thread is waiting for references.
+     */
+    private final AtomicLongArray busySince;
+    private final AtomicLong reapCount;
+    private volatile double reapRate;
+    
+    private final String name;
+    private ObjectName objectName;
+    
+    /**
+     * @param entries live view of the registered components, used to report
+     * the number of tracked references per component.
+     */
+    public ReferenceReaper(Collection<ComponentEntry> entries) {
+        this.logger = Logger.getLogger(getClass().getName());
+        this.shutdown = new AtomicBoolean(false);
+        this.entries = entries;
+        this.queue = new ReferenceQueue<StrongComponentReference>();
+        this.pending = new LinkedBlockingQueue<Tracker>();
+        this.threads = Collections.synchronizedList(new ArrayList<Thread>());
+        this.busySince = new AtomicLongArray(threadCount);
+        this.reapCount = new AtomicLong();
+        this.name = "org.jargo:type=ReferenceReaper,id=" + 
+                counter.incrementAndGet();
+        
+        // Index 0 is the collector, followed by the reapers. The monitor 
+        // restarts any of these threads if it dies.
+        for (int i = 0; i <= threadCount; i++) {
+            threads.add(startWorker(i));
+        }
+        
+        Thread monitor = JargoThreadFactory.instance(
+                "Jargo-ReferenceReaperMonitor").newThread(new Runnable() {
+            public void run() {
+                monitor();
+            }
+        });
+        threads.add(monitor);
+        monitor.start();
+        
+        register();
+    }
+    
+    private Thread startWorker(final int index) {
+        Thread t;
+        if (index == 0) {
+            t = JargoThreadFactory.instance("Jargo-ReferenceCollector").
+                    newThread(new Runnable() {
+                public void run() {
+                    collect();
+                }
+            });
+        } else {
+            t = JargoThreadFactory.instance(threadCount == 1 ? 
+                    "Jargo-ReferenceReaper" : 
+                    "Jargo-ConcurrentReferenceReaper").newThread(
+                    new Runnable() {
+                public void run() {
+                    reap(index - 1);
+                }
+            });
+        }
+        t.start();
+        return t;
+    }
+    
+    /**
+     * Starts tracking the specified {@code strongRef}. As soon as it is no 
+     * longer strongly reachable, {@code weakRef} is invalidated.
+     */
+    public <T> void track(ComponentEntry<T> entry, 
+            StrongComponentReference<T> strongRef, 
+            WeakComponentReference<T> weakRef) {
+        // The entry keeps the tracker reachable until it is reaped, or until 
+        // the component is destroyed.
+        entry.addReference(weakRef, 
+                new Tracker(strongRef, queue, entry, weakRef));
+    }
+    
+    public int getBacklog() {
+        return pending.size();
+    }
+    
+    public long getOldestPendingAge() {
+        Tracker tracker = pending.peek();
+        return tracker == null ? 0 : 
+                Math.max(0, System.currentTimeMillis() - tracker.observed);
+    }
+    
+    public double getReapRate() {
+        return reapRate;
+    }
+    
+    public long getReapCount() {
+        return reapCount.get();
+    }
+    
+    public Map<String, Integer> getTrackedReferences() {
+        Map<String, Integer> map = new TreeMap<String, Integer>();
+        for (ComponentEntry<?> entry : entries) {
+            if (!entry.getComponentMetaData().isVanilla()) {
+                map.put(entry.getComponentConfiguration().getComponentName(),
+                        entry.getReferenceCount());
+            }
+        }
+        return Collections.unmodifiableMap(map);
+    }
+    
+    private void collect() {
+        while (!shutdown.get()) {
+            try {
+                Tracker tracker = (Tracker) queue.remove();
+                tracker.observed = System.currentTimeMillis();
+                pending.add(tracker);
+            } catch (InterruptedException e) {
+                if (!shutdown.get()) {
+                    logger.warning("Reference collector interrupted.");
+                }
+            }
+        }
+    }
+    
+    private void reap(int index) {
+        List<Tracker> batch = new ArrayList<Tracker>(batchSize);
+        while (!shutdown.get()) {
+            try {
+                batch.add(pending.take());
+                busySince.set(index, System.currentTimeMillis());
+                pending.drainTo(batch, batchSize - 1);
+                for (Tracker tracker : batch) {
+                    try {
+                        tracker.reap();
+                    } catch (Throwable t) {
+                        // A single reference must not stop the reaper.
+                        logger.log(WARNING, "Failed to invalidate " + 
+                                tracker.weakRef + ".", t);
+                    }
+                }
+                reapCount.addAndGet(batch.size());
+            } catch (InterruptedException e) {
+                if (!shutdown.get()) {
+                    logger.warning("Reference reaper interrupted.");
+                }
+            } finally {
+                busySince.set(index, 0);
+                batch.clear();
+            }
+        }
+    }
+    
+    /**
+     * Samples the reap rate every second, detects stalling reaper threads and
+     * restarts collector and reaper threads that died, five seconds after 
+     * their death was observed. A failing round is logged, after which the 
+     * monitor carries on, as nothing would restart it.
+     */
+    private void monitor() {
+        long[] warned = new long[busySince.length()];
+        long[] died = new long[threadCount + 1];
+        long lastTime = System.currentTimeMillis();
+        long lastCount = reapCount.get();
+        try {
+            while (!shutdown.get()) {
+                Thread.sleep(1000);
+                long now = System.currentTimeMillis();
+                long count = reapCount.get();
+                if (now > lastTime) {
+                    reapRate = (count - lastCount) * 1000.0 / (now - lastTime);
+                }
+                lastTime = now;
+                lastCount = count;
+                try {
+                    restart(died, now);
+                    warn(warned, now);
+                } catch (RuntimeException e) {
+                    logger.log(WARNING, "Reference reaper monitor failed.", 
+                            e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Shutdown.
+        }
+    }
+    
+    private void restart(long[] died, long now) {
+        for (int i = 0; i < died.length; i++) {
+            if (threads.get(i).isAlive()) {
+                died[i] = 0;
+            } else if (died[i] == 0) {
+                died[i] = now;
+                logger.warning("Reference " + (i == 0 ? 
+                        "collector" : "reaper") + " thread " + 
+                        threads.get(i).getName() + " died. " +
+                        "Restarting in 5 seconds. Backlog: " + 
+                        getBacklog() + ".");
+            } else if (now - died[i] >= 5000 && !shutdown.get()) {
+                died[i] = 0;
+                threads.set(i, startWorker(i));
+            }
+        }
+    }
+    
+    private void warn(long[] warned, long now) {
+        for (int i = 0; i < warned.length; i++) {
+            long since = busySince.get(i);
+            if (since != 0 && since != warned[i] && now - since > 60000) {
+                warned[i] = since;
+                // If this warning is printed, make a thread dump to check 
+                // what the reaper threads are doing.
+                logger.warning("Reference reaper is stalling. Cleaning up " +
+                        "references takes more than 60 seconds. Backlog: " + 
+                        getBacklog() + ".");
+            }
+        }
+    }
+    
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName(name);
+            server.registerMBean(new StandardMBean(this, 
+                    ReferenceReaperMBean.class), on);
+            objectName = on;
+        } catch (Exception e) {
+            // Management is optional.
+            logger.log(FINE, "Failed to register " + name + ".", e);
+        }
+    }
+    
+    private void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().
+                        unregisterMBean(objectName);
+            } catch (Exception e) {
+                logger.log(FINE, "Failed to unregister " + name + ".", e);
+            } finally {
+                objectName = null;
+            }
+        }
+    }
+    
+    @SuppressWarnings("finally")
+    public void shutdown() {
+        if (!shutdown.getAndSet(true)) {
+            unregister();
+            boolean interrupted = false;
+            for (final Thread t : new ArrayList<Thread>(threads)) {
+                try {
+                    AccessController.doPrivileged(
+                            new PrivilegedAction<Object>() {
+                                public Object run() {
+                                    // PERMISSION: java.lang.RuntimePermission modifyThread
+                                    t.interrupt();
+                                    return null;
+                                }
+                            });
+
+                    if (!interrupted) {
+                        t.join(5000);
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } finally {
+                    continue;
+                }
+            }
+        }
+    }
+    
+    private static final class Tracker extends 
+            WeakReference<StrongComponentReference> {
+        
+        private final ComponentEntry<?> entry;
+        private final WeakComponentReference<?> weakRef;
+        
+        /**
+         * Time at which the collector observed the cleared reference. Safely
+         * published through the pending queue.
+         */
+        private long observed;
+        
+        private Tracker(StrongComponentReference<?> strongRef, 
+                ReferenceQueue<StrongComponentReference> queue,
+                ComponentEntry<?> entry, WeakComponentReference<?> weakRef) {
+            super(strongRef, queue);
+            this.entry = entry;
+            this.weakRef = weakRef;
+        }
+        
+        private void reap() {
+            // The reference is not found if the component has been destroyed
+            // in the meantime.
+            entry.removeReference(weakRef);
+            if (!weakRef.isRemoved()) {
+                // This if-statement could be removed.
+                weakRef.invalidate();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.util.Map;
+
+/**
+ * Management interface of the container's reference reaper. The reaper 
+ * invalidates references to pooled components as soon as the application no 
+ * longer refers to them. These statistics are exposed through JMX under the 
+ * {@code org.jargo:type=ReferenceReaper} object name and through
+ * {@link Container#getReferenceReaper}.
+ *
+ * @author Leon van Zantvoort
+ */
+public interface ReferenceReaperMBean {
+    
+    /**
+     * Returns the number of cleared references that are waiting to be 
+     * invalidated.
+     */
+    int getBacklog();
+    
+    /**
+     * Returns the time in milliseconds that the oldest waiting reference has 
+     * been pending, or {@code 0} if no reference is pending.
+     */
+    long getOldestPendingAge();
+    
+    /**
+     * Returns the number of references invalidated per second, measured over 
+     * the last sample interval of one second.
+     */
+    double getReapRate();
+    
+    /**
+     * Returns the total number of references that have been invalidated.
+     */
+    long getReapCount();
+    
+    /**
+     * Returns the number of tracked references per component name.
+     */
+    Map<String, Integer> getTrackedReferences();
+}
@@ -0,0 +1,321 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static java.util.logging.Level.*;
+import java.lang.management.ManagementFactory;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import org.jargo.ComponentConfiguration;
+import org.jargo.ComponentException;
+import org.jargo.ComponentRegistration;
+import org.jargo.Event;
+import org.jargo.EventExecutor;
+import org.jargo.deploy.Deployable;
+import org.jargo.deploy.Deployer;
+import org.jargo.deploy.SequentialDeployable;
+import org.jargo.spi.EventExecutorProvider;
+
+/**
+ * Provides the standard event executors for every component that is not 
+ * handled by another {@code EventExecutorProvider}. To use it, list this 
+ * class in a {@code META-INF/services/org.jargo.deploy.Deployable} resource.
+ * 
+ * <p>Executors are configured through system properties. Each property can 
+ * be specified for all components, or for a single component by inserting 
+ * the component name, as in {@code org.jargo.executor.<componentName>.mode}:
+ * </p>
+ * <ul>
+ * <li>{@code org.jargo.executor.mode} - {@code sync} to execute events on 
+ * the calling thread, or {@code async} to execute them on the executor of the
+ * component's {@code ExecutorHandle} without waiting for the result. Defaults
+ * to {@code sync}.</li>
+ * <li>{@code org.jargo.executor.queueSize} - maximum number of asynchronous 
+ * events that are queued or executing, defaults to {@code 0} 
+ * (unbounded).</li>
+ * <li>{@code org.jargo.executor.policy} - {@code block}, {@code callerRuns} 
+ * or {@code reject}, the action taken if the queue is full. Defaults to 
+ * {@code block}.</li>
+ * </ul>
+ * 
+ * <p>Asynchronous executors are only allowed for components of which all 
+ * methods return void. Executors are kept per component configuration. The 
+ * provider is also a deployer, through which it shuts down and forgets the 
+ * executors of undeployed components. Each 
+ * provider is registered with JMX under its own 
+ * {@code org.jargo:type=EventExecutorProvider,id=<n>} object name while it
+ * is deployed to a container.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+public final class StandardEventExecutorProvider implements 
+        EventExecutorProvider, Deployer, StandardEventExecutorProviderMBean {
+    
+    private static final AtomicInteger counter = new AtomicInteger();
+    
+    /**
+     * Time in seconds that the executor of an undeployed component is given
+     * to complete its queued events.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 10;
+    
+    private final Logger logger;
+    private final String objectName;
+    private final ConcurrentMap<ComponentConfiguration<?>, Entry> executors;
+    
+    public StandardEventExecutorProvider() {
+        this.logger = Logger.getLogger(getClass().getName());
+        this.objectName = "org.jargo:type=EventExecutorProvider,id=" + 
+                counter.incrementAndGet();
+        this.executors = 
+                new ConcurrentHashMap<ComponentConfiguration<?>, Entry>();
+    }
+    
+    public Sequence sequence(SequentialDeployable deployable) {
+        // Only used if no other provider handles the component.
+        return deployable instanceof EventExecutorProvider ? 
+                Sequence.AFTER : Sequence.EQUAL;
+    }
+    
+    public void setParent(Deployer deployer) {
+    }
+    
+    public void deploy(Deployable deployable) {
+    }
+    
+    public void undeploy(Deployable deployable) {
+        if (deployable instanceof ComponentRegistration) {
+            List<ComponentConfiguration<?>> configurations = 
+                    ((ComponentRegistration) deployable).
+                    getComponentConfigurations();
+            List<Entry> removed = new ArrayList<Entry>();
+            for (ComponentConfiguration<?> configuration : configurations) {
+                Entry entry = executors.remove(configuration);
+                if (entry != null) {
+                    removed.add(entry);
+                }
+            }
+            shutdown(removed);
+        }
+    }
+    
+    /**
+     * Shuts down and forgets the executor of the specified 
+     * {@code configuration}, of which the registration failed.
+     */
+    void release(ComponentConfiguration<?> configuration) {
+        Entry entry = executors.remove(configuration);
+        if (entry != null) {
+            shutdown(Collections.singletonList(entry));
+        }
+    }
+    
+    /**
+     * Registers this provider with JMX. Called once it has been deployed to
+     * a container.
+     */
+    void start() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(this, 
+                    StandardEventExecutorProviderMBean.class), 
+                    new ObjectName(objectName));
+        } catch (Exception e) {
+            // Management is optional.
+            logger.log(FINE, "Failed to register " + objectName + ".", e);
+        }
+    }
+    
+    /**
+     * Shuts down the executors of all components, and unregisters this 
+     * provider from JMX. Called once it has been undeployed from its 
+     * container.
+     */
+    void shutdown() {
+        List<Entry> removed = new ArrayList<Entry>(executors.values());
+        executors.clear();
+        try {
+            shutdown(removed);
+        } finally {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(objectName);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (Exception e) {
+                logger.log(FINE, "Failed to unregister " + objectName + ".", 
+                        e);
+            }
+        }
+    }
+    
+    private void shutdown(List<Entry> entries) {
+        for (Entry entry : entries) {
+            if (!entry.executor.shutdown(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                logger.warning("Executor of '" + 
+                        entry.configuration.getComponentName() + "' did not " +
+                        "complete its events within " + SHUTDOWN_TIMEOUT + 
+                        " seconds.");
+            }
+        }
+    }
+    
+    public <T> EventExecutor<T> getEventExecutor(
+            ComponentConfiguration<T> configuration, 
+            Class<? extends Event> type, Executor executor) {
+        String name = configuration.getComponentName();
+        if (!"async".equalsIgnoreCase(getProperty(name, "mode"))) {
+            return SyncEventExecutor.getInstance();
+        }
+        // All event types of a component share one queue.
+        Entry entry = executors.get(configuration);
+        if (entry == null) {
+            entry = new Entry(configuration, new AsyncEventExecutor<T>(name, 
+                    executor, getQueueSize(name), getPolicy(name)));
+            Entry previous = executors.putIfAbsent(configuration, entry);
+            if (previous != null) {
+                // Nothing has been submitted to the executor yet.
+                entry.executor.shutdown(0, TimeUnit.SECONDS);
+                entry = previous;
+            }
+        }
+        @SuppressWarnings("unchecked")
+        EventExecutor<T> eventExecutor = 
+                (EventExecutor<T>) entry.executor;
+        return eventExecutor;
+    }
+    
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> map = new TreeMap<String, Integer>();
+        for (Entry e : executors.values()) {
+            map.put(e.configuration.getComponentName(), e.executor.getQueueDepth());
+        }
+        return Collections.unmodifiableMap(map);
+    }
+    
+    public Map<String, Long> getRejectionCounts() {
+        Map<String, Long> map = new TreeMap<String, Long>();
+        for (Entry e : executors.values()) {
+            map.put(e.configuration.getComponentName(), e.executor.getRejectionCount());
+        }
+        return Collections.unmodifiableMap(map);
+    }
+    
+    public Map<String, Long> getCallerRunsCounts() {
+        Map<String, Long> map = new TreeMap<String, Long>();
+        for (Entry e : executors.values()) {
+            map.put(e.configuration.getComponentName(), e.executor.getCallerRunsCount());
+        }
+        return Collections.unmodifiableMap(map);
+    }
+    
+    private static int getQueueSize(String componentName) throws 
+            ComponentException {
+        String size = getProperty(componentName, "queueSize");
+        if (size == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(size.trim());
+        } catch (NumberFormatException e) {
+            throw new ComponentException(componentName, "Invalid value of " + 
+                    getPropertyName(componentName, "queueSize") + ": '" + 
+                    size + "'.", e);
+        }
+    }
+    
+    private static AsyncEventExecutor.Policy getPolicy(String componentName) 
+            throws ComponentException {
+        String policy = getProperty(componentName, "policy");
+        if (policy == null || "block".equalsIgnoreCase(policy)) {
+            return AsyncEventExecutor.Policy.BLOCK;
+        } else if ("callerRuns".equalsIgnoreCase(policy)) {
+            return AsyncEventExecutor.Policy.CALLER_RUNS;
+        } else if ("reject".equalsIgnoreCase(policy)) {
+            return AsyncEventExecutor.Policy.REJECT;
+        }
+        throw new ComponentException(componentName, "Unknown policy in " + 
+                getPropertyName(componentName, "policy") + ": '" + policy + 
+                "'.");
+    }
+    
+    private static String getProperty(String componentName, String key) {
+        return getSystemProperty(getPropertyName(componentName, key));
+    }
+    
+    /**
+     * Returns the name of the property through which {@code key} is 
+     * configured for the specified component.
+     */
+    private static String getPropertyName(String componentName, String key) {
+        String name = "org.jargo.executor." + componentName + "." + key;
+        if (getSystemProperty(name) == null) {
+            name = "org.jargo.executor." + key;
+        }
+        return name;
+    }
+    
+    private static String getSystemProperty(final String name) {
+        return AccessController.doPrivileged(new PrivilegedAction<String>() {
+            public String run() {
+                // PERMISSION: java.util.PropertyPermission "org.jargo.*" "read"
+                return System.getProperty(name);
+            }
+        });
+    }
+    
+    private static final class Entry {
+        
+        private final ComponentConfiguration<?> configuration;
+        private final AsyncEventExecutor<?> executor;
+        
+        public Entry(ComponentConfiguration<?> configuration, 
+                AsyncEventExecutor<?> executor) {
+            this.configuration = configuration;
+            this.executor = executor;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.util.Map;
+
+/**
+ * Management interface of the {@link StandardEventExecutorProvider}, 
+ * exposed through JMX under the 
+ * {@code org.jargo:type=EventExecutorProvider,id=<n>} object name.
+ *
+ * @author Leon van Zantvoort
+ */
+public interface StandardEventExecutorProviderMBean {
+    
+    /**
+     * Returns the number of events that are queued or executing per name of
+     * a component with asynchronous executors.
+     */
+    Map<String, Integer> getQueueDepths();
+    
+    /**
+     * Returns the number of rejected events per name of a component with 
+     * asynchronous executors.
+     */
+    Map<String, Long> getRejectionCounts();
+    
+    /**
+     * Returns the number of events that were executed on the calling thread
+     * because the queue was full, per name of a component with asynchronous
+     * executors.
+     */
+    Map<String, Long> getCallerRunsCounts();
+}
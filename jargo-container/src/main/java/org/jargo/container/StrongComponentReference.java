@@ -30,6 +30,8 @@
  */
 package org.jargo.container;
 
+import java.util.concurrent.Future;
+import org.jargo.AsyncComponentReference;
 import org.jargo.ComponentEventException;
 import org.jargo.ComponentMetaData;
 import org.jargo.ComponentReference;
@@ -39,7 +41,8 @@ import org.jargo.Event;
  * 
  * @author Leon van Zantvoort
  */
-final class StrongComponentReference<T> implements ComponentReference<T> {
+final class StrongComponentReference<T> implements 
+        AsyncComponentReference<T> {
     
     private final WeakComponentReference<T> reference;
     
@@ -73,6 +76,10 @@ final class StrongComponentReference<T> implements ComponentReference<T> {
         return reference.doExecute(event, this);
     }
     
+    public Future<Object> executeAsync(Event event) {
+        return reference.doExecuteAsync(event, this);
+    }
+    
     public void invalidate() {
         reference.invalidate();
     }
@@ -0,0 +1,97 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import org.jargo.ComponentEventException;
+import org.jargo.ComponentObject;
+import org.jargo.ComponentObjectFactory;
+import org.jargo.ComponentObjectPool;
+import org.jargo.DeclaredEventExecutor;
+import org.jargo.Event;
+
+/**
+ * Executes events directly on the calling thread. The executor is stateless,
+ * so all components share the instance returned by {@link #getInstance}.
+ * 
+ * @author Leon van Zantvoort
+ */
+final class SyncEventExecutor<T> implements DeclaredEventExecutor<T> {
+    
+    private static final SyncEventExecutor<Object> INSTANCE = 
+            new SyncEventExecutor<Object>();
+    
+    @SuppressWarnings("unchecked")
+    static <T> SyncEventExecutor<T> getInstance() {
+        return (SyncEventExecutor<T>) INSTANCE;
+    }
+    
+    private SyncEventExecutor() {
+    }
+    
+    /**
+     * Executes {@code event} on an object obtained from {@code factory}. If
+     * the factory is a pool, the object is freed afterwards, or discarded if
+     * execution failed with anything else than a 
+     * {@code ComponentEventException}.
+     */
+    static <T> Object invoke(Event event, ComponentObjectFactory<T> factory) 
+            throws ComponentEventException {
+        ComponentObject<T> object = factory.getComponentObject();
+        if (!(factory instanceof ComponentObjectPool)) {
+            return object.execute(event);
+        }
+        ComponentObjectPool<T> pool = (ComponentObjectPool<T>) factory;
+        boolean free = false;
+        try {
+            Object result = object.execute(event);
+            free = true;
+            return result;
+        } catch (ComponentEventException e) {
+            free = true;
+            throw e;
+        } finally {
+            if (free) {
+                pool.freeComponentObject(object);
+            } else {
+                pool.discardComponentObject(object);
+            }
+        }
+    }
+    
+    public Object execute(Event event, ComponentObjectFactory<T> factory) 
+            throws ComponentEventException {
+        return invoke(event, factory);
+    }
+    
+    public boolean isAsynchronous() {
+        return false;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jargo.ComponentCreationException;
+import org.jargo.ComponentObject;
+import org.jargo.ComponentObjectBuilder;
+import org.jargo.ComponentObjectPool;
+import org.jargo.PrewarmedComponentObjectFactory;
+
+/**
+ * Pool that binds a component object to each calling thread for the lifetime
+ * of that thread, so that stateless components are not handed back and forth
+ * through a shared pool on every call. If the bound object of a thread is 
+ * already in use, for instance by a reentrant call, an object is borrowed 
+ * from the shared pool instead.
+ * 
+ * <p>A thread is bound to an idle object of the shared pool if there is one,
+ * so that prewarmed objects are used, and to a new object otherwise. Bound 
+ * objects are not subject to the limits of the shared pool. Objects bound 
+ * to threads that have terminated are swept at most once per second, when a
+ * thread is bound or an object is freed. All bound objects are destroyed 
+ * when this pool is destroyed; objects that are in use at that time are 
+ * destroyed as soon as they are freed. The pool then drops its 
+ * {@code ThreadLocal} and the bindings drop their objects, so that threads
+ * that outlive the pool do not keep the component reachable.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+final class ThreadAffineComponentObjectPool<T> implements 
+        ComponentObjectPool<T>, PrewarmedComponentObjectFactory<T> {
+    
+    private static final int IDLE = 0;
+    private static final int IN_USE = 1;
+    private static final int DESTROYED = 2;
+    
+    private static final long SWEEP_INTERVAL = 1000;
+    
+    private final String componentName;
+    private final ComponentObjectPoolImpl<T> shared;
+    private volatile ThreadLocal<Binding<T>> local;
+    private final ConcurrentMap<ComponentObject<T>, Binding<T>> bindings;
+    private final AtomicLong lastSweep;
+    
+    private volatile ComponentObjectBuilder<T> builder;
+    private volatile boolean destroyed;
+    
+    public ThreadAffineComponentObjectPool(String componentName, 
+            ComponentObjectPoolImpl<T> shared) {
+        this.componentName = componentName;
+        this.shared = shared;
+        this.local = new ThreadLocal<Binding<T>>();
+        this.bindings = new ConcurrentHashMap<ComponentObject<T>, Binding<T>>();
+        this.lastSweep = new AtomicLong(System.currentTimeMillis());
+    }
+    
+    public boolean isStatic() {
+        return true;
+    }
+
+    public void init(ComponentObjectBuilder<T> builder) throws 
+            ComponentCreationException {
+        this.builder = builder;
+        shared.init(builder);
+    }
+    
+    public int getPrewarmSize() {
+        return shared.getPrewarmSize();
+    }
+    
+    public void prewarm(List<ComponentObject<T>> objects) {
+        shared.prewarm(objects);
+    }
+
+    public ComponentObject<T> create() {
+        return null;
+    }
+
+    public ComponentObject<T> getComponentObject() throws 
+            ComponentCreationException {
+        ThreadLocal<Binding<T>> l = local;
+        if (l == null) {
+            return shared.getComponentObject();
+        }
+        Binding<T> binding = l.get();
+        if (binding == null || binding.state.get() == DESTROYED) {
+            if (destroyed) {
+                return shared.getComponentObject();
+            }
+            binding = bind(l);
+        }
+        // Claims the object, unless it is in use or has just been destroyed.
+        if (binding.state.compareAndSet(IDLE, IN_USE)) {
+            return binding.object;
+        }
+        return shared.getComponentObject();
+    }
+
+    public void freeComponentObject(ComponentObject<T> object) {
+        ThreadLocal<Binding<T>> l = local;
+        Binding<T> binding = l == null ? null : l.get();
+        if (binding == null || binding.object != object) {
+            binding = bindings.get(object);
+        }
+        if (binding == null) {
+            shared.freeComponentObject(object);
+        } else {
+            binding.state.set(IDLE);
+            if (destroyed) {
+                destroy(binding);
+            }
+        }
+        sweepIfDue();
+    }
+
+    public void discardComponentObject(ComponentObject<T> object) {
+        Binding<T> binding = bindings.remove(object);
+        if (binding == null) {
+            shared.discardComponentObject(object);
+        } else {
+            binding.state.set(DESTROYED);
+            binding.object = null;
+            ThreadLocal<Binding<T>> l = local;
+            if (l != null && l.get() == binding) {
+                l.remove();
+            }
+            object.destroy();
+        }
+    }
+
+    public void remove() {
+    }
+
+    public void destroy() {
+        destroyed = true;
+        // Bindings left in the maps of other threads become stale entries.
+        local = null;
+        try {
+            for (Binding<T> binding : bindings.values()) {
+                destroy(binding);
+            }
+        } finally {
+            shared.destroy();
+        }
+    }
+    
+    private Binding<T> bind(ThreadLocal<Binding<T>> l) throws 
+            ComponentCreationException {
+        ComponentObjectBuilder<T> b = builder;
+        if (b == null) {
+            throw new ComponentCreationException(componentName, 
+                    "Pool is not active.");
+        }
+        sweepIfDue();
+        ComponentObject<T> object = shared.takeIdle();
+        if (object == null) {
+            object = b.newInstance();
+        }
+        Binding<T> binding = new Binding<T>(object);
+        bindings.put(object, binding);
+        if (destroyed) {
+            destroy(binding);
+            throw new ComponentCreationException(componentName, 
+                    "Pool is not active.");
+        }
+        l.set(binding);
+        return binding;
+    }
+    
+    /**
+     * Sweeps if the last sweep is more than {@code SWEEP_INTERVAL} ago, so 
+     * that the cost of sweeping is spread over many calls.
+     */
+    private void sweepIfDue() {
+        long last = lastSweep.get();
+        long now = System.currentTimeMillis();
+        if (now - last >= SWEEP_INTERVAL && lastSweep.compareAndSet(last, now)) {
+            sweep();
+        }
+    }
+    
+    /**
+     * Destroys the objects bound to threads that have terminated.
+     */
+    private void sweep() {
+        for (Binding<T> binding : bindings.values()) {
+            Thread thread = binding.owner.get();
+            if (thread == null || !thread.isAlive()) {
+                destroy(binding);
+            }
+        }
+    }
+    
+    /**
+     * Destroys the object of the specified {@code binding} if it is idle. 
+     * Objects in use are left to be destroyed when they are freed.
+     */
+    private void destroy(Binding<T> binding) {
+        if (binding.state.compareAndSet(IDLE, DESTROYED)) {
+            ComponentObject<T> object = binding.object;
+            binding.object = null;
+            bindings.remove(object);
+            object.destroy();
+        }
+    }
+    
+    private static final class Binding<T> {
+        
+        // Cleared once destroyed. Read after claiming the state, which 
+        // orders it with the write.
+        private ComponentObject<T> object;
+        private final WeakReference<Thread> owner;
+        private final AtomicInteger state;
+        
+        public Binding(ComponentObject<T> object) {
+            this.object = object;
+            this.owner = new WeakReference<Thread>(Thread.currentThread());
+            this.state = new AtomicInteger(IDLE);
+        }
+    }
+}
@@ -31,7 +31,11 @@
 package org.jargo.container;
 
 import java.lang.reflect.Method;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
 import net.sf.cglib.core.CodeGenerationException;
+import net.sf.cglib.core.ReflectUtils;
+import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
@@ -173,18 +177,26 @@ final class VanillaProxyGenerator<T> implements ProxyGenerator<T> {
                 }
                 enhancer.setSuperclass(type);
                 enhancer.setInterfaces(interfaces);
-                enhancer.setUseCache(true);
+                enhancer.setUseCache(false);
                 enhancer.setUseFactory(false);
-                enhancer.setCallback(interceptor);
+                enhancer.setCallbackType(MethodInterceptor.class);
+                Class cls = ProxyClassCache.instance().getProxyClass(loader, 
+                        type, interfaces, "vanilla", enhancer);
                 final P proxy;
-                if (parameterTypes == null) {
-                    @SuppressWarnings("unchecked")
-                    P tmp = (P) enhancer.create();
-                    proxy = tmp;
-                } else {
-                    @SuppressWarnings("unchecked")
-                    P tmp = (P) enhancer.create(parameterTypes, args);
-                    proxy = tmp;
+                Enhancer.registerCallbacks(cls, new Callback[] {interceptor});
+                try {
+                    if (parameterTypes == null) {
+                        @SuppressWarnings("unchecked")
+                        P tmp = (P) ReflectUtils.newInstance(cls);
+                        proxy = tmp;
+                    } else {
+                        @SuppressWarnings("unchecked")
+                        P tmp = (P) ReflectUtils.newInstance(cls, 
+                                parameterTypes, args);
+                        proxy = tmp;
+                    }
+                } finally {
+                    Enhancer.registerCallbacks(cls, null);
                 }
                 return proxy;
             } catch (CodeGenerationException e) {
@@ -212,28 +224,64 @@ final class VanillaProxyGenerator<T> implements ProxyGenerator<T> {
         }
     }
     
-    private static class VanillaProxyController implements ProxyController {
+    /**
+     * Keeps the noOp stack of the first thread that attaches to the proxy in 
+     * plain fields, so that {@code isNoOp} only compares the calling thread 
+     * against the owner field. Ownership is never handed back, so the owner 
+     * field is written once and shared proxies do not contend on it. Other 
+     * threads keep their stack in a {@code ThreadLocal}.
+     */
+    static final class VanillaProxyController implements ProxyController {
 
+        private final AtomicReference<Thread> owner;
         private final ThreadLocal<JargoStack<Boolean>> local;
         
+        // Only accessed by the owner thread.
+        private boolean[] stack;
+        private int depth;
+        
         public VanillaProxyController() {
+            this.owner = new AtomicReference<Thread>();
             this.local = new ThreadLocal<JargoStack<Boolean>>() {
                 @Override
                 protected JargoStack<Boolean> initialValue() {
                     return new JargoStack<Boolean>();
                 }
             };
+            this.stack = new boolean[8];
         }
 
         public void attach(boolean noOp) {
-            local.get().push(noOp);
+            Thread thread = Thread.currentThread();
+            Thread current = owner.get();
+            if (current == thread || (current == null && 
+                    owner.compareAndSet(null, thread))) {
+                if (depth == stack.length) {
+                    boolean[] tmp = new boolean[depth << 1];
+                    System.arraycopy(stack, 0, tmp, 0, depth);
+                    stack = tmp;
+                }
+                stack[depth++] = noOp;
+            } else {
+                local.get().push(noOp);
+            }
         }
 
         public void detach() {
-            local.get().pop();
+            if (owner.get() == Thread.currentThread()) {
+                if (depth == 0) {
+                    throw new NoSuchElementException();
+                }
+                depth--;
+            } else {
+                local.get().pop();
+            }
         }
         
         public boolean isNoOp() {
+            if (owner.get() == Thread.currentThread()) {
+                return depth != 0 && stack[depth - 1];
+            }
             Boolean value = local.get().peek();
             return value == null ? Boolean.FALSE : value;
         }
@@ -31,89 +31,72 @@
 package org.jargo.container;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import org.jargo.AsyncComponentReference;
 import org.jargo.ComponentConfiguration;
 import org.jargo.ComponentEventException;
 import org.jargo.ComponentEventNotExecutableException;
 import org.jargo.ComponentReference;
 import org.jargo.ComponentReferenceLifecycle;
-import org.jargo.ComponentException;
 import org.jargo.ComponentMetaData;
 import org.jargo.ComponentObjectFactory;
 import org.jargo.Event;
 import org.jargo.EventExecutor;
+import org.jargo.ExecutorHandle;
 import org.jargo.InvocationFactory;
 
 /**
  * @author Leon van Zantvoort
  */
-final class WeakComponentReference<T> implements ComponentReference<T> {
+final class WeakComponentReference<T> implements 
+        AsyncComponentReference<T> {
     
     private final ManagedComponentContext<T> ctx;
     private final ComponentRegistry registry;
     private final Object info;
     private final ComponentConfiguration<T> configuration;
     private final ComponentObjectFactory<T> objectFactory;
-    private final AtomicBoolean removed;
-    private final AtomicBoolean remove;
     private final InvocationFactory invocationFactory;
-    private final List<ComponentReferenceLifecycle<T>> lifecycles;
-    private final Lock lock;
-    private final AtomicBoolean initialized;
-    private final Map<Class<? extends Event>, EventExecutor<T>>
-            eventExecutors;
-    private final ConcurrentMap<Class<? extends Event>, EventExecutor<T>> 
-            cachedEventExecutors;
+    private final EventTypeIndex eventTypes;
+    private final EventExecutor<T>[] eventExecutors;
+    private final ExecutorHandle executorHandle;
     private final Destroyer destroyer;
+    private final Object guardian;
+    
+    // Guarded by this.
+    private boolean initialized;
+    private volatile boolean remove;
+    private volatile boolean removed;
+    private List<ComponentReferenceLifecycle<T>> lifecycles;
 
     private Object component;
     
+    /**
+     * Creates a reference from the state that the specified {@code entry}
+     * resolved for the component, without consulting the registry.
+     */
     public WeakComponentReference(ManagedComponentContext<T> ctx, 
-            ComponentConfiguration<T> configuration, ComponentRegistry registry, 
+            ComponentEntry<T> entry, ComponentRegistry registry, 
             Object info, Destroyer destroyer) {
         this.ctx = ctx;
         this.registry = registry;
         this.info = info;
         this.destroyer = destroyer;
-        this.configuration = configuration;
-        this.removed = new AtomicBoolean();
-        this.remove = new AtomicBoolean();
-        this.invocationFactory = registry.getInvocationFactory(configuration);
-        this.objectFactory = registry.getComponentObjectFactory(configuration);
-        this.lifecycles = new ArrayList<ComponentReferenceLifecycle<T>>();
-        this.eventExecutors = new HashMap<Class<? extends Event>, EventExecutor<T>>();
-        this.cachedEventExecutors = 
-                new ConcurrentHashMap<Class<? extends Event>, EventExecutor<T>>();
-        Set<Class<? extends Event>> events = 
-                registry.getEventFactory(configuration).getEventTypes();
-        for (Class<? extends Event> type : events) {
-            EventExecutor<T> executor = registry.getProviders().
-                    getEventExecutorProvider().
-                    getEventExecutor(configuration, type,
-                    registry.getExecutorHandle(configuration).
-                    getExecutor());
-            if (executor == null) {
-                throw new ComponentException(getName(), 
-                        "no event executor specified for " + type.getName());
-            }
-            eventExecutors.put(type, executor);
-        }
-        this.lock = new ReentrantLock(true);
-        this.initialized = new AtomicBoolean();
-    }
-
-    @Override
-    protected void finalize() {
-        // The finalize method is not guaranteed to be called.
-        invalidate();
+        this.configuration = entry.getComponentConfiguration();
+        this.invocationFactory = entry.getInvocationFactory();
+        this.objectFactory = entry.getComponentObjectFactory();
+        this.eventTypes = entry.getEventTypeIndex();
+        this.eventExecutors = entry.getEventExecutors();
+        this.executorHandle = entry.getExecutorHandle();
+        this.lifecycles = Collections.emptyList();
+        // References of pooled components are invalidated by the reference 
+        // reaper. Finalizable objects are expensive to allocate and to 
+        // collect, so only vanilla references get a finalizer.
+        this.guardian = ctx.getComponentMetaData().isVanilla() ? 
+                new FinalizerGuardian(this) : null;
     }
     
     public void setComponent(Object component) {
@@ -121,22 +104,26 @@ final class WeakComponentReference<T> implements ComponentReference<T> {
     }
     
     public void init(ComponentReference<T> ref) {
+        List<ComponentReferenceLifecycle<T>> list = null;
         try {
             for(ComponentReferenceLifecycle<T> lifecycle : registry.getProviders().
                     getComponentReferenceLifecycleProvider().
                     getComponentReferenceLifecycles(configuration, 
-                    registry.getExecutorHandle(configuration).getExecutor())) {
+                    executorHandle.getExecutor())) {
                 lifecycle.onCreate(ref);
-                lifecycles.add(0, lifecycle);
+                if (list == null) {
+                    list = new ArrayList<ComponentReferenceLifecycle<T>>();
+                }
+                list.add(0, lifecycle);
             }
         } finally {
             final boolean doRemove;
-            lock.lock();
-            try {
-                initialized.set(true);
-                doRemove = remove.get();
-            } finally {
-                lock.unlock();
+            synchronized (this) {
+                if (list != null) {
+                    lifecycles = list;
+                }
+                initialized = true;
+                doRemove = remove;
             }
             if (doRemove) {
                 doRemove();
@@ -148,6 +135,10 @@ final class WeakComponentReference<T> implements ComponentReference<T> {
         return getComponentMetaData().getComponentName();
     }
     
+    ComponentConfiguration<T> getComponentConfiguration() {
+        return configuration;
+    }
+    
     public ComponentMetaData<T> getComponentMetaData() {
         return ctx.getComponentMetaData();
     }
@@ -170,29 +161,58 @@ final class WeakComponentReference<T> implements ComponentReference<T> {
 
     public boolean isExecutable(Event event) {
         EventExecutor executor = getEventExecutor(event);
-        return !isRemoved() && executor != null && 
-                invocationFactory.getInvocation(event) != null;
+        return !isRemoved() && executor != null && isInvocable(event);
+    }
+    
+    private boolean isInvocable(Event event) {
+        // Must not take the invocation recycled for the next execute.
+        if (invocationFactory instanceof InvocationFactories) {
+            return ((InvocationFactories) invocationFactory).isExecutable(
+                    event);
+        }
+        return invocationFactory.getInvocation(event) != null;
     }
 
     public Object execute(Event event) throws ComponentEventException {
         return doExecute(event, this);
     }
     
+    public Future<Object> executeAsync(Event event) {
+        return doExecuteAsync(event, this);
+    }
+    
+    Future<Object> doExecuteAsync(Event event, 
+            ComponentReference<T> reference) {
+        Executor executor = executorHandle.getExecutor();
+        // If run inline, the frame of the calling thread is used as is.
+        AsyncEventTask<T> task = new AsyncEventTask<T>(this, event, reference,
+                executor == null);
+        if (executor == null) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+        return task;
+    }
+    
     Object doExecute(Event event, ComponentReference<T> reference) throws 
             ComponentEventException {
         if (isRemoved()) {
             throw new ComponentEventException(getName(), event,
                     "Reference is removed.");
         }
+        assert !InvocationFrame.isReleased(event) :
+            "Recycled event escaped: " + event + ".";
         EventExecutor<T> executor = getEventExecutor(event);
         if (executor == null) {
             throw new ComponentEventNotExecutableException(getName(), event);
         }
-        ctx.attach(reference);
+        InvocationFrame frame = InvocationFrame.current();
+        ctx.attach(reference, frame);
         try {
             return executor.execute(event, objectFactory);
         } finally {
-            ctx.detach();
+            ctx.detach(frame);
         }
     }
     
@@ -215,7 +235,7 @@ final class WeakComponentReference<T> implements ComponentReference<T> {
                 try {
                     destroyer.destroy();
                 } finally {
-                    removed.set(true);
+                    removed = true;
                 }
             }
         }
@@ -223,11 +243,9 @@ final class WeakComponentReference<T> implements ComponentReference<T> {
     
     public void invalidate() {
         final boolean doRemove;
-        lock.lock();
-        try {
-            doRemove = !remove.getAndSet(true) && initialized.get();
-        } finally {
-            lock.unlock();
+        synchronized (this) {
+            doRemove = !remove && initialized;
+            remove = true;
         }
         if (doRemove) {
             doRemove();
@@ -235,33 +253,19 @@ final class WeakComponentReference<T> implements ComponentReference<T> {
     }
 
     public boolean isValid() {
-        return !remove.get();
+        return !remove;
     }
     
     public void remove() {
-        removed.set(true);
+        removed = true;
     }
     
     public boolean isRemoved() {
-        return removed.get();
+        return removed;
     }
 
     private EventExecutor<T> getEventExecutor(Event event) {
-        Class<? extends Event> cls = event.getClass();
-        EventExecutor<T> executor = cachedEventExecutors.get(cls);
-        if (executor == null) {
-            for (Map.Entry<Class<? extends Event>, EventExecutor<T>> entry :
-                    eventExecutors.entrySet()) {
-                if (entry.getKey().isAssignableFrom(cls)) {
-                    executor = entry.getValue();
-                    break;
-                }
-            }
-            if (executor != null) {
-                cachedEventExecutors.put(cls, executor);
-            }
-        }
-        return executor;
+        return eventTypes.lookup(eventExecutors, event.getClass());
     }
 
     public void addDestroyHook(Runnable hook) {
@@ -277,4 +281,22 @@ final class WeakComponentReference<T> implements ComponentReference<T> {
                 ", removed=" + isRemoved() + "}@" + 
                 Integer.toHexString(hashCode());
     }
-}    
+    
+    /**
+     * Invalidates the reference once both become unreachable.
+     */
+    private static final class FinalizerGuardian {
+        
+        private final WeakComponentReference<?> reference;
+        
+        public FinalizerGuardian(WeakComponentReference<?> reference) {
+            this.reference = reference;
+        }
+        
+        @Override
+        protected void finalize() {
+            // The finalize method is not guaranteed to be called.
+            reference.invalidate();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.AttributeChangeNotification;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import org.jargo.ComponentCreationException;
+import org.jargo.ComponentObject;
+import org.jargo.container.ComponentObjectPoolImplTest.TestBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives the sizer by hand, with its scheduler stopped, so that every 
+ * sample sees a known load.
+ * 
+ * @author Leon van Zantvoort
+ */
+public class AdaptivePoolSizerTest {
+    
+    private static final AtomicInteger counter = new AtomicInteger();
+    
+    private ComponentObjectPoolImpl<Object> pool;
+    private AdaptivePoolSizer sizer;
+    private List<AttributeChangeNotification> notifications;
+    
+    @Before
+    public void setUp() throws Exception {
+        // Lower bound 2, upper bound 16, grown by steps of 1.
+        pool = new ComponentObjectPoolImpl<Object>("sizer-" + 
+                counter.incrementAndGet(), 2, 16, 16, 0, true);
+        pool.init(new TestBuilder());
+        sizer = pool.getSizer();
+        sizer.stop();
+        notifications = new ArrayList<AttributeChangeNotification>();
+        sizer.addNotificationListener(new NotificationListener() {
+            public void handleNotification(Notification notification, 
+                    Object handback) {
+                notifications.add((AttributeChangeNotification) notification);
+            }
+        }, null, null);
+    }
+    
+    @After
+    public void tearDown() {
+        pool.destroy();
+    }
+    
+    @Test
+    public void testBounds() {
+        assertEquals(2, sizer.getLowerBound());
+        assertEquals(16, sizer.getUpperBound());
+        assertEquals(16, sizer.getMaxSize());
+    }
+    
+    @Test
+    public void testGrow() throws Exception {
+        pool.setMaxSize(4);
+        List<ComponentObject<Object>> objects = borrow(4);
+        timeout();
+        sizer.adapt();
+        assertEquals(5, pool.getMaxSize());
+        assertEquals(1, sizer.getResizeCount());
+        assertEquals(1, notifications.size());
+        AttributeChangeNotification n = notifications.get(0);
+        assertEquals(AttributeChangeNotification.ATTRIBUTE_CHANGE, 
+                n.getType());
+        assertEquals("MaxSize", n.getAttributeName());
+        assertEquals(4, n.getOldValue());
+        assertEquals(5, n.getNewValue());
+        
+        // Without waits, a busy pool keeps its size.
+        objects.addAll(borrow(1));
+        sizer.adapt();
+        assertEquals(5, pool.getMaxSize());
+        free(objects);
+    }
+    
+    @Test
+    public void testGrowWithinUpperBound() throws Exception {
+        List<ComponentObject<Object>> objects = borrow(16);
+        timeout();
+        sizer.adapt();
+        assertEquals(16, pool.getMaxSize());
+        assertEquals(0, sizer.getResizeCount());
+        assertTrue(notifications.isEmpty());
+        free(objects);
+    }
+    
+    @Test
+    public void testShrink() {
+        // Idle pools halve every three intervals.
+        adapt(2);
+        assertEquals(16, pool.getMaxSize());
+        adapt(1);
+        assertEquals(8, pool.getMaxSize());
+        adapt(3);
+        assertEquals(4, pool.getMaxSize());
+        adapt(3);
+        assertEquals(2, pool.getMaxSize());
+        
+        // But never below the lower bound.
+        adapt(30);
+        assertEquals(2, pool.getMaxSize());
+        assertEquals(3, sizer.getResizeCount());
+        assertEquals(3, notifications.size());
+        assertEquals(4, notifications.get(2).getOldValue());
+        assertEquals(2, notifications.get(2).getNewValue());
+    }
+    
+    @Test
+    public void testShrinkKeepsHeadroom() throws Exception {
+        List<ComponentObject<Object>> objects = borrow(6);
+        adapt(60);
+        // Shrunk towards six held objects plus a quarter headroom, but never
+        // below the held objects, as the average lags behind.
+        int size = pool.getMaxSize();
+        assertTrue(String.valueOf(size), size >= 6 && size <= 8);
+        free(objects);
+    }
+    
+    @Test
+    public void testAverageHoldTime() throws Exception {
+        List<ComponentObject<Object>> objects = borrow(2);
+        Thread.sleep(50);
+        pool.freeComponentObject(objects.get(0));
+        pool.discardComponentObject(objects.get(1));
+        assertEquals(2, pool.getHoldCount());
+        sizer.adapt();
+        assertTrue(String.valueOf(sizer.getAverageHoldTime()), 
+                sizer.getAverageHoldTime() >= 50);
+        assertTrue(sizer.getArrivalRate() > 0);
+        
+        // Only objects returned within the interval count.
+        sizer.adapt();
+        assertEquals(0, sizer.getAverageHoldTime(), 0);
+    }
+    
+    private void adapt(int intervals) {
+        for (int i = 0; i < intervals; i++) {
+            sizer.adapt();
+        }
+    }
+    
+    private void timeout() {
+        try {
+            pool.getComponentObject();
+            fail();
+        } catch (ComponentCreationException e) {
+        }
+    }
+    
+    private List<ComponentObject<Object>> borrow(int n) throws 
+            ComponentCreationException {
+        List<ComponentObject<Object>> objects = 
+                new ArrayList<ComponentObject<Object>>();
+        for (int i = 0; i < n; i++) {
+            objects.add(pool.getComponentObject());
+        }
+        return objects;
+    }
+    
+    private void free(List<ComponentObject<Object>> objects) {
+        for (ComponentObject<Object> object : objects) {
+            pool.freeComponentObject(object);
+        }
+    }
+}
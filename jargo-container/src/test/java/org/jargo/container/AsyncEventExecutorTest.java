@@ -0,0 +1,281 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jargo.ComponentEventException;
+import org.jargo.ComponentObject;
+import org.jargo.ComponentObjectBuilder;
+import org.jargo.ComponentReference;
+import org.jargo.Event;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class AsyncEventExecutorTest {
+    
+    private static final AtomicInteger counter = new AtomicInteger();
+    
+    private final Event event = new Event() {
+    };
+    
+    private ExecutorService threads;
+    private ComponentObjectPoolImpl<Object> pool;
+    private CountDownLatch latch;
+    private CountDownLatch started;
+    private volatile Thread caller;
+    private AtomicInteger executed;
+    
+    @Before
+    public void setUp() throws Exception {
+        threads = Executors.newSingleThreadExecutor();
+        latch = new CountDownLatch(0);
+        started = new CountDownLatch(1);
+        executed = new AtomicInteger();
+        pool = new ComponentObjectPoolImpl<Object>("executor-" + 
+                counter.incrementAndGet(), 0, 0, Integer.MAX_VALUE, -1, false);
+        pool.init(new Builder());
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        threads.shutdownNow();
+        pool.destroy();
+    }
+    
+    @Test
+    public void testSynchronousWithoutExecutor() {
+        AsyncEventExecutor<Object> executor = newExecutor(null, 0, 
+                AsyncEventExecutor.Policy.BLOCK);
+        assertFalse(executor.isAsynchronous());
+        assertSame(Thread.currentThread(), executor.execute(event, pool));
+        assertEquals(1, executed.get());
+    }
+    
+    @Test
+    public void testAsynchronous() throws Exception {
+        AsyncEventExecutor<Object> executor = newExecutor(threads, 0, 
+                AsyncEventExecutor.Policy.BLOCK);
+        assertTrue(executor.isAsynchronous());
+        latch = new CountDownLatch(1);
+        assertNull(executor.execute(event, pool));
+        assertNull(executor.execute(event, pool));
+        assertEquals(2, executor.getQueueDepth());
+        latch.countDown();
+        awaitIdle(executor);
+        assertEquals(2, executed.get());
+        assertEquals(0, executor.getRejectionCount());
+    }
+    
+    @Test
+    public void testReject() throws Exception {
+        AsyncEventExecutor<Object> executor = newExecutor(threads, 1, 
+                AsyncEventExecutor.Policy.REJECT);
+        latch = new CountDownLatch(1);
+        executor.execute(event, pool);
+        try {
+            executor.execute(event, pool);
+            fail();
+        } catch (ComponentEventException e) {
+        }
+        assertEquals(1, executor.getRejectionCount());
+        assertEquals(1, executor.getQueueDepth());
+        latch.countDown();
+        awaitIdle(executor);
+        assertEquals(1, executed.get());
+    }
+    
+    @Test
+    public void testCallerRuns() throws Exception {
+        AsyncEventExecutor<Object> executor = newExecutor(threads, 1, 
+                AsyncEventExecutor.Policy.CALLER_RUNS);
+        latch = new CountDownLatch(1);
+        executor.execute(event, pool);
+        // The queue is full, so the event runs on this thread.
+        caller = Thread.currentThread();
+        assertSame(caller, executor.execute(event, pool));
+        latch.countDown();
+        awaitIdle(executor);
+        assertEquals(2, executed.get());
+        assertEquals(0, executor.getRejectionCount());
+        assertEquals(1, executor.getCallerRunsCount());
+    }
+    
+    @Test
+    public void testBlock() throws Exception {
+        final AsyncEventExecutor<Object> executor = newExecutor(threads, 1, 
+                AsyncEventExecutor.Policy.BLOCK);
+        latch = new CountDownLatch(1);
+        executor.execute(event, pool);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                }
+                latch.countDown();
+            }
+        };
+        thread.start();
+        // Waits until the first event has completed.
+        executor.execute(event, pool);
+        thread.join();
+        awaitIdle(executor);
+        assertEquals(2, executed.get());
+    }
+    
+    @Test
+    public void testShutdown() {
+        AsyncEventExecutor<Object> executor = newExecutor(threads, 0, 
+                AsyncEventExecutor.Policy.BLOCK);
+        assertTrue(executor.shutdown(0, TimeUnit.SECONDS));
+        try {
+            executor.execute(event, pool);
+            fail();
+        } catch (ComponentEventException e) {
+        }
+        assertEquals(0, executed.get());
+    }
+    
+    @Test
+    public void testShutdownDrains() throws Exception {
+        AsyncEventExecutor<Object> executor = newExecutor(threads, 0, 
+                AsyncEventExecutor.Policy.BLOCK);
+        latch = new CountDownLatch(1);
+        executor.execute(event, pool);
+        executor.execute(event, pool);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                }
+                latch.countDown();
+            }
+        };
+        thread.start();
+        // Waits until both queued events have completed.
+        assertTrue(executor.shutdown(10, TimeUnit.SECONDS));
+        thread.join();
+        assertEquals(2, executed.get());
+        assertEquals(0, executor.getQueueDepth());
+    }
+    
+    @Test
+    public void testShutdownDiscards() throws Exception {
+        AsyncEventExecutor<Object> executor = newExecutor(threads, 0, 
+                AsyncEventExecutor.Policy.BLOCK);
+        latch = new CountDownLatch(1);
+        executor.execute(event, pool);
+        executor.execute(event, pool);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertFalse(executor.shutdown(10, TimeUnit.MILLISECONDS));
+        latch.countDown();
+        awaitIdle(executor);
+        // The first event was executing, the second is discarded.
+        assertEquals(1, executed.get());
+    }
+    
+    private AsyncEventExecutor<Object> newExecutor(ExecutorService executor,
+            int capacity, AsyncEventExecutor.Policy policy) {
+        return new AsyncEventExecutor<Object>(pool.getComponentName(), 
+                executor, capacity, policy);
+    }
+    
+    private static void awaitIdle(AsyncEventExecutor<?> executor) 
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (executor.getQueueDepth() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+    
+    /**
+     * Builds objects that wait for the latch, and return the thread they 
+     * were executed on.
+     */
+    private final class Builder implements ComponentObjectBuilder<Object> {
+        
+        public ComponentObject<Object> newInstance() {
+            final Object instance = new Object();
+            return new ComponentObject<Object>() {
+                public Object execute(Event event) {
+                    if (Thread.currentThread() != caller) {
+                        started.countDown();
+                        try {
+                            latch.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    executed.incrementAndGet();
+                    return Thread.currentThread();
+                }
+                
+                public Object getInstance() {
+                    return instance;
+                }
+                
+                public void destroy() {
+                }
+            };
+        }
+        
+        public ComponentReference<Object> reference() {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void attach(ComponentReference<Object> reference) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void detach() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import org.jargo.ComponentException;
+import org.jargo.Event;
+import org.jargo.EventFactory;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class CallSiteTableTest {
+    
+    private final EventFactory eventFactory = new TestEventFactory();
+    private final EventTypeIndex index = new EventTypeIndex(
+            eventFactory.getEventTypes(), 
+            Collections.<Class<? extends Event>>emptySet());
+    
+    @Test
+    public void testSynchronous() {
+        newTable(Callable.class).setExecutionModes(index, 
+                new Integer[]{CallSiteTable.SYNCHRONOUS});
+    }
+    
+    @Test
+    public void testAsynchronousVoid() {
+        newTable(Runnable.class).setExecutionModes(index, 
+                new Integer[]{CallSiteTable.ASYNCHRONOUS});
+    }
+    
+    @Test
+    public void testAsynchronousNonVoid() {
+        try {
+            newTable(Callable.class).setExecutionModes(index, 
+                    new Integer[]{CallSiteTable.ASYNCHRONOUS});
+            fail();
+        } catch (ComponentException e) {
+        }
+    }
+    
+    @Test
+    public void testGet() throws Exception {
+        CallSiteTable table = newTable(Runnable.class);
+        Method run = Runnable.class.getMethod("run");
+        CallSite site = table.get(run);
+        assertEquals(run, site.getMethod());
+        assertEquals(CallSite.EVENT, site.getKind());
+        assertSame(site, table.get(run));
+        
+        // Methods outside the table are resolved once as well.
+        Method call = Callable.class.getMethod("call");
+        assertSame(table.get(call), table.get(call));
+    }
+    
+    private CallSiteTable newTable(Class<?> type) {
+        return new CallSiteTable("component", 
+                Collections.<Class<?>>singletonList(type), eventFactory);
+    }
+    
+    private static final class TestEvent implements Event {
+    }
+    
+    private static final class TestEventFactory implements EventFactory {
+        
+        public Set<Class<? extends Event>> getEventTypes() {
+            return Collections.<Class<? extends Event>>singleton(
+                    TestEvent.class);
+        }
+        
+        public Event getEvent(Method method, Object[] args) {
+            return new TestEvent();
+        }
+        
+        public List<Class<?>> getInterfaces() {
+            return Collections.emptyList();
+        }
+        
+        public boolean isProxy() {
+            return true;
+        }
+    }
+}
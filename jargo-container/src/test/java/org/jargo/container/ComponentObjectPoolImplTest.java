@@ -0,0 +1,354 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jargo.ComponentCreationException;
+import org.jargo.ComponentObject;
+import org.jargo.ComponentObjectBuilder;
+import org.jargo.ComponentReference;
+import org.jargo.Event;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class ComponentObjectPoolImplTest {
+    
+    private static final AtomicInteger counter = new AtomicInteger();
+    
+    private ComponentObjectPoolImpl<Object> pool;
+    private TestBuilder builder;
+    
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.destroy();
+        }
+    }
+    
+    @Test
+    public void testBorrowReturn() throws Exception {
+        init(0, 0, 8, -1);
+        ComponentObject<Object> object = pool.getComponentObject();
+        assertEquals(1, pool.getSize());
+        assertEquals(1, pool.getBorrowedCount());
+        pool.freeComponentObject(object);
+        assertEquals(0, pool.getBorrowedCount());
+        assertEquals(1, pool.getIdleCount());
+        assertSame(object, pool.getComponentObject());
+        assertEquals(1, builder.created.get());
+        assertEquals(2, pool.getBorrowCount());
+    }
+    
+    @Test
+    public void testIdleLimit() throws Exception {
+        init(0, 0, 2, -1);
+        List<ComponentObject<Object>> objects = borrow(4);
+        for (ComponentObject<Object> object : objects) {
+            pool.freeComponentObject(object);
+        }
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(2, pool.getSize());
+        assertEquals(2, builder.destroyed.get());
+    }
+    
+    @Test
+    public void testTimeout() throws Exception {
+        init(0, 2, 2, 50);
+        List<ComponentObject<Object>> objects = borrow(2);
+        try {
+            pool.getComponentObject();
+            fail();
+        } catch (ComponentCreationException e) {
+        }
+        assertEquals(1, pool.getTimeoutCount());
+        assertEquals(1, pool.getWaitCount());
+        assertEquals(2, pool.getBorrowedCount());
+        pool.freeComponentObject(objects.get(0));
+        assertNotNull(pool.getComponentObject());
+    }
+    
+    @Test
+    public void testWaitForFree() throws Exception {
+        init(0, 1, 1, -1);
+        final ComponentObject<Object> object = pool.getComponentObject();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                }
+                pool.freeComponentObject(object);
+            }
+        };
+        thread.start();
+        assertSame(object, pool.getComponentObject());
+        thread.join();
+        assertEquals(1, pool.getWaitCount());
+        assertEquals(1, builder.created.get());
+    }
+    
+    @Test
+    public void testFailedCreationReleasesPermit() throws Exception {
+        init(0, 1, 1, 0);
+        builder.fail = true;
+        try {
+            pool.getComponentObject();
+            fail();
+        } catch (ComponentCreationException e) {
+        }
+        builder.fail = false;
+        assertEquals(0, pool.getBorrowedCount());
+        assertNotNull(pool.getComponentObject());
+    }
+    
+    @Test
+    public void testDiscard() throws Exception {
+        init(0, 1, 1, 0);
+        pool.discardComponentObject(pool.getComponentObject());
+        assertEquals(0, pool.getSize());
+        assertEquals(1, builder.destroyed.get());
+        assertNotNull(pool.getComponentObject());
+    }
+    
+    @Test
+    public void testPrewarmAndTakeIdle() throws Exception {
+        init(2, 0, 8, -1);
+        assertEquals(2, pool.getPrewarmSize());
+        List<ComponentObject<Object>> objects = 
+                new ArrayList<ComponentObject<Object>>();
+        for (int i = 0; i < 2; i++) {
+            objects.add(builder.newInstance());
+        }
+        pool.prewarm(objects);
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(2, pool.getSize());
+        assertNotNull(pool.takeIdle());
+        assertNotNull(pool.takeIdle());
+        assertNull(pool.takeIdle());
+        assertEquals(0, pool.getSize());
+        assertEquals(2, builder.created.get());
+    }
+    
+    @Test
+    public void testShrink() throws Exception {
+        init(0, 4, 4, 50);
+        List<ComponentObject<Object>> objects = borrow(4);
+        pool.setMaxSize(2);
+        for (ComponentObject<Object> object : objects.subList(0, 2)) {
+            pool.freeComponentObject(object);
+        }
+        // Two objects are still borrowed, which exhausts the shrunk pool.
+        try {
+            pool.getComponentObject();
+            fail();
+        } catch (ComponentCreationException e) {
+        }
+        pool.freeComponentObject(objects.get(2));
+        assertNotNull(pool.getComponentObject());
+        assertTrue(pool.getIdleCount() <= 2);
+    }
+    
+    @Test
+    public void testDestroy() throws Exception {
+        init(0, 0, 8, -1);
+        List<ComponentObject<Object>> objects = borrow(2);
+        pool.freeComponentObject(objects.get(0));
+        pool.destroy();
+        assertEquals(0, pool.getIdleCount());
+        pool.freeComponentObject(objects.get(1));
+        assertEquals(0, pool.getSize());
+        assertEquals(2, builder.destroyed.get());
+        try {
+            pool.getComponentObject();
+            fail();
+        } catch (ComponentCreationException e) {
+        }
+        pool = null;
+    }
+    
+    @Test
+    public void testConcurrentBorrowReturn() throws Exception {
+        final int maxSize = 4;
+        init(0, maxSize, maxSize, -1);
+        final int threads = 8;
+        final int iterations = 10000;
+        final AtomicInteger borrowed = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final List<Throwable> errors = 
+                Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < iterations; j++) {
+                            ComponentObject<Object> object = 
+                                    pool.getComponentObject();
+                            int n = borrowed.incrementAndGet();
+                            int p;
+                            while (n > (p = peak.get()) && 
+                                    !peak.compareAndSet(p, n)) {
+                            }
+                            borrowed.decrementAndGet();
+                            pool.freeComponentObject(object);
+                        }
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertTrue(peak.get() <= maxSize);
+        assertEquals(0, pool.getBorrowedCount());
+        assertEquals((long) threads * iterations, pool.getBorrowCount());
+        assertEquals(pool.getSize(), pool.getIdleCount());
+        assertEquals(builder.created.get() - builder.destroyed.get(), 
+                pool.getSize());
+        assertTrue(pool.getSize() <= maxSize);
+        
+        // Every idle object can be borrowed exactly once.
+        List<ComponentObject<Object>> objects = borrow(pool.getIdleCount());
+        assertEquals(objects.size(), distinct(objects));
+    }
+    
+    private void init(int minSize, int maxSize, int maxIdle, long timeout) 
+            throws ComponentCreationException {
+        pool = new ComponentObjectPoolImpl<Object>("pool-" + 
+                counter.incrementAndGet(), minSize, maxSize, maxIdle, timeout, 
+                false);
+        builder = new TestBuilder();
+        pool.init(builder);
+    }
+    
+    private List<ComponentObject<Object>> borrow(int n) throws 
+            ComponentCreationException {
+        List<ComponentObject<Object>> objects = 
+                new ArrayList<ComponentObject<Object>>();
+        for (int i = 0; i < n; i++) {
+            objects.add(pool.getComponentObject());
+        }
+        return objects;
+    }
+    
+    private static int distinct(List<ComponentObject<Object>> objects) {
+        Map<Object, Object> map = new IdentityHashMap<Object, Object>();
+        for (ComponentObject<Object> object : objects) {
+            map.put(object, null);
+        }
+        return map.size();
+    }
+    
+    static final class TestBuilder implements 
+            ComponentObjectBuilder<Object> {
+        
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger destroyed = new AtomicInteger();
+        volatile boolean fail;
+        
+        public ComponentObject<Object> newInstance() throws 
+                ComponentCreationException {
+            if (fail) {
+                throw new ComponentCreationException("test", "Failure.");
+            }
+            created.incrementAndGet();
+            return new TestObject(this);
+        }
+        
+        public ComponentReference<Object> reference() {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void attach(ComponentReference<Object> reference) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void detach() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    static final class TestObject implements ComponentObject<Object> {
+        
+        private final TestBuilder builder;
+        private final Object instance;
+        private boolean destroyed;
+        
+        public TestObject(TestBuilder builder) {
+            this.builder = builder;
+            this.instance = new Object();
+        }
+        
+        public Object execute(Event event) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public Object getInstance() {
+            return instance;
+        }
+        
+        public synchronized boolean isDestroyed() {
+            return destroyed;
+        }
+        
+        public synchronized void destroy() {
+            if (!destroyed) {
+                destroyed = true;
+                builder.destroyed.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.jargo.ComponentException;
+import org.jargo.ComponentExceptionHandler;
+import org.jargo.ComponentMetaData;
+import org.jargo.ComponentReference;
+import org.jargo.Event;
+import org.jargo.EventFactory;
+import org.jargo.MetaData;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class ComponentProxyFactoryTest {
+    
+    private ComponentMetaData<Object> metaData;
+    private ComponentProxyFactory<Object> factory;
+    
+    @Before
+    public void setUp() {
+        List<Class<?>> interfaces = Arrays.<Class<?>>asList(Service.class, 
+                Other.class);
+        @SuppressWarnings("unchecked")
+        ComponentMetaData<Object> tmp = new ComponentMetaDataImpl(
+                RegistryFixture.newConfiguration("service", Service.class), 
+                interfaces, false, false, true, 
+                Collections.<MetaData>emptyList());
+        metaData = tmp;
+        CallSiteTable callSites = new CallSiteTable("service", interfaces, 
+                new CallEventFactory(interfaces));
+        factory = new ComponentProxyFactory<Object>(metaData, callSites, 
+                new ComponentExceptionHandler() {
+            public void onException(Method method, ComponentException e) 
+                    throws Throwable {
+                throw e;
+            }
+        });
+    }
+    
+    @Test
+    public void testDispatch() {
+        Object proxy = factory.newProxy(new EchoReference());
+        assertEquals("echo(a)@Service", ((Service) proxy).echo("a"));
+        assertEquals("add(1,2)@Service", ((Service) proxy).add(1, 2));
+        // Signatures declared by several interfaces are dispatched to the 
+        // call site of the first interface.
+        assertEquals("echo(b)@Service", ((Other) proxy).echo("b"));
+        assertEquals("other()@Other", ((Other) proxy).other());
+    }
+    
+    @Test
+    public void testObjectMethods() {
+        EchoReference reference = new EchoReference();
+        Object proxy = factory.newProxy(reference);
+        Object same = factory.newProxy(reference);
+        Object other = factory.newProxy(new EchoReference());
+        assertNotSame(proxy, same);
+        assertSame(reference, ComponentProxyFactory.getReference(proxy));
+        assertNull(ComponentProxyFactory.getReference(reference));
+        assertEquals(reference.hashCode(), proxy.hashCode());
+        assertTrue(proxy.equals(same));
+        assertFalse(proxy.equals(other));
+        assertFalse(proxy.equals(reference));
+        assertTrue(proxy.toString().startsWith("ComponentProxy{name=service}"));
+    }
+    
+    @Test
+    public void testGenerated() {
+        Assume.assumeTrue(VanillaProxyGenerator.isCGLibSupported());
+        Object proxy = factory.newProxy(new EchoReference());
+        // Generation fails on JVMs where CGLib cannot define classes.
+        Assume.assumeTrue(proxy instanceof AbstractComponentProxy);
+        assertSame(proxy.getClass(), 
+                factory.newProxy(new EchoReference()).getClass());
+    }
+    
+    public interface Service {
+        String echo(String s);
+        String add(int a, int b);
+    }
+    
+    public interface Other {
+        String echo(String s);
+        String other();
+    }
+    
+    private static final class CallEvent implements Event {
+        
+        private final Method method;
+        private final Object[] args;
+        
+        public CallEvent(Method method, Object[] args) {
+            this.method = method;
+            this.args = args;
+        }
+    }
+    
+    private static final class CallEventFactory implements EventFactory {
+        
+        private final List<Class<?>> interfaces;
+        
+        public CallEventFactory(List<Class<?>> interfaces) {
+            this.interfaces = interfaces;
+        }
+        
+        public Set<Class<? extends Event>> getEventTypes() {
+            return Collections.<Class<? extends Event>>singleton(
+                    CallEvent.class);
+        }
+        
+        public Event getEvent(Method method, Object[] args) {
+            return new CallEvent(method, args);
+        }
+        
+        public List<Class<?>> getInterfaces() {
+            return interfaces;
+        }
+        
+        public boolean isProxy() {
+            return true;
+        }
+    }
+    
+    /**
+     * Returns the method name, arguments and declaring interface of each 
+     * event.
+     */
+    private final class EchoReference implements 
+            ComponentReference<Object> {
+        
+        public ComponentMetaData<Object> getComponentMetaData() {
+            return metaData;
+        }
+        
+        public Object getInfo() {
+            return null;
+        }
+        
+        public Object getComponent() {
+            throw new UnsupportedOperationException();
+        }
+        
+        public boolean isExecutable(Event event) {
+            return event instanceof CallEvent;
+        }
+        
+        public Object execute(Event event) {
+            CallEvent e = (CallEvent) event;
+            StringBuilder builder = new StringBuilder(e.method.getName());
+            builder.append('(');
+            for (int i = 0; e.args != null && i < e.args.length; i++) {
+                builder.append(i == 0 ? "" : ",").append(e.args[i]);
+            }
+            return builder.append(")@").append(
+                    e.method.getDeclaringClass().getSimpleName()).toString();
+        }
+        
+        public void invalidate() {
+        }
+        
+        public boolean isValid() {
+            return true;
+        }
+        
+        public void remove() {
+        }
+        
+        public boolean isRemoved() {
+            return false;
+        }
+        
+        public boolean isWeak() {
+            return false;
+        }
+        
+        public ComponentReference<Object> weakReference() {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void addDestroyHook(Runnable hook) {
+        }
+        
+        public boolean removeDestroyHook(Runnable hook) {
+            return false;
+        }
+    }
+}
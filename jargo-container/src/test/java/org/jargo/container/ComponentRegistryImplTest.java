@@ -0,0 +1,514 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jargo.ComponentConfiguration;
+import org.jargo.ComponentException;
+import org.jargo.ComponentNotActiveException;
+import org.jargo.ComponentObject;
+import org.jargo.ComponentObjectBuilder;
+import org.jargo.ComponentObjectFactory;
+import org.jargo.ComponentObjectPool;
+import org.jargo.Event;
+import org.jargo.ExecutorHandle;
+import org.jargo.Invocation;
+import org.jargo.Lifecycle;
+import org.jargo.ObjectFactory;
+import org.jargo.PrewarmedComponentObjectFactory;
+import org.jargo.ProxyGenerator;
+import org.jargo.deploy.SequentialDeployable;
+import org.jargo.spi.ComponentObjectFactoryProvider;
+import org.jargo.spi.EventExecutorProvider;
+import org.jargo.spi.ExecutorHandleProvider;
+import org.jargo.spi.LifecycleProvider;
+import org.jargo.spi.ObjectFactoryProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class ComponentRegistryImplTest {
+    
+    private TestProvider provider;
+    private ComponentRegistryImpl registry;
+    
+    @Before
+    public void setUp() throws Exception {
+        provider = new TestProvider();
+        registry = RegistryFixture.newRegistry(provider);
+    }
+    
+    @After
+    public void tearDown() {
+        registry.shutdown();
+    }
+    
+    @Test
+    public void testCreateAll() {
+        registry.createAll(configurations("component", 200));
+        for (int i = 0; i < 200; i++) {
+            assertTrue(registry.exists("component" + i, false));
+            assertNotNull(registry.lookup("component" + i));
+        }
+        assertEquals(200, registry.list().size());
+        assertEquals(200, registry.list(Object.class).size());
+        assertEquals(200, provider.created.get());
+        assertEquals(0, provider.destroyed.get());
+    }
+    
+    @Test
+    public void testCreateAllParallel() {
+        System.setProperty("org.jargo.threads", "4");
+        try {
+            testCreateAll();
+        } finally {
+            System.clearProperty("org.jargo.threads");
+        }
+    }
+    
+    @Test
+    public void testCreateAllAfterCreate() {
+        registry.create(RegistryFixture.newConfiguration("first", 
+                Runnable.class));
+        registry.createAll(configurations("component", 10));
+        assertEquals(11, registry.list().size());
+        assertEquals(11, registry.list(Object.class).size());
+    }
+    
+    @Test
+    public void testDuplicateNameInBatch() {
+        List<ComponentConfiguration<?>> configurations = 
+                configurations("component", 10);
+        configurations.add(RegistryFixture.newConfiguration("component5", 
+                Runnable.class));
+        assertNothingPublished(configurations);
+    }
+    
+    @Test
+    public void testExistingName() {
+        registry.create(RegistryFixture.newConfiguration("component5", 
+                Runnable.class));
+        List<ComponentConfiguration<?>> configurations = 
+                configurations("component", 10);
+        try {
+            registry.createAll(configurations);
+            fail();
+        } catch (ComponentException e) {
+        }
+        assertEquals(1, registry.list().size());
+        assertEquals(1, provider.created.get() - provider.destroyed.get());
+        assertEquals(1, provider.factoriesCreated.get() - 
+                provider.factoriesDestroyed.get());
+    }
+    
+    @Test
+    public void testExistingNameKeepsEventExecutor() {
+        System.setProperty("org.jargo.executor.mode", "async");
+        try {
+            ComponentConfiguration<Runnable> configuration = 
+                    RegistryFixture.newConfiguration("component5", 
+                    Runnable.class);
+            registry.create(configuration);
+            StandardEventExecutorProvider executors = getExecutorProvider();
+            AsyncEventExecutor<?> executor = (AsyncEventExecutor<?>) 
+                    executors.getEventExecutor(configuration, Event.class, 
+                    null);
+            try {
+                registry.createAll(configurations("component", 10));
+                fail();
+            } catch (ComponentException e) {
+            }
+            // The executors of the rejected batch are released, the 
+            // executor of the existing component is kept.
+            assertEquals(Collections.singleton("component5"), 
+                    executors.getQueueDepths().keySet());
+            assertSame(executor, executors.getEventExecutor(configuration, 
+                    Event.class, null));
+            assertFalse(executor.isShutdown());
+        } finally {
+            System.clearProperty("org.jargo.executor.mode");
+        }
+    }
+    
+    private StandardEventExecutorProvider getExecutorProvider() {
+        for (EventExecutorProvider provider : ((EventExecutorProviders) 
+                registry.getProviders().getEventExecutorProvider()).
+                getProviders()) {
+            if (provider instanceof StandardEventExecutorProvider) {
+                return (StandardEventExecutorProvider) provider;
+            }
+        }
+        throw new AssertionError();
+    }
+    
+    @Test
+    public void testResolveFailure() {
+        List<ComponentConfiguration<?>> configurations = 
+                configurations("component", 10);
+        configurations.add(5, RegistryFixture.newConfiguration("failure", 
+                Runnable.class));
+        assertNothingPublished(configurations);
+    }
+    
+    @Test
+    public void testResolveFailureParallel() {
+        System.setProperty("org.jargo.threads", "4");
+        try {
+            testResolveFailure();
+        } finally {
+            System.clearProperty("org.jargo.threads");
+        }
+    }
+    
+    private void assertNothingPublished(
+            List<ComponentConfiguration<?>> configurations) {
+        try {
+            registry.createAll(configurations);
+            fail();
+        } catch (ComponentException e) {
+        }
+        for (ComponentConfiguration<?> configuration : configurations) {
+            assertFalse(registry.exists(configuration.getComponentName(), 
+                    false));
+        }
+        assertTrue(registry.list().isEmpty());
+        assertTrue(registry.list(Object.class).isEmpty());
+        // Executors acquired for the resolved entries are released again.
+        assertEquals(provider.created.get(), provider.destroyed.get());
+        // And so are their object factories.
+        assertEquals(provider.factoriesCreated.get(), 
+                provider.factoriesDestroyed.get());
+    }
+    
+    @Test
+    public void testPrewarm() throws Exception {
+        PrewarmProvider prewarm = new PrewarmProvider(4);
+        ComponentRegistryImpl registry = RegistryFixture.newRegistry(prewarm);
+        prewarm.registry = registry;
+        try {
+            ComponentConfiguration<Prewarmed> configuration = 
+                    RegistryFixture.activate(registry, "prewarmed", 
+                    Prewarmed.class);
+            assertEquals(4, prewarm.objects.size());
+            assertFalse(prewarm.published);
+            assertNotNull(registry.createReference(configuration, null));
+            assertTrue(prewarm.destroyed.isEmpty());
+        } finally {
+            registry.shutdown();
+        }
+    }
+    
+    @Test
+    public void testPrewarmFailure() throws Exception {
+        assertPrewarmFailure();
+    }
+    
+    @Test
+    public void testPrewarmFailureParallel() throws Exception {
+        System.setProperty("org.jargo.threads", "4");
+        try {
+            assertPrewarmFailure();
+        } finally {
+            System.clearProperty("org.jargo.threads");
+        }
+    }
+    
+    private void assertPrewarmFailure() throws Exception {
+        PrewarmProvider prewarm = new PrewarmProvider(4);
+        ComponentRegistryImpl registry = RegistryFixture.newRegistry(prewarm);
+        prewarm.registry = registry;
+        try {
+            // The third object fails to be built.
+            Prewarmed.countdown.set(3);
+            try {
+                RegistryFixture.activate(registry, "prewarmed", 
+                        Prewarmed.class);
+                fail();
+            } catch (RuntimeException e) {
+            }
+            // Nothing is handed over, and the objects that were built are 
+            // destroyed.
+            assertTrue(prewarm.objects.isEmpty());
+            assertTrue(prewarm.created.size() >= 2);
+            assertEquals(prewarm.created, prewarm.destroyed);
+        } finally {
+            Prewarmed.countdown.set(0);
+            registry.shutdown();
+        }
+    }
+    
+    private static List<ComponentConfiguration<?>> configurations(
+            String prefix, int n) {
+        List<ComponentConfiguration<?>> configurations = 
+                new ArrayList<ComponentConfiguration<?>>();
+        for (int i = 0; i < n; i++) {
+            configurations.add(RegistryFixture.newConfiguration(prefix + i, 
+                    Runnable.class));
+        }
+        return configurations;
+    }
+    
+    /**
+     * Component of which the instance that counts the countdown down to zero
+     * fails to be created.
+     */
+    public static class Prewarmed implements Runnable {
+        
+        static final AtomicInteger countdown = new AtomicInteger();
+        
+        public Prewarmed() {
+            if (countdown.decrementAndGet() == 0) {
+                throw new IllegalStateException("Failure.");
+            }
+        }
+        
+        public void run() {
+        }
+    }
+    
+    /**
+     * Provides a prewarmed pool of {@code size} objects, and tracks the 
+     * component instances that are created, handed over and destroyed.
+     */
+    public static final class PrewarmProvider implements 
+            ComponentObjectFactoryProvider, LifecycleProvider, 
+            ObjectFactoryProvider {
+        
+        private final int size;
+        final Set<Object> created = Collections.synchronizedSet(
+                new HashSet<Object>());
+        final Set<Object> destroyed = Collections.synchronizedSet(
+                new HashSet<Object>());
+        final List<Object> objects = new ArrayList<Object>();
+        volatile ComponentRegistryImpl registry;
+        volatile boolean published;
+        
+        public PrewarmProvider(int size) {
+            this.size = size;
+        }
+        
+        public Sequence sequence(SequentialDeployable deployable) {
+            return Sequence.EQUAL;
+        }
+        
+        public <T> ComponentObjectFactory<T> getComponentObjectFactory(
+                final ComponentConfiguration<T> configuration) {
+            return new Pool<T>(configuration);
+        }
+        
+        public <T> ObjectFactory<T> getObjectFactory(
+                final ComponentConfiguration<T> configuration) {
+            return new ObjectFactory<T>() {
+                public T newInstance() {
+                    return configuration.getType().cast(new Prewarmed());
+                }
+                
+                public T newInstance(ProxyGenerator<T> proxyGenerator) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+        
+        private final class Pool<T> implements ComponentObjectPool<T>, 
+                PrewarmedComponentObjectFactory<T> {
+            
+            private final ComponentConfiguration<T> configuration;
+            
+            public Pool(ComponentConfiguration<T> configuration) {
+                this.configuration = configuration;
+            }
+            
+            public boolean isStatic() {
+                return true;
+            }
+            
+            public void init(ComponentObjectBuilder<T> builder) {
+            }
+            
+            public int getPrewarmSize() {
+                return size;
+            }
+            
+            public void prewarm(List<ComponentObject<T>> list) {
+                for (ComponentObject<T> object : list) {
+                    objects.add(object.getInstance());
+                }
+                try {
+                    registry.createReference(configuration, null);
+                    published = true;
+                } catch (ComponentNotActiveException e) {
+                    published = false;
+                }
+            }
+            
+            public ComponentObject<T> create() {
+                return null;
+            }
+            
+            public ComponentObject<T> getComponentObject() {
+                throw new UnsupportedOperationException();
+            }
+            
+            public void freeComponentObject(ComponentObject<T> object) {
+                throw new UnsupportedOperationException();
+            }
+            
+            public void discardComponentObject(ComponentObject<T> object) {
+                throw new UnsupportedOperationException();
+            }
+            
+            public void remove() {
+            }
+            
+            public void destroy() {
+            }
+        }
+        
+        public List<Lifecycle> getLifecycles(
+                ComponentConfiguration<?> configuration, Executor executor, 
+                boolean vanilla) {
+            return Collections.<Lifecycle>singletonList(new Lifecycle() {
+                public List<Invocation> onCreate(Class<?> cls, 
+                        boolean interceptor) {
+                    return interceptor ? Collections.<Invocation>emptyList() :
+                            Collections.singletonList(record(created));
+                }
+                
+                public List<Invocation> onDestroy(Class<?> cls, 
+                        boolean interceptor) {
+                    return interceptor ? Collections.<Invocation>emptyList() :
+                            Collections.singletonList(record(destroyed));
+                }
+            });
+        }
+        
+        private static Invocation record(final Set<Object> instances) {
+            return new Invocation() {
+                public Method getMethod() {
+                    return null;
+                }
+                
+                public Object[] getParameters() {
+                    return new Object[0];
+                }
+                
+                public void setParameters(Object[] args) {
+                }
+                
+                public Object invoke(Object instance) {
+                    instances.add(instance);
+                    return null;
+                }
+            };
+        }
+    }
+    
+    /**
+     * Fails to resolve the component named {@code failure}, and counts the
+     * object factories and executor handles that are acquired and released.
+     */
+    public static final class TestProvider implements 
+            ComponentObjectFactoryProvider, ExecutorHandleProvider {
+        
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger destroyed = new AtomicInteger();
+        final AtomicInteger factoriesCreated = new AtomicInteger();
+        final AtomicInteger factoriesDestroyed = new AtomicInteger();
+        
+        public Sequence sequence(SequentialDeployable deployable) {
+            return Sequence.EQUAL;
+        }
+        
+        public <T> ComponentObjectFactory<T> getComponentObjectFactory(
+                ComponentConfiguration<T> configuration) {
+            if (configuration.getComponentName().equals("failure")) {
+                throw new IllegalStateException("Failure.");
+            }
+            factoriesCreated.incrementAndGet();
+            return new ComponentObjectFactory<T>() {
+                public boolean isStatic() {
+                    return true;
+                }
+                
+                public void init(ComponentObjectBuilder<T> builder) {
+                }
+                
+                public ComponentObject<T> create() {
+                    throw new UnsupportedOperationException();
+                }
+                
+                public ComponentObject<T> getComponentObject() {
+                    throw new UnsupportedOperationException();
+                }
+                
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+                
+                public void destroy() {
+                    factoriesDestroyed.incrementAndGet();
+                }
+            };
+        }
+        
+        public ExecutorHandle getExecutorHandle(
+                ComponentConfiguration<?> configuration, ThreadFactory factory) {
+            created.incrementAndGet();
+            return new ExecutorHandle() {
+                public Executor getExecutor() {
+                    return null;
+                }
+                
+                public void destroy() {
+                    destroyed.incrementAndGet();
+                }
+            };
+        }
+    }
+}
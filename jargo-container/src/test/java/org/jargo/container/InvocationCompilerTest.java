@@ -0,0 +1,180 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import net.sf.cglib.reflect.FastClass;
+import org.jargo.Invocation;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class InvocationCompilerTest {
+    
+    private final InvocationCompiler compiler = new InvocationCompiler();
+    
+    @Test
+    public void testFastClass() throws Exception {
+        Assume.assumeTrue(isFastClassSupported());
+        Invocation invocation = compiler.compile(
+                Target.class.getMethod("caller"));
+        assertTrue(isFastClass((String) invocation.invoke(new Target())));
+    }
+    
+    @Test
+    public void testReflection() throws Exception {
+        // Methods of non-public classes cannot be called by a FastClass.
+        Method method = Hidden.class.getDeclaredMethod("caller");
+        Invocation invocation = compiler.compile(method);
+        assertFalse(isFastClass((String) invocation.invoke(new Hidden())));
+    }
+    
+    @Test
+    public void testParameters() throws Exception {
+        Method method = Target.class.getMethod("concat", String.class, 
+                int.class);
+        Invocation invocation = compiler.compile(method, "a", 1);
+        assertSame(method, invocation.getMethod());
+        assertArrayEquals(new Object[]{"a", 1}, invocation.getParameters());
+        assertEquals("a1", invocation.invoke(new Target()));
+        invocation.setParameters(new Object[]{"b", 2});
+        assertEquals("b2", invocation.invoke(new Target()));
+        
+        invocation = compiler.compile(Target.class.getMethod("caller"));
+        assertEquals(0, invocation.getParameters().length);
+    }
+    
+    @Test
+    public void testCheckedException() throws Exception {
+        assertThrows(Target.class.getMethod("fail", Throwable.class), 
+                new Target(), new IOException());
+        assertThrows(Hidden.class.getDeclaredMethod("fail", Throwable.class),
+                new Hidden(), new IOException());
+    }
+    
+    @Test
+    public void testRuntimeException() throws Exception {
+        assertThrows(Target.class.getMethod("fail", Throwable.class), 
+                new Target(), new IllegalStateException());
+        assertThrows(Hidden.class.getDeclaredMethod("fail", Throwable.class),
+                new Hidden(), new IllegalStateException());
+    }
+    
+    @Test
+    public void testError() throws Exception {
+        assertThrows(Target.class.getMethod("fail", Throwable.class), 
+                new Target(), new AssertionError());
+        assertThrows(Hidden.class.getDeclaredMethod("fail", Throwable.class),
+                new Hidden(), new AssertionError());
+    }
+    
+    /**
+     * Asserts that the invocation of {@code method} on {@code instance} 
+     * throws {@code t} itself, rather than an 
+     * {@code InvocationTargetException} wrapping it.
+     */
+    private void assertThrows(Method method, Object instance, Throwable t) 
+            throws Exception {
+        Invocation invocation = compiler.compile(method, t);
+        try {
+            invocation.invoke(instance);
+            fail();
+        } catch (Exception e) {
+            assertSame(t, e);
+        } catch (Error e) {
+            assertSame(t, e);
+        }
+    }
+    
+    private static boolean isFastClass(String caller) {
+        return caller.contains("FastClass");
+    }
+    
+    private static boolean isFastClassSupported() {
+        if (!VanillaProxyGenerator.isCGLibSupported()) {
+            return false;
+        }
+        try {
+            FastClass.create(Target.class);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+    
+    private static void rethrow(Throwable t) throws Exception {
+        if (t instanceof Exception) {
+            throw (Exception) t;
+        }
+        throw (Error) t;
+    }
+    
+    public static final class Target {
+        
+        /**
+         * Returns the name of the class that called this method.
+         */
+        public String caller() {
+            return new Throwable().getStackTrace()[1].getClassName();
+        }
+        
+        public String concat(String s, int i) {
+            return s + i;
+        }
+        
+        public void fail(Throwable t) throws Exception {
+            InvocationCompilerTest.rethrow(t);
+        }
+    }
+    
+    static final class Hidden {
+        
+        String caller() {
+            return new Throwable().getStackTrace()[1].getClassName();
+        }
+        
+        void fail(Throwable t) throws Exception {
+            InvocationCompilerTest.rethrow(t);
+        }
+    }
+}
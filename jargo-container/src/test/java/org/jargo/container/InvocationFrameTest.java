@@ -0,0 +1,219 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.NoSuchElementException;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class InvocationFrameTest {
+    
+    @Test
+    public void testPushPopPeek() {
+        InvocationFrame frame = InvocationFrame.current();
+        Object owner = new Object();
+        int size = frame.size();
+        frame.push(owner, "a");
+        frame.push(owner, "b");
+        assertEquals(size + 2, frame.size());
+        assertEquals("b", frame.peek(owner));
+        assertEquals("b", frame.pop(owner));
+        assertEquals("a", frame.peek(owner));
+        assertEquals("a", frame.pop(owner));
+        assertNull(frame.peek(owner));
+        assertEquals(size, frame.size());
+    }
+    
+    @Test(expected=NoSuchElementException.class)
+    public void testPopWithoutPush() {
+        InvocationFrame.current().pop(new Object());
+    }
+    
+    @Test
+    public void testPopLeavesLaterSlotsOfOtherOwners() {
+        InvocationFrame frame = InvocationFrame.current();
+        Object first = new Object();
+        Object second = new Object();
+        frame.push(first, "a");
+        frame.push(second, "b");
+        assertEquals("a", frame.pop(first));
+        assertNull(frame.peek(first));
+        assertEquals("b", frame.peek(second));
+        int index = frame.indexOf(second);
+        assertSame(second, frame.getOwner(index));
+        frame.set(index, "c");
+        assertEquals("c", frame.get(index));
+        assertEquals("c", frame.pop(second));
+    }
+    
+    @Test
+    public void testGrowth() {
+        InvocationFrame frame = InvocationFrame.current();
+        Object owner = new Object();
+        for (int i = 0; i < 100; i++) {
+            frame.push(owner, i);
+        }
+        for (int i = 99; i >= 0; i--) {
+            assertEquals(i, frame.pop(owner));
+        }
+        assertEquals(-1, frame.indexOf(owner));
+    }
+    
+    @Test
+    public void testFramesAreThreadBound() throws Exception {
+        final Object owner = new Object();
+        InvocationFrame.current().push(owner, "a");
+        try {
+            final Object[] result = new Object[1];
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    result[0] = InvocationFrame.current().peek(owner);
+                }
+            };
+            thread.start();
+            thread.join();
+            assertNull(result[0]);
+        } finally {
+            InvocationFrame.current().pop(owner);
+        }
+    }
+    
+    @Test
+    public void testAcquireRelease() {
+        InvocationFrame frame = InvocationFrame.current();
+        Object owner = new Object();
+        Object key = new Object();
+        Object o = new Object();
+        assertNull(frame.acquire(owner, key));
+        frame.release(owner, key, o);
+        assertTrue(!debug() || InvocationFrame.isReleased(o));
+        assertNull(frame.acquire(new Object(), key));
+        assertSame(o, frame.acquire(owner, key));
+        assertFalse(InvocationFrame.isReleased(o));
+        assertNull(frame.acquire(owner, key));
+    }
+    
+    @Test
+    public void testReleaseKeepsOneObjectPerKey() {
+        InvocationFrame frame = InvocationFrame.current();
+        Object owner = new Object();
+        Object key = new Object();
+        Object first = new Object();
+        Object second = new Object();
+        frame.release(owner, key, first);
+        frame.release(owner, key, second);
+        assertFalse(InvocationFrame.isReleased(first));
+        assertSame(second, frame.acquire(owner, key));
+        assertNull(frame.acquire(owner, key));
+    }
+    
+    @Test
+    public void testIsReleasedByOtherThread() throws Exception {
+        final Object o = new Object();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                InvocationFrame.current().release(this, this, o);
+            }
+        };
+        thread.start();
+        thread.join();
+        assertTrue(!debug() || InvocationFrame.isReleased(o));
+    }
+    
+    @Test
+    public void testInvalidateRecycled() throws Exception {
+        final Object owner = new Object();
+        final Object other = new Object();
+        final Object key = new Object();
+        final Object kept = new Object();
+        InvocationFrame.current().release(owner, key, new Object());
+        InvocationFrame.current().release(other, key, kept);
+        
+        // Recycled objects of other threads are dropped as well.
+        final Object[] result = new Object[1];
+        final Object o = new Object();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                InvocationFrame frame = InvocationFrame.current();
+                frame.release(owner, key, o);
+                synchronized (result) {
+                    result.notify();
+                    try {
+                        result.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                result[0] = frame.acquire(owner, key);
+            }
+        };
+        synchronized (result) {
+            thread.start();
+            result.wait();
+            InvocationFrame.invalidateRecycled(owner);
+            result.notify();
+        }
+        thread.join();
+        assertNull(result[0]);
+        assertNull(InvocationFrame.current().acquire(owner, key));
+        // Objects of other owners are kept.
+        assertSame(kept, InvocationFrame.current().acquire(other, key));
+    }
+    
+    @Test
+    public void testReleaseAfterInvalidateRecycled() {
+        Object owner = new Object();
+        Object key = new Object();
+        Object o = new Object();
+        InvocationFrame.invalidateRecycled(owner);
+        // An object released for a destroyed owner is not kept.
+        InvocationFrame.current().release(owner, key, o);
+        assertFalse(InvocationFrame.isReleased(o));
+        assertNull(InvocationFrame.current().acquire(owner, key));
+    }
+    
+    private static boolean debug() {
+        boolean b = false;
+        assert b = true;
+        return b;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.jargo.ComponentContext;
+import org.jargo.Invocation;
+import org.jargo.InvocationContext;
+import org.jargo.InvocationInterceptor;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class InvocationInterceptorChainTest {
+    
+    @Test
+    public void testInterceptorsRunInOrder() throws Exception {
+        List<String> trace = new ArrayList<String>();
+        InvocationContext chain = InvocationInterceptorChain.instance(
+                Arrays.asList(new Tracer("a", trace), new Tracer("b", trace)),
+                new Terminator(trace), null);
+        assertEquals("target", chain.proceed());
+        assertEquals(Arrays.asList("a", "b", "target"), trace);
+    }
+    
+    @Test
+    public void testWithoutInterceptorsReturnsTerminator() throws Exception {
+        Terminator terminator = new Terminator(new ArrayList<String>());
+        assertEquals(terminator, InvocationInterceptorChain.instance(
+                Collections.<InvocationInterceptor>emptyList(), terminator, 
+                null));
+    }
+    
+    @Test
+    public void testProceedRepeatedly() throws Exception {
+        List<String> trace = new ArrayList<String>();
+        InvocationInterceptor twice = new InvocationInterceptor() {
+            public boolean isLifecycleInterceptor() {
+                return false;
+            }
+            public Object intercept(InvocationContext ctx) throws Exception {
+                ctx.proceed();
+                return ctx.proceed();
+            }
+        };
+        InvocationContext chain = InvocationInterceptorChain.instance(
+                Arrays.asList(twice, new Tracer("a", trace)),
+                new Terminator(trace), null);
+        assertEquals("target", chain.proceed());
+        assertEquals(Arrays.asList("a", "target", "a", "target"), trace);
+    }
+    
+    @Test
+    public void testProceedOnOtherThread() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<String> trace = Collections.synchronizedList(
+                    new ArrayList<String>());
+            InvocationInterceptor handOff = new InvocationInterceptor() {
+                public boolean isLifecycleInterceptor() {
+                    return false;
+                }
+                public Object intercept(final InvocationContext ctx) 
+                        throws Exception {
+                    return executor.submit(new Callable<Object>() {
+                        public Object call() throws Exception {
+                            return ctx.proceed();
+                        }
+                    }).get();
+                }
+            };
+            InvocationContext chain = InvocationInterceptorChain.instance(
+                    Arrays.asList(handOff, new Tracer("a", trace)),
+                    new Terminator(trace), null);
+            assertEquals("target", chain.proceed());
+            assertEquals(Arrays.asList("a", "target"), trace);
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    private static final class Tracer implements InvocationInterceptor {
+        
+        private final String name;
+        private final List<String> trace;
+        
+        public Tracer(String name, List<String> trace) {
+            this.name = name;
+            this.trace = trace;
+        }
+        
+        public boolean isLifecycleInterceptor() {
+            return false;
+        }
+        
+        public Object intercept(InvocationContext ctx) throws Exception {
+            trace.add(name);
+            return ctx.proceed();
+        }
+    }
+    
+    private static final class Terminator implements InvocationContext {
+        
+        private final List<String> trace;
+        
+        public Terminator(List<String> trace) {
+            this.trace = trace;
+        }
+        
+        public Object proceed() throws Exception {
+            trace.add("target");
+            return "target";
+        }
+        
+        public Invocation getInvocation() {
+            return null;
+        }
+        
+        public ComponentContext getComponentContext() {
+            return null;
+        }
+        
+        public Object get() {
+            return null;
+        }
+        
+        public void set(Object o) {
+        }
+        
+        public Object getTarget() {
+            return null;
+        }
+    }
+}
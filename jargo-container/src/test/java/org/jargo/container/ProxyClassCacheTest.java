@@ -0,0 +1,242 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLClassLoader;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.NoOp;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class ProxyClassCacheTest {
+    
+    private File directory;
+    private byte[] original;
+    
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(VanillaProxyGenerator.isCGLibSupported());
+        directory = File.createTempFile("proxies", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+        Class<?> cls = null;
+        try {
+            cls = load(new ProxyClassCache(directory), newLoader(), true);
+        } catch (RuntimeException e) {
+            // Generation fails on JVMs where CGLib cannot define classes.
+        }
+        Assume.assumeTrue(cls != null);
+        original = read(file());
+    }
+    
+    @After
+    public void tearDown() {
+        if (directory == null) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+    
+    @Test
+    public void testMemoryHit() {
+        ProxyClassCache cache = new ProxyClassCache(directory);
+        ClassLoader loader = newLoader();
+        Class<?> cls = load(cache, loader, true);
+        assertSame(cls, load(cache, loader, false));
+    }
+    
+    @Test
+    public void testFileHitAcrossInstances() {
+        ClassLoader loader = newLoader();
+        // The enhancer fails if the class is generated again.
+        Class<?> cls = load(new ProxyClassCache(directory), loader, false);
+        assertSame(loader, cls.getClassLoader());
+        assertTrue(Service.class.isAssignableFrom(cls));
+        assertArrayEquals(original, read(file()));
+    }
+    
+    @Test
+    public void testStaleDigestEvicted() throws Exception {
+        rewrite(file(), "stale");
+        Class<?> cls = load(new ProxyClassCache(directory), newLoader(), true);
+        assertTrue(Service.class.isAssignableFrom(cls));
+        assertReplaced();
+    }
+    
+    @Test
+    public void testTruncatedFileEvicted() throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file(), "rw");
+        try {
+            raf.setLength(raf.length() / 2);
+        } finally {
+            raf.close();
+        }
+        load(new ProxyClassCache(directory), newLoader(), true);
+        assertReplaced();
+    }
+    
+    @Test
+    public void testCorruptFileEvicted() throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file(), "rw");
+        try {
+            // Flips a byte of the bytecode, which precedes the checksum.
+            long position = raf.length() - 64;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xff);
+        } finally {
+            raf.close();
+        }
+        load(new ProxyClassCache(directory), newLoader(), true);
+        assertReplaced();
+    }
+    
+    /**
+     * Asserts that the evicted file has been replaced by a newly generated 
+     * class, which is used by the next cache.
+     */
+    private void assertReplaced() {
+        byte[] bytes = read(file());
+        assertEquals(original.length, bytes.length);
+        load(new ProxyClassCache(directory), newLoader(), false);
+    }
+    
+    private File file() {
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+    
+    /**
+     * Loaders of the same type with the same parent share cache files.
+     */
+    private static ClassLoader newLoader() {
+        return new URLClassLoader(new URL[0], 
+                ProxyClassCacheTest.class.getClassLoader());
+    }
+    
+    private static Class<?> load(ProxyClassCache cache, ClassLoader loader, 
+            boolean generate) {
+        Enhancer enhancer = generate ? new Enhancer() : new Enhancer() {
+            @Override
+            public Class createClass() {
+                throw new AssertionError("Generated.");
+            }
+        };
+        Class<?>[] interfaces = {Service.class};
+        enhancer.setClassLoader(loader);
+        enhancer.setInterfaces(interfaces);
+        enhancer.setCallbackType(NoOp.class);
+        enhancer.setUseCache(false);
+        enhancer.setUseFactory(false);
+        return cache.getProxyClass(loader, null, interfaces, "test", enhancer);
+    }
+    
+    private static byte[] read(File file) {
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                in.readFully(bytes);
+            } finally {
+                in.close();
+            }
+            return bytes;
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    /**
+     * Rewrites the cache {@code file} with the specified {@code digest}.
+     */
+    private static void rewrite(File file, String digest) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        int magic, version;
+        String name, className, checksum;
+        byte[] bytes;
+        try {
+            magic = in.readInt();
+            version = in.readInt();
+            name = in.readUTF();
+            in.readUTF();
+            className = in.readUTF();
+            bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            checksum = in.readUTF();
+        } finally {
+            in.close();
+        }
+        DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(file));
+        try {
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeUTF(name);
+            out.writeUTF(digest);
+            out.writeUTF(className);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeUTF(checksum);
+        } finally {
+            out.close();
+        }
+    }
+    
+    public interface Service {
+        void run();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.ObjectName;
+import org.jargo.ComponentFactory;
+import org.jargo.ComponentReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class ReferenceReaperTest {
+    
+    private static final long TIMEOUT = 30000;
+    
+    private ComponentRegistryImpl registry;
+    private ReferenceReaperMBean reaper;
+    
+    @Before
+    public void setUp() throws Exception {
+        registry = RegistryFixture.newRegistry();
+        reaper = registry.getReferenceReaper();
+    }
+    
+    @After
+    public void tearDown() {
+        registry.shutdown();
+    }
+    
+    @Test
+    public void testUnreachableReferencesAreReaped() throws Exception {
+        RegistryFixture.activate(registry, "reaped", Runnable.class);
+        create("reaped", 1000);
+        assertEquals(1000, tracked("reaped"));
+        long start = System.currentTimeMillis();
+        while (tracked("reaped") > 0 || reaper.getBacklog() > 0) {
+            assertTrue("Not reaped: " + tracked("reaped"), 
+                    System.currentTimeMillis() - start < TIMEOUT);
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(1000, reaper.getReapCount());
+    }
+    
+    @Test
+    public void testReachableReferencesAreKept() throws Exception {
+        RegistryFixture.activate(registry, "kept", Runnable.class);
+        RegistryFixture.activate(registry, "dropped", Runnable.class);
+        List<ComponentReference<?>> kept = create("kept", 100);
+        create("dropped", 100);
+        long start = System.currentTimeMillis();
+        while (tracked("dropped") > 0) {
+            assertTrue(System.currentTimeMillis() - start < TIMEOUT);
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(100, tracked("kept"));
+        for (ComponentReference<?> reference : kept) {
+            assertTrue(reference.isValid());
+        }
+    }
+    
+    @Test
+    public void testDestroyReleasesTrackedReferences() throws Exception {
+        RegistryFixture.activate(registry, "destroyed", Runnable.class);
+        List<ComponentReference<?>> references = create("destroyed", 10);
+        registry.destroy("destroyed");
+        assertNull(reaper.getTrackedReferences().get("destroyed"));
+        for (ComponentReference<?> reference : references) {
+            assertTrue(!reference.isValid());
+        }
+    }
+    
+    @Test
+    public void testRegisteredPerContainer() throws Exception {
+        int count = registered();
+        ComponentRegistryImpl second = RegistryFixture.newRegistry();
+        try {
+            assertEquals(count + 1, registered());
+        } finally {
+            second.shutdown();
+        }
+        assertEquals(count, registered());
+    }
+    
+    private static int registered() throws Exception {
+        return ManagementFactory.getPlatformMBeanServer().queryNames(
+                new ObjectName("org.jargo:type=ReferenceReaper,*"), null).
+                size();
+    }
+    
+    private List<ComponentReference<?>> create(String componentName, int n) {
+        ComponentFactory<?> factory = registry.lookup(componentName);
+        List<ComponentReference<?>> references = 
+                new ArrayList<ComponentReference<?>>();
+        for (int i = 0; i < n; i++) {
+            references.add(factory.create());
+        }
+        return references;
+    }
+    
+    private int tracked(String componentName) {
+        Integer count = reaper.getTrackedReferences().get(componentName);
+        return count == null ? 0 : count;
+    }
+}
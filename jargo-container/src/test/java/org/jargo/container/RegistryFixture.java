@@ -0,0 +1,119 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import org.jargo.ComponentConfiguration;
+import org.jargo.ComponentUnit;
+import org.jargo.deploy.Deployable;
+import org.jargo.deploy.Deployer;
+
+/**
+ * Builds registries without starting a {@link Container}. The composite 
+ * providers are wired the same way as by the container, with only the 
+ * specified providers deployed into them.
+ *
+ * @author Leon van Zantvoort
+ */
+final class RegistryFixture {
+    
+    private RegistryFixture() {
+    }
+    
+    public static ComponentRegistryImpl newRegistry(Deployable... deployables) 
+            throws Exception {
+        ProvidersImpl providers = new ProvidersImpl();
+        Deployer[] composites = {
+            new ClassLoaderProviders(),
+            new DependencyInspectorProviders(),
+            new EventExecutorProviders(),
+            new EventFactoryProviders(),
+            new EventInterceptorFactoryProviders(),
+            new InjectionFactoryProviders(),
+            new InvocationFactoryProviders(),
+            new InvocationInterceptorFactoryProviders(),
+            new ComponentConfigurationProviders(),
+            new ComponentAliasProviders(),
+            new ComponentExceptionHandlerProviders(),
+            new ComponentObjectFactoryProviders(),
+            new ComponentLifecycleProviders(),
+            new ComponentReferenceLifecycleProviders(),
+            new ExecutorHandleProviders(),
+            new LifecycleProviders(),
+            new MetaDataProviders(),
+            new ObjectFactoryProviders()};
+        for (Deployer composite : composites) {
+            providers.deploy((Deployable) composite);
+            composite.deploy(new ComponentObjectPoolProvider());
+            composite.deploy(new StandardEventExecutorProvider());
+            for (Deployable deployable : deployables) {
+                composite.deploy(deployable);
+            }
+        }
+        return new ComponentRegistryImpl(providers);
+    }
+    
+    /**
+     * Registers and activates a component of the specified {@code type}.
+     */
+    public static <T> ComponentConfiguration<T> activate(
+            ComponentRegistryImpl registry, String componentName, 
+            Class<T> type) {
+        ComponentConfiguration<T> configuration = newConfiguration(
+                componentName, type);
+        registry.create(configuration);
+        registry.activate(new ManagedComponentContextImpl<T>(
+                registry.getComponentMetaData(configuration)));
+        return configuration;
+    }
+    
+    public static <T> ComponentConfiguration<T> newConfiguration(
+            final String componentName, final Class<T> type) {
+        final ComponentUnit unit = new ComponentUnitImpl(null, 
+                type.getClassLoader(), new Destroyer());
+        return new ComponentConfiguration<T>() {
+            public String getDescription() {
+                return null;
+            }
+            
+            public Class<T> getType() {
+                return type;
+            }
+            
+            public String getComponentName() {
+                return componentName;
+            }
+            
+            public ComponentUnit getComponentUnit() {
+                return unit;
+            }
+        };
+    }
+}
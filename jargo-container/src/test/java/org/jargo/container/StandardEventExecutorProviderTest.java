@@ -0,0 +1,143 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jargo.ComponentConfiguration;
+import org.jargo.ComponentException;
+import org.jargo.Event;
+import org.jargo.EventExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class StandardEventExecutorProviderTest {
+    
+    private static final AtomicInteger counter = new AtomicInteger();
+    
+    private final Executor executor = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+    
+    private StandardEventExecutorProvider provider;
+    private String name;
+    
+    @Before
+    public void setUp() {
+        provider = new StandardEventExecutorProvider();
+        name = "executor-" + counter.incrementAndGet();
+        System.setProperty("org.jargo.executor." + name + ".mode", "async");
+    }
+    
+    @After
+    public void tearDown() {
+        provider.shutdown();
+        System.clearProperty("org.jargo.executor." + name + ".mode");
+        System.clearProperty("org.jargo.executor." + name + ".queueSize");
+        System.clearProperty("org.jargo.executor." + name + ".policy");
+    }
+    
+    @Test
+    public void testKeyedByConfiguration() {
+        ComponentConfiguration<Runnable> first = 
+                RegistryFixture.newConfiguration(name, Runnable.class);
+        ComponentConfiguration<Runnable> second = 
+                RegistryFixture.newConfiguration(name, Runnable.class);
+        AsyncEventExecutor<?> a = getEventExecutor(first);
+        AsyncEventExecutor<?> b = getEventExecutor(second);
+        assertNotSame(a, b);
+        assertSame(a, getEventExecutor(first));
+        assertFalse(a.isShutdown());
+        
+        // A rejected registration of the same name releases its own 
+        // executor only.
+        provider.release(second);
+        assertTrue(b.isShutdown());
+        assertFalse(a.isShutdown());
+        assertSame(a, getEventExecutor(first));
+        assertEquals(1, provider.getQueueDepths().size());
+    }
+    
+    @Test
+    public void testShutdown() {
+        AsyncEventExecutor<?> a = getEventExecutor(
+                RegistryFixture.newConfiguration(name, Runnable.class));
+        provider.shutdown();
+        assertTrue(a.isShutdown());
+        assertTrue(provider.getQueueDepths().isEmpty());
+    }
+    
+    @Test
+    public void testInvalidQueueSize() {
+        System.setProperty("org.jargo.executor." + name + ".queueSize", 
+                "ten");
+        assertInvalid("org.jargo.executor." + name + ".queueSize");
+    }
+    
+    @Test
+    public void testUnknownPolicy() {
+        System.setProperty("org.jargo.executor." + name + ".policy", 
+                "discard");
+        assertInvalid("org.jargo.executor." + name + ".policy");
+    }
+    
+    private void assertInvalid(String property) {
+        try {
+            getEventExecutor(RegistryFixture.newConfiguration(name, 
+                    Runnable.class));
+            fail();
+        } catch (ComponentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(property));
+        }
+        assertTrue(provider.getQueueDepths().isEmpty());
+    }
+    
+    private AsyncEventExecutor<?> getEventExecutor(
+            ComponentConfiguration<Runnable> configuration) {
+        EventExecutor<Runnable> eventExecutor = provider.getEventExecutor(
+                configuration, Event.class, executor);
+        assertTrue(eventExecutor instanceof AsyncEventExecutor);
+        return (AsyncEventExecutor<?>) eventExecutor;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jargo.ComponentCreationException;
+import org.jargo.ComponentObject;
+import org.jargo.container.ComponentObjectPoolImplTest.TestBuilder;
+import org.jargo.container.ComponentObjectPoolImplTest.TestObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class ThreadAffineComponentObjectPoolTest {
+    
+    private static final AtomicInteger counter = new AtomicInteger();
+    
+    private ComponentObjectPoolImpl<Object> shared;
+    private ThreadAffineComponentObjectPool<Object> pool;
+    private TestBuilder builder;
+    
+    @Before
+    public void setUp() throws Exception {
+        String name = "affine-" + counter.incrementAndGet();
+        shared = new ComponentObjectPoolImpl<Object>(name, 0, 0, 8, -1, 
+                false);
+        pool = new ThreadAffineComponentObjectPool<Object>(name, shared);
+        builder = new TestBuilder();
+        pool.init(builder);
+    }
+    
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.destroy();
+        }
+    }
+    
+    @Test
+    public void testBound() throws Exception {
+        ComponentObject<Object> object = pool.getComponentObject();
+        pool.freeComponentObject(object);
+        assertSame(object, pool.getComponentObject());
+        pool.freeComponentObject(object);
+        assertEquals(1, builder.created.get());
+        // The shared pool is not involved.
+        assertEquals(0, shared.getBorrowCount());
+        assertEquals(0, shared.getSize());
+    }
+    
+    @Test
+    public void testBindsIdleObjectOfSharedPool() throws Exception {
+        ComponentObject<Object> idle = shared.getComponentObject();
+        shared.freeComponentObject(idle);
+        assertSame(idle, pool.getComponentObject());
+        assertEquals(0, shared.getIdleCount());
+        assertEquals(1, builder.created.get());
+    }
+    
+    @Test
+    public void testReentrantFallsBackToShared() throws Exception {
+        ComponentObject<Object> bound = pool.getComponentObject();
+        ComponentObject<Object> reentrant = pool.getComponentObject();
+        assertNotSame(bound, reentrant);
+        assertEquals(1, shared.getBorrowedCount());
+        pool.freeComponentObject(reentrant);
+        assertEquals(0, shared.getBorrowedCount());
+        assertEquals(1, shared.getIdleCount());
+        pool.freeComponentObject(bound);
+        // The bound object stays with its thread.
+        assertEquals(1, shared.getIdleCount());
+        assertSame(bound, pool.getComponentObject());
+    }
+    
+    @Test
+    public void testDiscardBound() throws Exception {
+        TestObject bound = (TestObject) pool.getComponentObject();
+        pool.discardComponentObject(bound);
+        assertTrue(bound.isDestroyed());
+        assertEquals(0, shared.getSize());
+        // The thread is bound to a new object.
+        ComponentObject<Object> object = pool.getComponentObject();
+        assertNotSame(bound, object);
+        pool.freeComponentObject(object);
+        assertSame(object, pool.getComponentObject());
+        assertEquals(2, builder.created.get());
+    }
+    
+    @Test
+    public void testDestroy() throws Exception {
+        TestObject idle = (TestObject) pool.getComponentObject();
+        pool.freeComponentObject(idle);
+        final TestObject[] inUse = new TestObject[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    inUse[0] = (TestObject) pool.getComponentObject();
+                } catch (ComponentCreationException e) {
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNotSame(idle, inUse[0]);
+        
+        pool.destroy();
+        assertTrue(idle.isDestroyed());
+        // Objects in use are destroyed once they are freed.
+        assertFalse(inUse[0].isDestroyed());
+        pool.freeComponentObject(inUse[0]);
+        assertTrue(inUse[0].isDestroyed());
+        assertEquals(builder.created.get(), builder.destroyed.get());
+        try {
+            pool.getComponentObject();
+            fail();
+        } catch (ComponentCreationException e) {
+        }
+        pool = null;
+    }
+    
+    @Test
+    public void testSweepDeadThreads() throws Exception {
+        final TestObject[] dead = new TestObject[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    dead[0] = (TestObject) pool.getComponentObject();
+                    pool.freeComponentObject(dead[0]);
+                } catch (ComponentCreationException e) {
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertFalse(dead[0].isDestroyed());
+        // Sweeps are due once per second, and run when a thread is bound.
+        Thread.sleep(1100);
+        ComponentObject<Object> object = pool.getComponentObject();
+        assertNotSame(dead[0], object);
+        assertTrue(dead[0].isDestroyed());
+        assertEquals(1, builder.destroyed.get());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo.container;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Leon van Zantvoort
+ */
+public class VanillaProxyGeneratorTest {
+    
+    private ExecutorService other;
+    
+    @Before
+    public void setUp() {
+        other = Executors.newSingleThreadExecutor();
+    }
+    
+    @After
+    public void tearDown() {
+        other.shutdownNow();
+    }
+    
+    @Test
+    public void testReentrant() {
+        VanillaProxyGenerator.VanillaProxyController controller = 
+                new VanillaProxyGenerator.VanillaProxyController();
+        assertFalse(controller.isNoOp());
+        controller.attach(true);
+        assertTrue(controller.isNoOp());
+        for (int i = 0; i < 20; i++) {
+            controller.attach(i % 2 == 0);
+            assertTrue(controller.isNoOp() == (i % 2 == 0));
+        }
+        for (int i = 19; i >= 0; i--) {
+            assertTrue(controller.isNoOp() == (i % 2 == 0));
+            controller.detach();
+        }
+        assertTrue(controller.isNoOp());
+        controller.detach();
+        assertFalse(controller.isNoOp());
+    }
+    
+    @Test(expected=NoSuchElementException.class)
+    public void testDetachWithoutAttach() {
+        new VanillaProxyGenerator.VanillaProxyController().detach();
+    }
+    
+    @Test
+    public void testCrossThread() throws Exception {
+        final VanillaProxyGenerator.VanillaProxyController controller = 
+                new VanillaProxyGenerator.VanillaProxyController();
+        
+        // The calling thread becomes the owner.
+        controller.attach(true);
+        assertFalse(other.submit(new Callable<Boolean>() {
+            public Boolean call() {
+                return controller.isNoOp();
+            }
+        }).get());
+        
+        assertTrue(other.submit(new Callable<Boolean>() {
+            public Boolean call() {
+                controller.attach(false);
+                controller.attach(true);
+                return controller.isNoOp();
+            }
+        }).get());
+        assertTrue(controller.isNoOp());
+        controller.attach(false);
+        assertFalse(controller.isNoOp());
+        
+        assertFalse(other.submit(new Callable<Boolean>() {
+            public Boolean call() {
+                controller.detach();
+                return controller.isNoOp();
+            }
+        }).get());
+        controller.detach();
+        assertTrue(controller.isNoOp());
+        controller.detach();
+        
+        // Ownership stays with the first thread after its stack is empty.
+        assertTrue(other.submit(new Callable<Boolean>() {
+            public Boolean call() {
+                controller.detach();
+                controller.attach(true);
+                return controller.isNoOp();
+            }
+        }).get());
+        assertFalse(controller.isNoOp());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo;
+
+import java.util.concurrent.Future;
+
+// Created by container
+
+/**
+ * Component reference that can execute events asynchronously. Component
+ * references created by the container implement this interface. Proxies 
+ * use it to execute the events of methods annotated {@code Asynchronous}.
+ * 
+ * @author Leon van Zantvoort
+ * @see Asynchronous
+ */
+public interface AsyncComponentReference<T> extends ComponentReference<T> {
+    
+    /**
+     * Executes the specified {@code event}, created for a method annotated 
+     * {@code Asynchronous}, on the executor of the component's 
+     * {@code ExecutorHandle}, or on the calling thread if the component has 
+     * no executor. The reference stack of the calling thread is visible to 
+     * the component while the event is executed.
+     * 
+     * <p>The event yields the {@code Future} returned by the component, 
+     * with whose result the returned future completes. Failures are 
+     * reported through the returned future as an 
+     * {@code ExecutionException}.</p>
+     * 
+     * @throws java.util.concurrent.RejectedExecutionException if the executor
+     * does not accept the event.
+     */
+    Future<Object> executeAsync(Event event);
+}
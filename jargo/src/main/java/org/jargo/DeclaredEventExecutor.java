@@ -0,0 +1,50 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo;
+
+/**
+ * Event executor that declares whether it returns before or after the event
+ * has been executed. The container only recycles the events of executors 
+ * that are known to be synchronous. For asynchronous executors, it verifies
+ * at deployment that the component's methods do not return a value that 
+ * would be discarded.
+ * 
+ * @author Leon van Zantvoort
+ */
+public interface DeclaredEventExecutor<T> extends EventExecutor<T> {
+    
+    /**
+     * Returns {@code true} if {@code execute} may return before the event 
+     * has been executed. The result must not change over the lifetime of 
+     * this executor.
+     */
+    boolean isAsynchronous();
+}
@@ -0,0 +1,61 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo;
+
+import java.util.List;
+
+/**
+ * Implemented by {@code ComponentObjectFactory}s that want to be filled with
+ * {@code ComponentObject}s before the component is activated. After 
+ * {@code init} returns, the container creates {@code getPrewarmSize} objects
+ * through the {@code ComponentObjectBuilder}, and passes them to 
+ * {@code prewarm}. Objects are only created in parallel if more than one 
+ * thread is configured through the {@code org.jargo.threads} system 
+ * property, in which case the builder and the component's providers must 
+ * be thread-safe.
+ * 
+ * @author Leon van Zantvoort
+ */
+public interface PrewarmedComponentObjectFactory<T> extends 
+        ComponentObjectFactory<T> {
+    
+    /**
+     * Returns the number of objects to be created before activation. Called 
+     * after {@code init}.
+     */
+    int getPrewarmSize();
+    
+    /**
+     * Hands the pre-created {@code objects} to this factory. The factory 
+     * owns the objects from this point on.
+     */
+    void prewarm(List<ComponentObject<T>> objects);
+}
@@ -0,0 +1,63 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo;
+
+import java.lang.reflect.Method;
+
+/**
+ * Event factory whose events may be recycled by the container. Once a 
+ * proxied call returns, the container keeps the event of that call with the
+ * calling thread, and hands it back to this factory for the next call of the 
+ * same method on that thread.
+ * 
+ * <p>Reusable events must not be retained beyond the call that created them,
+ * and must not be executed asynchronously. With assertions enabled, the 
+ * container detects recycled events that are executed again.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+public interface ReusableEventFactory extends EventFactory {
+    
+    /**
+     * Returns {@code true} if events created for the specified 
+     * {@code method} may be recycled.
+     */
+    boolean isReusable(Method method);
+    
+    /**
+     * Returns the event for the specified method call.
+     * 
+     * @param event event previously created by this factory for the same 
+     * {@code method}, or {@code null}. Implementations typically reinitialize
+     * and return this event.
+     */
+    Event getEvent(Method method, Object[] args, Event event);
+}
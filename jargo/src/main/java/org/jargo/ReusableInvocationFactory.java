@@ -0,0 +1,63 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Jargo - JSE Container Toolkit.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://jargo.org
+ */
+package org.jargo;
+
+import java.lang.reflect.Method;
+
+/**
+ * Invocation factory whose invocations may be recycled by the container. 
+ * Once an invocation has been performed, the container keeps it with the 
+ * calling thread, and hands it back to this factory for the next event 
+ * executed by that thread.
+ * 
+ * <p>Reusable invocations must not be retained by interceptors beyond the 
+ * call that created them. With assertions enabled, the container detects 
+ * recycled invocations that are performed again.</p>
+ * 
+ * @author Leon van Zantvoort
+ */
+public interface ReusableInvocationFactory extends InvocationFactory {
+    
+    /**
+     * Returns {@code true} if invocations of the specified {@code method} 
+     * may be recycled.
+     */
+    boolean isReusable(Method method);
+    
+    /**
+     * Must return {@code null} if event is not executable.
+     * 
+     * @param invocation invocation previously created by this factory, 
+     * possibly for another method, or {@code null}. Implementations 
+     * typically reinitialize and return this invocation.
+     */
+    Invocation getInvocation(Event event, Invocation invocation);
+}